@@ -0,0 +1,101 @@
+package controllers;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import models.Note;
+
+import static utils.Rendering.render;
+
+/**
+ * The responsibility of the {@code ArchiveResult} class is to hold the outcome of
+ * {@link NoteAPI#archiveNotesWithAllItemsCompleteInParallel()}: the notes that were archived, in the order they are
+ * stored. Nothing is rendered until the caller asks for it, with {@link #appendTo(Appendable)} or
+ * {@link #toString()}, so archiving many notes doesn't build a String of all of them unless it is shown.
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+public class ArchiveResult {
+
+    /**
+     * Creates a result.
+     *
+     * @param archivedNotes the notes that were archived, in the order they are stored
+     * @param hadActiveNotes whether there were any active notes to check
+     */
+    ArchiveResult(List<Note> archivedNotes, boolean hadActiveNotes) {
+        this.archivedNotes = Collections.unmodifiableList(archivedNotes);
+        this.hadActiveNotes = hadActiveNotes;
+    }
+
+    // -------------- GETTERS --------------
+
+    /**
+     * Gets the notes that were archived.
+     * @return the archived notes, in the order they are stored (read only)
+     */
+    public List<Note> getArchivedNotes() {
+        return archivedNotes;
+    }
+
+    /**
+     * Gets the number of notes that were archived.
+     * @return the number of archived notes, 0 if none were eligible
+     */
+    public int getArchivedCount() {
+        return archivedNotes.size();
+    }
+
+    /**
+     * Checks whether there were any active notes to check, as when there were none, none could be archived.
+     * @return {@code true} if at least one note was active before archiving
+     */
+    public boolean hadActiveNotes() {
+        return hadActiveNotes;
+    }
+
+    // -------------- RENDERING --------------
+
+    /**
+     * Writes the result to {@code out}, in the format of {@link NoteAPI#archiveNotesWithAllItemsComplete()}:
+     * <ul>
+     *   <li>"No active notes stored" if there were no active notes.</li>
+     *   <li>"Archived Notes:" followed by each archived note, if any were archived.</li>
+     *   <li>"No active notes eligible for archive" otherwise.</li>
+     * </ul>
+     *
+     * @param out where to write the result
+     * @throws IOException if {@code out} can't be written to
+     */
+    public void appendTo(Appendable out) throws IOException {
+        if (!hadActiveNotes) {
+            out.append("No active notes stored");
+        }
+        else if (archivedNotes.isEmpty()) {
+            out.append("No active notes eligible for archive");
+        }
+        else {
+            out.append("Archived Notes:\n");
+            for (Note note : archivedNotes) {
+                note.appendTo(out);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return render(this::appendTo);
+    }
+
+    /**
+     * The archived notes, read only.
+     */
+    private final List<Note> archivedNotes;
+
+    /**
+     * Whether any notes were active before archiving.
+     */
+    private final boolean hadActiveNotes;
+}
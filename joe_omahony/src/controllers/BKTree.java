@@ -0,0 +1,143 @@
+package controllers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The responsibility of the {@code BKTree} class is to find the words within a given edit (Levenshtein) distance of
+ * a query without measuring the distance to every word, for the fuzzy title search of {@link NoteAPI}.
+ * <p>
+ * Each node holds a word, and its children are grouped by their distance from that word. As edit distance obeys the
+ * triangle inequality, a search that is {@code d} away from a node only has to visit the children between
+ * {@code d - maxDistance} and {@code d + maxDistance} away from it, which leaves most of the tree unvisited for small
+ * distances.
+ * <p>
+ * Words can't be removed; see {@link TitleIndex} for how titles that are no longer used are skipped.
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+class BKTree {
+
+    /**
+     * Adds a word to the tree, unless it is already there.
+     * @param word the word to add
+     */
+    void add(String word) {
+        if (root == null) {
+            root = new Node(word);
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = distance(word, node.word);
+            if (distance == 0) {
+                return; // already in the tree
+            }
+            Node child = node.child(distance);
+            if (child == null) {
+                node.setChild(distance, new Node(word));
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Finds every word within {@code maxDistance} edits of {@code query}.
+     *
+     * @param query the word to search for
+     * @param maxDistance the largest number of single character insertions, deletions and substitutions allowed
+     * @return the words found with their distances, in no particular order
+     */
+    List<Match> search(String query, int maxDistance) {
+        List<Match> matches = new ArrayList<Match>();
+        if (root == null) {
+            return matches;
+        }
+        Deque<Node> toVisit = new ArrayDeque<Node>();
+        toVisit.push(root);
+        while (!(toVisit.isEmpty())) {
+            Node node = toVisit.pop();
+            int distance = distance(query, node.word);
+            if (distance <= maxDistance) {
+                matches.add(new Match(node.word, distance));
+            }
+            int to = Math.min(distance + maxDistance, node.children.length - 1);
+            for (int childDistance = Math.max(1, distance - maxDistance); childDistance <= to; childDistance++) {
+                if (node.children[childDistance] != null) {
+                    toVisit.push(node.children[childDistance]);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Gets the Levenshtein distance between two strings: the fewest single character insertions, deletions and
+     * substitutions that turn one into the other.
+     *
+     * @param first one string
+     * @param second the other string
+     * @return the edit distance
+     */
+    static int distance(String first, String second) {
+        int[] previous = new int[second.length() + 1];
+        int[] current = new int[second.length() + 1];
+        for (int j = 0; j <= second.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= first.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= second.length(); j++) {
+                int substitution = previous[j - 1] + ((first.charAt(i - 1) == second.charAt(j - 1)) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[second.length()];
+    }
+
+    /**
+     * A word found by {@link #search(String, int)}, with its distance from the query.
+     */
+    static class Match {
+        Match(String word, int distance) {
+            this.word = word;
+            this.distance = distance;
+        }
+
+        final String word;
+        final int distance;
+    }
+
+    /**
+     * A word and its children, indexed by their distance from it.
+     */
+    private static class Node {
+        Node(String word) {
+            this.word = word;
+        }
+
+        Node child(int distance) {
+            return (distance < children.length) ? children[distance] : null;
+        }
+
+        void setChild(int distance, Node child) {
+            if (distance >= children.length) {
+                children = Arrays.copyOf(children, distance + 1);
+            }
+            children[distance] = child;
+        }
+
+        private final String word;
+        private Node[] children = new Node[0];
+    }
+
+    private Node root = null;
+}
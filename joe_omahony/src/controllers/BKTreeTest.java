@@ -0,0 +1,61 @@
+package controllers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BKTreeTest {
+
+    @Test
+    void distanceCountsInsertionsDeletionsAndSubstitutions() {
+        assertEquals(0, BKTree.distance("java", "java"));
+        assertEquals(3, BKTree.distance("", "gym"));
+        assertEquals(1, BKTree.distance("jva", "java"));
+        assertEquals(1, BKTree.distance("code app", "code ap"));
+        assertEquals(2, BKTree.distance("lerning jva", "learning java"));
+        assertEquals(3, BKTree.distance("kitten", "sitting"));
+    }
+
+    @Test
+    void searchFindsTheSameWordsAsMeasuringEveryWord() {
+        Random random = new Random(17);
+        List<String> words = new ArrayList<String>();
+        BKTree tree = new BKTree();
+        for (int i = 0; i < 500; i++) {
+            String word = randomWord(random);
+            words.add(word);
+            tree.add(word);
+        }
+        tree.add(words.get(0)); // already there, so not added twice
+
+        for (int maxDistance = 0; maxDistance <= 3; maxDistance++) {
+            String query = randomWord(random);
+            TreeSet<String> expected = new TreeSet<String>();
+            for (String word : words) {
+                if (BKTree.distance(query, word) <= maxDistance) {
+                    expected.add(word);
+                }
+            }
+            TreeSet<String> found = new TreeSet<String>();
+            for (BKTree.Match match : tree.search(query, maxDistance)) {
+                assertEquals(BKTree.distance(query, match.word), match.distance);
+                assertTrue(found.add(match.word));
+            }
+            assertEquals(expected, found);
+        }
+        assertTrue(new BKTree().search("gym", 2).isEmpty());
+    }
+
+    private String randomWord(Random random) {
+        char[] chars = new char[2 + random.nextInt(4)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(4));
+        }
+        return new String(chars);
+    }
+}
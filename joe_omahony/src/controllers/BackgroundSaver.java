@@ -0,0 +1,197 @@
+package controllers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+/**
+ * The responsibility of the {@code BackgroundSaver} class is to run the file writes of {@link NoteAPI#save()} on a
+ * background thread when async saving is on (see {@link NoteAPI#setAsyncSave(boolean)}), so the menu doesn't wait for
+ * them.
+ * <p>
+ * There is only ever one write waiting to run, so a burst of saves is coalesced:
+ * <ul>
+ *   <li>A full snapshot replaces any snapshot still waiting, and any journal records waiting before it, because it
+ *   already contains their changes.</li>
+ *   <li>Journal records are added to the end of the records already waiting, and appended to the journal file in one
+ *   write after the waiting snapshot (if any) has been written.</li>
+ * </ul>
+ * If a write fails, the records waiting behind it are dropped (they were recorded against a store that was never
+ * written) and the failure is kept until {@link #takeFailure()} picks it up.
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+class BackgroundSaver {
+
+    /**
+     * A full write of the store, run on the background thread.
+     */
+    interface SnapshotWrite {
+        void write() throws Exception;
+    }
+
+    // -------------- SUBMIT METHODS --------------
+
+    /**
+     * Queues a full snapshot write, replacing anything still waiting to be written.
+     * @param write writes the snapshot, from notes that were copied when the save was asked for
+     */
+    synchronized void submitSnapshot(SnapshotWrite write) {
+        pendingSnapshot = write;
+        pendingRecords.reset();
+        wakeWriter();
+    }
+
+    /**
+     * Queues journal records to be appended after whatever is already waiting.
+     *
+     * @param records the records, as taken from {@link NoteJournal#takePending()}
+     * @param journalFile the journal file to append to
+     * @param snapshotFile the snapshot the journal applies to
+     */
+    synchronized void submitRecords(byte[] records, File journalFile, File snapshotFile) {
+        pendingRecords.write(records, 0, records.length);
+        pendingJournalFile = journalFile;
+        pendingSnapshotFile = snapshotFile;
+        wakeWriter();
+    }
+
+    // -------------- WAITING METHODS --------------
+
+    /**
+     * Checks whether any write is waiting or running.
+     * @return {@code true} if there is nothing left to write
+     */
+    synchronized boolean isIdle() {
+        return !writing && (pendingSnapshot == null) && (pendingRecords.size() == 0);
+    }
+
+    /**
+     * Waits until every queued write has finished (or failed).
+     *
+     * @param timeoutMillis the longest time to wait, or 0 to wait as long as it takes
+     * @return {@code true} if there is nothing left to write, {@code false} if the time ran out first
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    synchronized boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!isIdle()) {
+            if (timeoutMillis == 0) {
+                wait();
+            }
+            else {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets and clears the failure of the last background write that failed.
+     * @return the failure, or {@code null} if no write has failed since the last call
+     */
+    synchronized Exception takeFailure() {
+        Exception lastFailure = failure;
+        failure = null;
+        return lastFailure;
+    }
+
+    // -------------- WRITER THREAD --------------
+
+    /**
+     * Starts the writer thread the first time there is something to write. It is a daemon thread, so it never keeps
+     * the program running; {@link NoteAPI#flush()} should be called before exiting.
+     */
+    private void wakeWriter() {
+        if (writer == null) {
+            writer = new Thread(this::writeLoop, "notes-background-saver");
+            writer.setDaemon(true);
+            writer.start();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Takes whatever is waiting and writes it, for as long as the program runs.
+     */
+    private void writeLoop() {
+        while (true) {
+            SnapshotWrite snapshot;
+            byte[] records;
+            File journalFile;
+            File snapshotFile;
+            synchronized (this) {
+                while ((pendingSnapshot == null) && (pendingRecords.size() == 0)) {
+                    try {
+                        wait();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                snapshot = pendingSnapshot;
+                records = pendingRecords.toByteArray();
+                journalFile = pendingJournalFile;
+                snapshotFile = pendingSnapshotFile;
+                pendingSnapshot = null;
+                pendingRecords.reset();
+                writing = true;
+            }
+
+            Exception writeFailure = null;
+            try {
+                if (snapshot != null) {
+                    snapshot.write();
+                }
+                if (records.length > 0) {
+                    NoteJournal.append(journalFile, snapshotFile, records);
+                }
+            }
+            catch (Exception e) {
+                writeFailure = e;
+            }
+
+            synchronized (this) {
+                if (writeFailure != null) {
+                    failure = writeFailure;
+                    // anything queued meanwhile was recorded against the store that just failed to be written
+                    pendingRecords.reset();
+                }
+                writing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * The snapshot waiting to be written, {@code null} if there isn't one.
+     */
+    private SnapshotWrite pendingSnapshot = null;
+
+    /**
+     * Journal records waiting to be appended, after {@link #pendingSnapshot}.
+     */
+    private final ByteArrayOutputStream pendingRecords = new ByteArrayOutputStream();
+
+    private File pendingJournalFile;
+    private File pendingSnapshotFile;
+
+    /**
+     * Whether the writer thread is in the middle of a write.
+     */
+    private boolean writing = false;
+
+    /**
+     * The failure of the last write that failed, until {@link #takeFailure()} is called.
+     */
+    private Exception failure = null;
+
+    /**
+     * The writer thread, started on the first submit.
+     */
+    private Thread writer = null;
+}
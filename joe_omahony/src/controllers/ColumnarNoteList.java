@@ -0,0 +1,486 @@
+package controllers;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+import models.Item;
+import models.ItemLoader;
+import models.Note;
+
+import static utils.CategoryUtility.categoryName;
+
+/**
+ * The responsibility of the {@code ColumnarNoteList} class is to hold loaded notes with their headers in parallel
+ * columns rather than one {@link Note} object each, for {@link NoteAPI#setColumnarStorage(boolean)}.
+ * <p>
+ * Each header field is kept in a dense array with one entry per note:
+ * <ul>
+ *   <li>priorities and category IDs in {@code byte} arrays (see {@link Note#getNoteCategoryId()}),</li>
+ *   <li>archived states in a {@link BitSet},</li>
+ *   <li>titles as start and end offsets into one shared {@code char} buffer,</li>
+ *   <li>note IDs and item counts in {@code int} arrays.</li>
+ * </ul>
+ * {@link NoteAPI} builds its indexes and totals from the columns with {@link #titleAt(int)}, {@link #priorityAt(int)}
+ * and the like, so counting and filtering read a few arrays instead of following a reference to every note. A
+ * {@link Note} is only kept once it has been handed out by {@link #get(int)}, as the caller may change it like any
+ * other note. Once a note has been handed out it holds the note's state, and the accessors answer from it rather
+ * than from the columns. Listings and searches only read notes, so they use {@link #readOnlyAt(int)} and
+ * {@link #itemsAt(int)}, which build what they need from the columns without keeping it.
+ * <p>
+ * Items aren't split into columns: each note's items stay in their list (or {@link ItemLoader}) until the note is
+ * created. Notes that are added are kept as they are, alongside the others.
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+class ColumnarNoteList extends AbstractList<Note> implements RandomAccess {
+
+    /**
+     * Moves the headers of the given notes into columns. The notes themselves aren't kept, so they shouldn't be
+     * used afterwards.
+     *
+     * @param notes the loaded notes, in order
+     * @param onMaterialise called with each note the first time it is created from the columns, e.g. to register a
+     * listener on it
+     */
+    ColumnarNoteList(List<Note> notes, Consumer<Note> onMaterialise) {
+        this.onMaterialise = onMaterialise;
+        size = notes.size();
+        allocate(size);
+        int titleLength = 0;
+        for (Note note : notes) {
+            titleLength += note.getNoteTitle().length();
+        }
+        titleChars = new char[titleLength];
+        int titleEnd = 0;
+        for (int i = 0; i < size; i++) {
+            Note note = notes.get(i);
+            String title = note.getNoteTitle();
+            title.getChars(0, title.length(), titleChars, titleEnd);
+            titleStarts[i] = titleEnd;
+            titleEnd += title.length();
+            titleEnds[i] = titleEnd;
+            priorities[i] = (byte) note.getNotePriority();
+            categories[i] = (byte) note.getNoteCategoryId();
+            archived.set(i, note.isNoteArchived());
+            noteIds[i] = note.getNoteId();
+            itemCounts[i] = note.numberOfItems();
+            completedCounts[i] = note.numberOfCompletedItems();
+            if (!note.isItemsLoaded()) {
+                itemSlots[i] = note.getItemLoader();
+            }
+            else if (itemCounts[i] > 0) {
+                itemSlots[i] = note.getItems();
+            }
+        }
+    }
+
+    // -------------- LIST METHODS --------------
+
+    /**
+     * Gets the note at {@code index}, creating it from the columns the first time it is asked for.
+     * @param index index of the note
+     * @return the note at that index
+     */
+    @Override
+    public synchronized Note get(int index) {
+        checkIndex(index, size);
+        Note note = views[index];
+        if (note == null) {
+            note = noteFromColumns(index);
+            views[index] = note;
+            itemSlots[index] = null; // the note has them now
+            if (onMaterialise != null) {
+                onMaterialise.accept(note);
+            }
+        }
+        return note;
+    }
+
+    /**
+     * Gets the number of notes, without creating any of them.
+     * @return the number of notes
+     */
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized Note set(int index, Note note) {
+        Note previous = get(index);
+        views[index] = note;
+        return previous;
+    }
+
+    @Override
+    public synchronized void add(int index, Note note) {
+        checkIndex(index, size + 1);
+        if (size == views.length) {
+            grow();
+        }
+        shift(index, 1);
+        views[index] = note; // only the note holds its state, see get(int)
+        itemSlots[index] = null;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public synchronized Note remove(int index) {
+        Note removed = get(index);
+        shift(index + 1, -1);
+        size--;
+        views[size] = null;
+        itemSlots[size] = null;
+        archived.clear(size);
+        modCount++;
+        return removed;
+    }
+
+    /**
+     * Removes the notes at the given positions in a single pass, keeping the rest in order, without creating any.
+     * @param positions the positions of the notes to remove
+     */
+    synchronized void removePositions(BitSet positions) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!(positions.get(i))) {
+                if (kept != i) {
+                    move(i, kept);
+                }
+                kept++;
+            }
+        }
+        Arrays.fill(views, kept, size, null);
+        Arrays.fill(itemSlots, kept, size, null);
+        archived.clear(kept, size);
+        size = kept;
+        modCount++;
+    }
+
+    // -------------- COLUMN ACCESSORS --------------
+
+    /**
+     * Gets the title of the note at {@code index} without creating the note.
+     * @param index index of the note
+     * @return the note's title
+     */
+    synchronized String titleAt(int index) {
+        checkIndex(index, size);
+        return (views[index] != null) ? views[index].getNoteTitle() : titleFromColumns(index);
+    }
+
+    /**
+     * Gets the priority of the note at {@code index} without creating the note.
+     * @param index index of the note
+     * @return the note's priority
+     */
+    synchronized int priorityAt(int index) {
+        checkIndex(index, size);
+        return (views[index] != null) ? views[index].getNotePriority() : priorities[index];
+    }
+
+    /**
+     * Gets the category ID of the note at {@code index} without creating the note.
+     * @param index index of the note
+     * @return the note's category ID, see {@link Note#getNoteCategoryId()}
+     */
+    synchronized int categoryIdAt(int index) {
+        checkIndex(index, size);
+        return (views[index] != null) ? views[index].getNoteCategoryId() : categories[index];
+    }
+
+    /**
+     * Checks whether the note at {@code index} is archived, without creating the note.
+     * @param index index of the note
+     * @return {@code true} if the note is archived
+     */
+    synchronized boolean isArchivedAt(int index) {
+        checkIndex(index, size);
+        return (views[index] != null) ? views[index].isNoteArchived() : archived.get(index);
+    }
+
+    /**
+     * Gets the ID of the note at {@code index} without creating the note.
+     * @param index index of the note
+     * @return the note's ID, 0 if it has none yet
+     */
+    synchronized int noteIdAt(int index) {
+        checkIndex(index, size);
+        return (views[index] != null) ? views[index].getNoteId() : noteIds[index];
+    }
+
+    /**
+     * Gets the number of items of the note at {@code index} without creating the note or loading its items.
+     * @param index index of the note
+     * @return the number of items
+     */
+    synchronized int numberOfItemsAt(int index) {
+        checkIndex(index, size);
+        return (views[index] != null) ? views[index].numberOfItems() : itemCounts[index];
+    }
+
+    /**
+     * Gets the number of completed items of the note at {@code index} without creating the note or loading its
+     * items.
+     * @param index index of the note
+     * @return the number of completed items
+     */
+    synchronized int numberOfCompletedItemsAt(int index) {
+        checkIndex(index, size);
+        return (views[index] != null) ? views[index].numberOfCompletedItems() : completedCounts[index];
+    }
+
+    /**
+     * Gets the note at {@code index} to read only, e.g. to render it in a listing: the note already handed out by
+     * {@link #get(int)} or added, or otherwise a note created from the columns for the caller only, which isn't kept.
+     * @param index index of the note
+     * @return the note at that index, which must not be changed
+     */
+    synchronized Note readOnlyAt(int index) {
+        checkIndex(index, size);
+        return (views[index] != null) ? views[index] : noteFromColumns(index);
+    }
+
+    /**
+     * Gets the items of the note at {@code index} without creating the note. Items that haven't been loaded are read
+     * for the caller only, and left unloaded here.
+     * @param index index of the note
+     * @return the note's items, which must not be changed
+     */
+    @SuppressWarnings("unchecked")
+    synchronized List<Item> itemsAt(int index) {
+        checkIndex(index, size);
+        if (views[index] != null) {
+            return views[index].getItems();
+        }
+        Object items = itemSlots[index];
+        if (items instanceof ItemLoader) {
+            return ((ItemLoader) items).loadItems();
+        }
+        return (items != null) ? (ArrayList<Item>) items : new ArrayList<Item>();
+    }
+
+    /**
+     * Counts the totals of all the notes from the columns, without creating any notes.
+     * @return the totals
+     */
+    synchronized NoteTotals totals() {
+        int archivedNotes = 0;
+        int items = 0;
+        int completedItems = 0;
+        for (int i = 0; i < size; i++) {
+            if (views[i] != null) {
+                archivedNotes += views[i].isNoteArchived() ? 1 : 0;
+                items += views[i].numberOfItems();
+                completedItems += views[i].numberOfCompletedItems();
+            }
+            else {
+                archivedNotes += archived.get(i) ? 1 : 0;
+                items += itemCounts[i];
+                completedItems += completedCounts[i];
+            }
+        }
+        return new NoteTotals(archivedNotes, items, completedItems);
+    }
+
+    /**
+     * Calls {@code action} for every note that has already been created or added, without creating any others.
+     * @param action the action to run for each note
+     */
+    synchronized void forEachMaterialised(Consumer<Note> action) {
+        for (int i = 0; i < size; i++) {
+            if (views[i] != null) {
+                action.accept(views[i]);
+            }
+        }
+    }
+
+    /**
+     * Finds the position of a note by identity, looking only at notes that have already been created or added.
+     * @param note the note to find
+     * @return the index of the note, or -1 if it isn't in the list
+     */
+    synchronized int indexOfMaterialised(Note note) {
+        for (int i = 0; i < size; i++) {
+            if (views[i] == note) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether {@code note} has been created or added at {@code index}, by identity, without creating the note
+     * at {@code index}.
+     * @param index index of the note
+     * @param note the note to look for
+     * @return {@code true} if {@code note} is the note at {@code index}
+     */
+    synchronized boolean isMaterialisedAt(int index, Note note) {
+        checkIndex(index, size);
+        return views[index] == note;
+    }
+
+    /**
+     * Gets the notes for writing to a file. Notes that haven't been created yet are created for the caller only, as
+     * they are asked for, so writing every note doesn't keep a {@link Note} object for each one. The list follows
+     * this one, so it should be used before this list is next changed.
+     *
+     * @return a read only list of the notes, in order
+     */
+    List<Note> detachedNotes() {
+        return new AbstractList<Note>() {
+            @Override
+            public Note get(int index) {
+                return readOnlyAt(index);
+            }
+
+            @Override
+            public int size() {
+                return ColumnarNoteList.this.size();
+            }
+        };
+    }
+
+    // -------------- PRIVATE HELPERS --------------
+
+    /**
+     * Creates a note from the columns at {@code index}.
+     */
+    @SuppressWarnings("unchecked")
+    private Note noteFromColumns(int index) {
+        Note note = new Note(titleFromColumns(index),
+                priorities[index], categoryName(categories[index]));
+        note.setNoteArchived(archived.get(index));
+        note.setNoteId(noteIds[index]);
+        Object items = itemSlots[index];
+        if (items instanceof ItemLoader) {
+            note.setItemLoader((ItemLoader) items, itemCounts[index], completedCounts[index]);
+        }
+        else if (items != null) {
+            note.setItems((ArrayList<Item>) items);
+        }
+        return note;
+    }
+
+    private String titleFromColumns(int index) {
+        return new String(titleChars, titleStarts[index], titleEnds[index] - titleStarts[index]);
+    }
+
+    /**
+     * Moves every column entry from {@code from} onwards by {@code distance} places, to open or close a gap.
+     */
+    private void shift(int from, int distance) {
+        int count = size - from;
+        System.arraycopy(views, from, views, from + distance, count);
+        System.arraycopy(itemSlots, from, itemSlots, from + distance, count);
+        System.arraycopy(titleStarts, from, titleStarts, from + distance, count);
+        System.arraycopy(titleEnds, from, titleEnds, from + distance, count);
+        System.arraycopy(priorities, from, priorities, from + distance, count);
+        System.arraycopy(categories, from, categories, from + distance, count);
+        System.arraycopy(noteIds, from, noteIds, from + distance, count);
+        System.arraycopy(itemCounts, from, itemCounts, from + distance, count);
+        System.arraycopy(completedCounts, from, completedCounts, from + distance, count);
+        BitSet moved = archived.get(from, size);
+        archived.clear(from, size);
+        for (int i = moved.nextSetBit(0); i >= 0; i = moved.nextSetBit(i + 1)) {
+            archived.set(from + distance + i);
+        }
+    }
+
+    /**
+     * Copies every column entry at {@code from} to {@code to}.
+     */
+    private void move(int from, int to) {
+        views[to] = views[from];
+        itemSlots[to] = itemSlots[from];
+        titleStarts[to] = titleStarts[from];
+        titleEnds[to] = titleEnds[from];
+        priorities[to] = priorities[from];
+        categories[to] = categories[from];
+        noteIds[to] = noteIds[from];
+        itemCounts[to] = itemCounts[from];
+        completedCounts[to] = completedCounts[from];
+        archived.set(to, archived.get(from));
+    }
+
+    private void allocate(int capacity) {
+        views = new Note[capacity];
+        itemSlots = new Object[capacity];
+        titleStarts = new int[capacity];
+        titleEnds = new int[capacity];
+        priorities = new byte[capacity];
+        categories = new byte[capacity];
+        noteIds = new int[capacity];
+        itemCounts = new int[capacity];
+        completedCounts = new int[capacity];
+        archived = new BitSet(capacity);
+    }
+
+    private void grow() {
+        int capacity = views.length + (views.length >> 1) + 1;
+        views = Arrays.copyOf(views, capacity);
+        itemSlots = Arrays.copyOf(itemSlots, capacity);
+        titleStarts = Arrays.copyOf(titleStarts, capacity);
+        titleEnds = Arrays.copyOf(titleEnds, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        noteIds = Arrays.copyOf(noteIds, capacity);
+        itemCounts = Arrays.copyOf(itemCounts, capacity);
+        completedCounts = Arrays.copyOf(completedCounts, capacity);
+    }
+
+    private static void checkIndex(int index, int limit) {
+        if ((index < 0) || (index >= limit)) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (limit));
+        }
+    }
+
+    private final Consumer<Note> onMaterialise;
+
+    /**
+     * Each note once it has been handed out by {@link #get(int)} or added, {@code null} until then. A note's entries
+     * in the other columns aren't used once it is here.
+     */
+    private Note[] views;
+
+    /**
+     * The items of each note not yet created: an {@code ArrayList<Item>}, an {@link ItemLoader}, or {@code null} if
+     * the note has no items.
+     */
+    private Object[] itemSlots;
+
+    /**
+     * The titles of the loaded notes, one after the other. Each note's title runs from its entry in
+     * {@link #titleStarts} up to its entry in {@link #titleEnds}.
+     */
+    private char[] titleChars;
+
+    private int[] titleStarts;
+
+    private int[] titleEnds;
+
+    private byte[] priorities;
+
+    /**
+     * Category IDs, see {@link Note#getNoteCategoryId()}.
+     */
+    private byte[] categories;
+
+    private BitSet archived;
+
+    private int[] noteIds;
+
+    private int[] itemCounts;
+
+    private int[] completedCounts;
+
+    private int size;
+}
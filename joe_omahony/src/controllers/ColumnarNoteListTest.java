@@ -0,0 +1,127 @@
+package controllers;
+
+import models.Item;
+import models.Note;
+import org.junit.jupiter.api.Test;
+import utils.CategoryUtility;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarNoteListTest {
+
+    private List<Note> notesToStore(int noteCount) {
+        ArrayList<Note> notes = new ArrayList<Note>();
+        for (int i = 0; i < noteCount; i++) {
+            Note note = new Note("Note " + i, (i % 5) + 1, (i % 2 == 0) ? "Work" : "Home");
+            note.setNoteArchived(i % 3 == 0);
+            note.setNoteId(i + 1);
+            note.addItem(new Item("Item " + i, (i % 2) == 0));
+            notes.add(note);
+        }
+        return notes;
+    }
+
+    @Test
+    void headersAreReadWithoutCreatingNotes() {
+        ArrayList<Note> createdNotes = new ArrayList<Note>();
+        ColumnarNoteList notes = new ColumnarNoteList(notesToStore(100), createdNotes::add);
+        assertEquals(100, notes.size());
+        assertEquals("Note 42", notes.titleAt(42));
+        assertEquals(3, notes.priorityAt(42));
+        assertEquals(CategoryUtility.categoryId("Work"), notes.categoryIdAt(42));
+        assertTrue(notes.isArchivedAt(42));
+        assertEquals(43, notes.noteIdAt(42));
+        assertEquals(1, notes.numberOfItemsAt(42));
+        assertEquals(1, notes.numberOfCompletedItemsAt(42));
+        NoteTotals totals = notes.totals();
+        assertEquals(34, totals.getArchivedNotes());
+        assertEquals(100, totals.getItems());
+        assertEquals(50, totals.getCompletedItems());
+        assertTrue(createdNotes.isEmpty());
+
+        Note note = notes.get(42);
+        assertSame(note, notes.get(42));
+        assertEquals(1, createdNotes.size());
+        assertEquals("Item 42", note.findItem(0).getItemDescription());
+        assertEquals(43, note.getNoteId());
+
+        // once created, the note holds the header
+        note.setNoteTitle("Renamed");
+        note.setNoteCategory("Hobby");
+        assertEquals("Renamed", notes.titleAt(42));
+        assertEquals(CategoryUtility.categoryId("Hobby"), notes.categoryIdAt(42));
+        assertTrue(notes.isMaterialisedAt(42, note));
+        assertFalse(notes.isMaterialisedAt(41, note));
+    }
+
+    @Test
+    void addingAndRemovingKeepsPositions() {
+        ColumnarNoteList notes = new ColumnarNoteList(notesToStore(10), null);
+        Note appended = new Note("Appended", 1, "Home");
+        notes.add(appended);
+        notes.add(3, new Note("Inserted", 1, "Home"));
+        notes.remove(0);
+
+        assertEquals(11, notes.size());
+        assertEquals("Note 1", notes.titleAt(0));
+        assertEquals("Inserted", notes.titleAt(2));
+        assertEquals("Note 3", notes.titleAt(3));
+        assertTrue(notes.isArchivedAt(3));
+        assertFalse(notes.isArchivedAt(4));
+        assertEquals("Note 9", notes.get(9).getNoteTitle());
+        assertSame(appended, notes.get(10));
+        assertEquals(10, notes.indexOfMaterialised(appended));
+    }
+
+    @Test
+    void removingPositionsKeepsTheRestInOrder() {
+        ArrayList<Note> createdNotes = new ArrayList<Note>();
+        ColumnarNoteList notes = new ColumnarNoteList(notesToStore(10), createdNotes::add);
+        BitSet positions = new BitSet();
+        positions.set(0);
+        positions.set(4, 7);
+        notes.removePositions(positions);
+
+        assertEquals(6, notes.size());
+        assertEquals("Note 1", notes.titleAt(0));
+        assertEquals("Note 3", notes.titleAt(2));
+        assertEquals("Note 7", notes.titleAt(3));
+        assertTrue(notes.isArchivedAt(2)); // note 3
+        assertFalse(notes.isArchivedAt(4));
+        assertTrue(notes.isArchivedAt(5)); // note 9
+        assertEquals(10, notes.noteIdAt(5));
+        assertTrue(createdNotes.isEmpty());
+    }
+
+    @Test
+    void notesReadOnlyAreNotKept() {
+        ArrayList<Note> createdNotes = new ArrayList<Note>();
+        ColumnarNoteList notes = new ColumnarNoteList(notesToStore(5), createdNotes::add);
+        Note used = notes.get(1);
+
+        assertSame(used, notes.readOnlyAt(1));
+        assertEquals("Note 2", notes.readOnlyAt(2).getNoteTitle());
+        assertNotSame(notes.readOnlyAt(2), notes.readOnlyAt(2));
+        assertFalse(notes.isMaterialisedAt(2, notes.readOnlyAt(2)));
+        assertEquals("Item 3", notes.itemsAt(3).get(0).getItemDescription());
+        assertEquals(1, createdNotes.size());
+    }
+
+    @Test
+    void detachedNotesAreNotKept() {
+        ArrayList<Note> createdNotes = new ArrayList<Note>();
+        List<Note> storedNotes = notesToStore(5);
+        ColumnarNoteList notes = new ColumnarNoteList(storedNotes, createdNotes::add);
+        Note used = notes.get(1);
+
+        List<Note> detached = notes.detachedNotes();
+        assertEquals(storedNotes, detached);
+        assertSame(used, detached.get(1));
+        assertNotSame(detached.get(2), detached.get(2));
+        assertEquals(1, createdNotes.size());
+    }
+}
@@ -0,0 +1,155 @@
+package controllers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import models.Item;
+import models.Note;
+
+/**
+ * The responsibility of the {@code DescriptionIndex} class is to narrow down the notes whose items may contain a piece
+ * of text, so {@link NoteAPI#searchItemByDescription(String)} only has to look at the items of those notes.
+ * <p>
+ * Every run of three characters (trigram) in an item description, folded to lower case with
+ * {@link TitleIndex#fold(String)}, has a bucket of the positions of the notes with an item containing it. Any text of
+ * three or more characters can only be in a description if all of its trigrams are, so the notes in every one of its
+ * buckets are the only candidates. Each candidate is then checked with {@link String#contains(CharSequence)}, which
+ * also keeps the search case sensitive.
+ * <p>
+ * The distinct trigrams of each note are kept alongside the buckets, so the index stays exact as items change:
+ * <ul>
+ *   <li>when a note's items are added, updated, deleted or replaced, its trigrams are worked out again from its items,
+ *   and only the buckets of the trigrams it gained or lost are touched;</li>
+ *   <li>when a note is deleted, only the buckets of its own trigrams are looked at.</li>
+ * </ul>
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+class DescriptionIndex {
+
+    /**
+     * Builds the index of the given notes in one pass, loading any items that haven't been loaded yet.
+     * @param notes the notes, in order
+     */
+    DescriptionIndex(List<Note> notes) {
+        this(notes.size(), position -> notes.get(position).getItems());
+    }
+
+    /**
+     * Builds the index of the items of {@code count} notes, e.g. read straight from a {@link ColumnarNoteList} or a
+     * {@link MappedNoteList} without keeping a {@link Note} for each one.
+     *
+     * @param count the number of notes
+     * @param itemsAt gets the items of the note at a position
+     */
+    DescriptionIndex(int count, IntFunction<List<Item>> itemsAt) {
+        noteTrigrams = new ArrayList<String[]>(count);
+        for (int i = 0; i < count; i++) {
+            noteAdded(itemsAt.apply(i), i);
+        }
+    }
+
+    // -------------- UPDATE METHODS --------------
+
+    /**
+     * Records the items of a note added at {@code position}.
+     *
+     * @param items the items of the note added
+     * @param position the position of the note in the notes ArrayList
+     */
+    void noteAdded(List<Item> items, int position) {
+        String[] trigrams = trigramsOf(items).toArray(new String[0]);
+        for (String trigram : trigrams) {
+            index.add(trigram, position);
+        }
+        noteTrigrams.add(position, trigrams);
+    }
+
+    /**
+     * Records that the note at {@code position} was deleted, so every note after it has moved back one position.
+     * @param position the position the note was deleted from
+     */
+    void noteDeleted(int position) {
+        index.deleteAll(Arrays.asList(noteTrigrams.remove(position)), position);
+    }
+
+    /**
+     * Brings the trigrams of a note up to date after its items were added, updated, deleted or replaced.
+     *
+     * @param items the items the note has now
+     * @param position the position of the note in the notes ArrayList, or -1 if it isn't stored (then nothing changes)
+     */
+    void itemsChanged(List<Item> items, int position) {
+        if (position < 0) {
+            return;
+        }
+        Set<String> trigrams = trigramsOf(items);
+        Set<String> gained = new HashSet<String>(trigrams);
+        for (String trigram : noteTrigrams.get(position)) {
+            if (!(gained.remove(trigram))) {
+                index.remove(trigram, position); // no item of the note has it any more
+            }
+        }
+        for (String trigram : gained) {
+            index.add(trigram, position);
+        }
+        noteTrigrams.set(position, trigrams.toArray(new String[0]));
+    }
+
+    // -------------- SEARCH METHODS --------------
+
+    /**
+     * Finds the notes that may have an item whose description contains {@code text}.
+     *
+     * @param text the text to search for
+     * @return the positions of the candidate notes, in ascending order; or {@code null} if {@code text} is shorter than
+     * three characters, in which case every note has to be checked
+     */
+    int[] candidatesContaining(String text) {
+        if (text.length() < 3) {
+            return null;
+        }
+        String foldedText = TitleIndex.fold(text);
+        int[] candidates = null;
+        for (int i = 0; (i + 3) <= foldedText.length(); i++) {
+            int[] positions = index.positions(foldedText.substring(i, i + 3));
+            candidates = (candidates == null) ? positions : PositionIndex.intersection(candidates, positions);
+            if (candidates.length == 0) {
+                break;
+            }
+        }
+        return candidates;
+    }
+
+    // -------------- PRIVATE HELPERS --------------
+
+    /**
+     * Gets the distinct folded trigrams of the descriptions of some items.
+     */
+    private static Set<String> trigramsOf(List<Item> items) {
+        Set<String> trigrams = new HashSet<String>();
+        for (Item item : items) {
+            String description = TitleIndex.fold(item.getItemDescription());
+            for (int i = 0; (i + 3) <= description.length(); i++) {
+                trigrams.add(description.substring(i, i + 3));
+            }
+        }
+        return trigrams;
+    }
+
+    /**
+     * The positions of the notes with an item containing each folded trigram.
+     */
+    private final PositionIndex<String> index = new PositionIndex<String>();
+
+    /**
+     * The distinct trigrams of the items of the note at each position, so the buckets a note is in can be found
+     * without looking at every bucket.
+     */
+    private final ArrayList<String[]> noteTrigrams;
+}
@@ -0,0 +1,61 @@
+package controllers;
+
+import models.Item;
+import models.Note;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DescriptionIndexTest {
+
+    private List<Note> notesWithItems(String... descriptions) {
+        List<Note> notes = new ArrayList<Note>();
+        for (String description : descriptions) {
+            Note note = new Note("Note", 1, "Work");
+            note.addItem(new Item(description));
+            notes.add(note);
+        }
+        return notes;
+    }
+
+    @Test
+    void candidatesHaveEveryTrigramIgnoringCase() {
+        List<Note> notes = notesWithItems("Book flights", "Book hotel", "Buy a notebook", "Flight home");
+        DescriptionIndex index = new DescriptionIndex(notes);
+        assertArrayEquals(new int[]{0, 1, 2}, index.candidatesContaining("book"));
+        assertArrayEquals(new int[]{0, 3}, index.candidatesContaining("FLIGHT"));
+        assertArrayEquals(new int[0], index.candidatesContaining("train"));
+        assertNull(index.candidatesContaining("bo")); // too short to narrow down
+    }
+
+    @Test
+    void changesAreIndexedAsTheyHappen() {
+        List<Note> notes = notesWithItems("Book flights", "Book hotel", "Pack bags");
+        DescriptionIndex index = new DescriptionIndex(notes);
+
+        notes.get(2).addItem(new Item("Book taxi"));
+        index.itemsChanged(notes.get(2).getItems(), 2);
+        notes.remove(0);
+        index.noteDeleted(0);
+        Note added = new Note("Added", 1, "Work");
+        added.addItem(new Item("Book train"));
+        notes.add(added);
+        index.noteAdded(added.getItems(), 2);
+
+        assertArrayEquals(new int[]{0, 1, 2}, index.candidatesContaining("book"));
+        assertArrayEquals(new int[]{1}, index.candidatesContaining("taxi"));
+        assertArrayEquals(new int[0], index.candidatesContaining("flights"));
+
+        //trigrams of deleted and changed items are gone
+        notes.get(1).deleteItem(1);
+        index.itemsChanged(notes.get(1).getItems(), 1);
+        notes.get(0).updateItem(0, "Cancel hotel", false);
+        index.itemsChanged(notes.get(0).getItems(), 0);
+        assertArrayEquals(new int[0], index.candidatesContaining("taxi"));
+        assertArrayEquals(new int[]{2}, index.candidatesContaining("book"));
+        assertArrayEquals(new int[]{0}, index.candidatesContaining("cancel"));
+    }
+}
@@ -0,0 +1,433 @@
+package controllers;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import models.Item;
+import models.Note;
+
+/**
+ * The responsibility of the {@code MappedNoteList} class is to hold the notes of a binary snapshot
+ * ({@link StoreFormat#BINARY}) without reading them all up front.
+ * <p>
+ * The snapshot file is memory-mapped with {@link java.nio.channels.FileChannel#map}, so the operating system's page cache does the
+ * reading. The number of notes comes straight from the snapshot header, and a note is only decoded the first time it
+ * is asked for with {@link #get(int)}. Finding where a note starts only needs the length prefixes of the notes before
+ * it, so looking at the first few notes never touches the rest of the file. The note ID, archived flag and item
+ * counts are read from the header of each record, so totals and filters on them don't decode any notes.
+ * <p>
+ * The list can be changed like any other list. Notes that are added are kept in memory alongside the mapped ones, so
+ * the snapshot file itself is never written to. {@link NoteAPI#save()} replaces the snapshot with a new file rather
+ * than overwriting it, so the mapping stays valid after a save.
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+class MappedNoteList extends AbstractList<Note> implements RandomAccess {
+
+    /**
+     * Maps a binary snapshot file. Only the header is read here.
+     *
+     * @param file the binary snapshot to map
+     * @param lazyItems {@code true} to leave each decoded note's items unread until they are needed, see
+     * {@link NoteBinaryCodec#readNoteLazily(java.nio.ByteBuffer, int, short)}
+     * @param onDecode called with each note the first time it is decoded, e.g. to register a listener on it; or
+     * {@code null} for nothing, e.g. until a journal has been replayed, see {@link #setOnDecode(Consumer)}
+     * @throws IOException if the file can't be mapped, isn't a binary snapshot, or is too large to map
+     */
+    MappedNoteList(File file, boolean lazyItems, Consumer<Note> onDecode) throws IOException {
+        buffer = NoteBinaryCodec.map(file);
+        this.lazyItems = lazyItems;
+        this.onDecode = onDecode;
+        size = NoteBinaryCodec.checkHeader(buffer);
+        version = NoteBinaryCodec.versionOf(buffer);
+        mappedCount = size;
+        offsets = new int[size];
+        decoded = new Note[size];
+        nextScanOffset = NoteBinaryCodec.HEADER_LENGTH;
+    }
+
+    // -------------- LIST METHODS --------------
+
+    /**
+     * Gets the note at {@code index}, decoding it from the mapped file the first time it is asked for.
+     * @param index index of the note
+     * @return the note at that index
+     */
+    @Override
+    public synchronized Note get(int index) {
+        checkIndex(index, size);
+        Note note = decoded[index];
+        if (note == null) {
+            note = decode(offsetOf(index), lazyItems);
+            decoded[index] = note;
+            if (onDecode != null) {
+                onDecode.accept(note);
+            }
+        }
+        return note;
+    }
+
+    /**
+     * Gets the number of notes, without decoding any of them.
+     * @return the number of notes
+     */
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized Note set(int index, Note note) {
+        Note previous = get(index);
+        decoded[index] = note;
+        return previous;
+    }
+
+    @Override
+    public synchronized void add(int index, Note note) {
+        checkIndex(index, size + 1);
+        if (index < size) {
+            scanOffsetsTo(size - 1); // positions are about to shift
+        }
+        ensureCapacity(size + 1);
+        System.arraycopy(offsets, index, offsets, index + 1, size - index);
+        System.arraycopy(decoded, index, decoded, index + 1, size - index);
+        offsets[index] = IN_MEMORY;
+        decoded[index] = note;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public synchronized Note remove(int index) {
+        Note removed = get(index);
+        scanOffsetsTo(size - 1); // positions are about to shift
+        System.arraycopy(offsets, index + 1, offsets, index, size - index - 1);
+        System.arraycopy(decoded, index + 1, decoded, index, size - index - 1);
+        size--;
+        decoded[size] = null;
+        modCount++;
+        return removed;
+    }
+
+    /**
+     * Removes the notes at the given positions in a single pass, keeping the rest in order, without decoding any.
+     * @param positions the positions of the notes to remove
+     */
+    synchronized void removePositions(BitSet positions) {
+        scanOffsetsTo(size - 1); // positions are about to shift
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!(positions.get(i))) {
+                offsets[kept] = offsets[i];
+                decoded[kept] = decoded[i];
+                kept++;
+            }
+        }
+        Arrays.fill(decoded, kept, size, null);
+        size = kept;
+        modCount++;
+    }
+
+    /**
+     * Sets what is called with each note the first time it is decoded, and calls it now with every note already
+     * decoded or added, e.g. once a journal has been replayed onto the list and it is about to be used.
+     * @param onDecode called with each note in memory, e.g. to register a listener on it
+     */
+    synchronized void setOnDecode(Consumer<Note> onDecode) {
+        this.onDecode = onDecode;
+        forEachDecoded(onDecode);
+    }
+
+    /**
+     * Calls {@code action} for every note that has already been decoded or added, without decoding any others.
+     * @param action the action to run for each note in memory
+     */
+    synchronized void forEachDecoded(Consumer<Note> action) {
+        for (int i = 0; i < size; i++) {
+            if (decoded[i] != null) {
+                action.accept(decoded[i]);
+            }
+        }
+    }
+
+    /**
+     * Gets the items of the note at {@code index}, e.g. to index them, without keeping the note in memory if it
+     * hasn't been decoded yet.
+     * @param index index of the note
+     * @return the note's items, which must not be changed
+     */
+    synchronized List<Item> itemsAt(int index) {
+        checkIndex(index, size);
+        Note note = (decoded[index] != null) ? decoded[index] : decode(offsetOf(index), false);
+        return note.getItems();
+    }
+
+    // the header of the note at an index, read from its record without decoding it, or from the note once it has
+    // been decoded or added
+
+    synchronized int noteIdAt(int index) {
+        checkIndex(index, size);
+        return (decoded[index] != null) ? decoded[index].getNoteId()
+                : NoteBinaryCodec.noteIdOf(buffer, offsetOf(index) + 4, version);
+    }
+
+    synchronized boolean isArchivedAt(int index) {
+        checkIndex(index, size);
+        return (decoded[index] != null) ? decoded[index].isNoteArchived()
+                : NoteBinaryCodec.isArchived(buffer, offsetOf(index) + 4);
+    }
+
+    synchronized int numberOfItemsAt(int index) {
+        checkIndex(index, size);
+        return (decoded[index] != null) ? decoded[index].numberOfItems()
+                : NoteBinaryCodec.itemCountOf(buffer, offsetOf(index) + 4, version);
+    }
+
+    synchronized int numberOfCompletedItemsAt(int index) {
+        checkIndex(index, size);
+        return (decoded[index] != null) ? decoded[index].numberOfCompletedItems()
+                : NoteBinaryCodec.completedCountOf(buffer, offsetOf(index) + 4, version);
+    }
+
+    /**
+     * Gets the headers of all the notes to read without taking this list's lock, e.g. from several threads at once.
+     * The offsets of every record are found first, here, so the reads after that are plain absolute reads of the
+     * mapped file. The headers follow the list as it is now, so they should be read before the list next changes.
+     *
+     * @return the headers of the notes
+     */
+    synchronized Headers headers() {
+        scanOffsetsTo(size - 1);
+        return new Headers(offsets, decoded, size);
+    }
+
+    /**
+     * Counts the totals of all the notes from the record headers, without decoding any notes.
+     * @return the totals
+     */
+    synchronized NoteTotals totals() {
+        scanOffsetsTo(size - 1);
+        int archivedNotes = 0;
+        int items = 0;
+        int completedItems = 0;
+        for (int i = 0; i < size; i++) {
+            if (decoded[i] != null) {
+                archivedNotes += decoded[i].isNoteArchived() ? 1 : 0;
+                items += decoded[i].numberOfItems();
+                completedItems += decoded[i].numberOfCompletedItems();
+            }
+            else {
+                int offset = offsets[i] + 4;
+                archivedNotes += NoteBinaryCodec.isArchived(buffer, offset) ? 1 : 0;
+                items += NoteBinaryCodec.itemCountOf(buffer, offset, version);
+                completedItems += NoteBinaryCodec.completedCountOf(buffer, offset, version);
+            }
+        }
+        return new NoteTotals(archivedNotes, items, completedItems);
+    }
+
+    /**
+     * Takes a snapshot of the notes for a background save, without decoding any. Notes already decoded or added may
+     * still change, so they are copied now with {@code copier}. The rest are still only records in the mapped file,
+     * which a save replaces rather than overwrites, so the snapshot decodes each of them when it is asked for (on the
+     * saving thread), without caching it here or calling {@code onDecode}.
+     * <p>
+     * Only the record offsets are scanned, so the cost on the calling thread is the copies plus one offset per note.
+     *
+     * @param copier copies a note in memory
+     * @return the notes as they are now, in order
+     */
+    synchronized List<Note> snapshot(UnaryOperator<Note> copier) {
+        scanOffsetsTo(size - 1);
+        int[] snapshotOffsets = Arrays.copyOf(offsets, size);
+        Note[] copies = new Note[size];
+        for (int i = 0; i < size; i++) {
+            if (decoded[i] != null) {
+                copies[i] = copier.apply(decoded[i]);
+            }
+        }
+        return new AbstractList<Note>() {
+            @Override
+            public Note get(int index) {
+                return (copies[index] != null) ? copies[index] : decode(snapshotOffsets[index], false);
+            }
+
+            @Override
+            public int size() {
+                return copies.length;
+            }
+        };
+    }
+
+    /**
+     * Finds the position of a note by identity, looking only at notes that have already been decoded or added.
+     * @param note the note to find
+     * @return the index of the note, or -1 if it isn't in memory
+     */
+    synchronized int indexOfDecoded(Note note) {
+        for (int i = 0; i < size; i++) {
+            if (decoded[i] == note) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // -------------- HEADERS --------------
+
+    /**
+     * The archived flags and item counts of the notes, read from the record headers (or from the notes already decoded
+     * or added) without locking the list or decoding any notes, see {@link #headers()}.
+     */
+    final class Headers {
+        private Headers(int[] offsets, Note[] decoded, int size) {
+            this.offsets = offsets;
+            this.decoded = decoded;
+            this.size = size;
+        }
+
+        boolean isArchivedAt(int index) {
+            checkIndex(index, size);
+            Note note = decoded[index];
+            return (note != null) ? note.isNoteArchived() : NoteBinaryCodec.isArchived(buffer, offsets[index] + 4);
+        }
+
+        int numberOfItemsAt(int index) {
+            checkIndex(index, size);
+            Note note = decoded[index];
+            return (note != null) ? note.numberOfItems()
+                    : NoteBinaryCodec.itemCountOf(buffer, offsets[index] + 4, version);
+        }
+
+        int numberOfCompletedItemsAt(int index) {
+            checkIndex(index, size);
+            Note note = decoded[index];
+            return (note != null) ? note.numberOfCompletedItems()
+                    : NoteBinaryCodec.completedCountOf(buffer, offsets[index] + 4, version);
+        }
+
+        private final int[] offsets;
+        private final Note[] decoded;
+        private final int size;
+    }
+
+    // -------------- PRIVATE HELPERS --------------
+
+    /**
+     * Gets the offset of a note's record in the mapped file, scanning length prefixes as far as needed.
+     */
+    private int offsetOf(int index) {
+        scanOffsetsTo(index);
+        return offsets[index];
+    }
+
+    /**
+     * Finds the file offsets of all mapped notes up to and including {@code index}, by hopping over the length
+     * prefix of each record. Notes are not decoded.
+     * <p>
+     * Mapped notes are scanned in file order. Adding or removing a note in the middle of the list shifts positions,
+     * so {@link #add(int, Note)} and {@link #remove(int)} scan every offset first, and until then the next mapped note
+     * to scan is always at position {@link #scannedCount}.
+     */
+    private void scanOffsetsTo(int index) {
+        while ((scannedCount < mappedCount) && (scannedCount <= index)) {
+            offsets[scannedCount] = nextScanOffset;
+            nextScanOffset += 4 + buffer.getInt(nextScanOffset);
+            scannedCount++;
+        }
+    }
+
+    /**
+     * Decodes the note record starting at {@code offset} in the mapped file. Only absolute reads are made on the
+     * shared buffer, so records can be decoded on more than one thread.
+     */
+    private Note decode(int offset, boolean lazy) {
+        try {
+            if (lazy) {
+                return NoteBinaryCodec.readNoteLazily(buffer, offset + 4, version);
+            }
+            byte[] record = new byte[buffer.getInt(offset)];
+            buffer.get(offset + 4, record);
+            return NoteBinaryCodec.readNote(new DataInputStream(new ByteArrayInputStream(record)), version);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Corrupt note record at offset " + offset, e);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > offsets.length) {
+            int newCapacity = Math.max(capacity, offsets.length + (offsets.length >> 1) + 1);
+            offsets = Arrays.copyOf(offsets, newCapacity);
+            decoded = Arrays.copyOf(decoded, newCapacity);
+        }
+    }
+
+    private static void checkIndex(int index, int limit) {
+        if ((index < 0) || (index >= limit)) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (limit));
+        }
+    }
+
+    /**
+     * Offset value for notes that were added in memory and have no record in the mapped file.
+     */
+    private static final int IN_MEMORY = -1;
+
+    private final MappedByteBuffer buffer;
+
+    /**
+     * The format version the mapped file was written with.
+     */
+    private final short version;
+
+    /**
+     * Whether decoded notes leave their items unread until they are needed.
+     */
+    private final boolean lazyItems;
+
+    /**
+     * Called with each note the first time it is decoded, {@code null} for nothing, see {@link #setOnDecode(Consumer)}.
+     */
+    private Consumer<Note> onDecode;
+
+    /**
+     * File offset of each note's record ({@link #IN_MEMORY} for added notes), valid for the first
+     * {@link #scannedCount} mapped notes.
+     */
+    private int[] offsets;
+
+    /**
+     * Each note once it has been decoded or added, {@code null} until then.
+     */
+    private Note[] decoded;
+
+    private int size;
+
+    /**
+     * Number of notes in the mapped file.
+     */
+    private final int mappedCount;
+
+    /**
+     * Number of mapped notes whose offsets have been found so far.
+     */
+    private int scannedCount = 0;
+
+    /**
+     * File offset of the next record to scan.
+     */
+    private int nextScanOffset;
+}
@@ -0,0 +1,157 @@
+package controllers;
+
+import models.Item;
+import models.Note;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedNoteListTest {
+
+    @TempDir
+    File tempDir;
+
+    private File writeSnapshot(int noteCount) throws IOException {
+        ArrayList<Note> notes = new ArrayList<Note>();
+        for (int i = 0; i < noteCount; i++) {
+            Note note = new Note("Note " + i, (i % 5) + 1, "Work");
+            note.setNoteId(i + 1);
+            note.addItem(new Item("Item " + i, (i % 2) == 0));
+            notes.add(note);
+        }
+        File file = new File(tempDir, "notes.dat");
+        try (OutputStream out = new FileOutputStream(file)) {
+            NoteBinaryCodec.write(notes, out);
+        }
+        return file;
+    }
+
+    @Test
+    void notesAreOnlyDecodedWhenAskedFor() throws IOException {
+        ArrayList<Note> decodedNotes = new ArrayList<Note>();
+        MappedNoteList notes = new MappedNoteList(writeSnapshot(100), false, decodedNotes::add);
+        assertEquals(100, notes.size());
+        assertTrue(decodedNotes.isEmpty());
+
+        assertEquals("Note 42", notes.get(42).getNoteTitle());
+        assertSame(notes.get(42), notes.get(42));
+        assertEquals(1, decodedNotes.size());
+        assertEquals("Item 42", notes.get(42).findItem(0).getItemDescription());
+    }
+
+    @Test
+    void totalsAreReadFromRecordHeaders() throws IOException {
+        ArrayList<Note> decodedNotes = new ArrayList<Note>();
+        MappedNoteList notes = new MappedNoteList(writeSnapshot(10), true, decodedNotes::add);
+        assertFalse(notes.isArchivedAt(4));
+        assertEquals(5, notes.noteIdAt(4));
+        assertEquals(1, notes.numberOfItemsAt(4));
+        assertEquals(1, notes.numberOfCompletedItemsAt(4));
+        assertEquals(0, notes.numberOfCompletedItemsAt(5));
+        NoteTotals totals = notes.totals();
+        assertEquals(0, totals.getArchivedNotes());
+        assertEquals(10, totals.getItems());
+        assertEquals(5, totals.getCompletedItems());
+        assertTrue(decodedNotes.isEmpty());
+
+        // once decoded, the note holds the header
+        notes.get(5).setNoteArchived(true);
+        notes.get(5).addItem(new Item("Another", true));
+        assertTrue(notes.isArchivedAt(5));
+        assertEquals(2, notes.numberOfItemsAt(5));
+        totals = notes.totals();
+        assertEquals(1, totals.getArchivedNotes());
+        assertEquals(11, totals.getItems());
+        assertEquals(6, totals.getCompletedItems());
+        assertEquals(1, decodedNotes.size());
+    }
+
+    @Test
+    void headersAreReadWithoutTheListsLock() throws IOException {
+        ArrayList<Note> decodedNotes = new ArrayList<Note>();
+        MappedNoteList notes = new MappedNoteList(writeSnapshot(1000), true, decodedNotes::add);
+        notes.get(1).setNoteArchived(true);
+        MappedNoteList.Headers headers = notes.headers();
+
+        // the reads of other threads don't wait for the thread holding the list's lock
+        long completed = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            synchronized (notes) {
+                return IntStream.range(0, 1000).parallel()
+                        .filter(i -> headers.numberOfCompletedItemsAt(i) == headers.numberOfItemsAt(i)).count();
+            }
+        });
+        assertEquals(500, completed);
+        assertTrue(headers.isArchivedAt(1));
+        assertFalse(headers.isArchivedAt(2));
+        assertEquals(1, decodedNotes.size());
+    }
+
+    @Test
+    void addingAndRemovingKeepsPositions() throws IOException {
+        MappedNoteList notes = new MappedNoteList(writeSnapshot(10), false, null);
+        notes.add(new Note("Appended", 1, "Home"));
+        notes.add(3, new Note("Inserted", 1, "Home"));
+        notes.remove(0);
+
+        assertEquals(11, notes.size());
+        assertEquals("Note 1", notes.get(0).getNoteTitle());
+        assertEquals("Inserted", notes.get(2).getNoteTitle());
+        assertEquals("Note 3", notes.get(3).getNoteTitle());
+        assertEquals("Note 9", notes.get(9).getNoteTitle());
+        assertEquals("Appended", notes.get(10).getNoteTitle());
+    }
+
+    @Test
+    void removingPositionsKeepsTheRestInOrder() throws IOException {
+        ArrayList<Note> decodedNotes = new ArrayList<Note>();
+        MappedNoteList notes = new MappedNoteList(writeSnapshot(10), false, decodedNotes::add);
+        BitSet positions = new BitSet();
+        positions.set(1);
+        positions.set(8);
+        notes.removePositions(positions);
+
+        assertEquals(8, notes.size());
+        assertTrue(decodedNotes.isEmpty());
+        assertEquals("Note 0", notes.get(0).getNoteTitle());
+        assertEquals("Note 2", notes.get(1).getNoteTitle());
+        assertEquals("Note 9", notes.get(7).getNoteTitle());
+    }
+
+    @Test
+    void snapshotDecodesNothingAndKeepsLaterChangesOut() throws IOException {
+        ArrayList<Note> decodedNotes = new ArrayList<Note>();
+        MappedNoteList notes = new MappedNoteList(writeSnapshot(10), true, decodedNotes::add);
+        notes.get(3).setNoteTitle("Changed");
+        notes.add(new Note("Appended", 1, "Home"));
+        List<Note> snapshot = notes.snapshot(note -> new Note(note.getNoteTitle(), note.getNotePriority(),
+                note.getNoteCategory()));
+        assertEquals(1, decodedNotes.size());
+
+        notes.get(3).setNoteTitle("Changed Again");
+        assertEquals(11, snapshot.size());
+        assertEquals("Changed", snapshot.get(3).getNoteTitle());
+        assertEquals("Appended", snapshot.get(10).getNoteTitle());
+        assertEquals("Item 7", snapshot.get(7).findItem(0).getItemDescription());
+        assertEquals(1, decodedNotes.size()); // notes read from the snapshot aren't decoded into the list
+    }
+
+    @Test
+    void mappingSomethingElseThrowsIOException() throws IOException {
+        File file = new File(tempDir, "notes.xml");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write("<object-stream/>".getBytes());
+        }
+        assertThrows(IOException.class, () -> new MappedNoteList(file, false, null));
+    }
+}
@@ -1,21 +1,47 @@
 package controllers;
 
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.InterruptedIOException;
 import java.io.IOException;
 import java.lang.ClassNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 import com.thoughtworks.xstream.XStream;
-import com.thoughtworks.xstream.io.xml.DomDriver;
 
 import models.Item;
 import models.Note;
+import models.NoteListener;
 
 import java.util.ArrayList;
-
-import static utils.CategoryUtility.isValidCategory;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static utils.CategoryUtility.NO_CATEGORY;
+import static utils.CategoryUtility.categoryId;
+import static utils.Rendering.render;
 import static utils.Utilities.validRange;
 
 /**
@@ -30,7 +56,8 @@ import static utils.Utilities.validRange;
  *   <li>Listing methods to display notes or items based on various conditions, such as category, priority, and item
  *   completion state.</li>
  *   <li>Searching methods to find notes by title or items by description.</li>
- *   <li>Persistence methods to save and load notes from an XML file using {@code XStream}.</li>
+ *   <li>Persistence methods to save and load notes from an XML file using {@code XStream}, or from a compact binary
+ *   snapshot (see {@link StoreFormat}).</li>
  * </ul>
  *
  * <h4>Purpose:</h4>
@@ -55,6 +82,8 @@ public class NoteAPI {
 
     /**
      * Adds a {@link Note} object to the notes collection.
+     * The note keeps its ID (see {@link Note#getNoteId()}) if no other stored note has it, otherwise it is given a
+     * new one.
      *
      * @param note note to add
      * @return {@code true} if the {@link Note} was successfully added, {@code false} otherwise
@@ -62,7 +91,17 @@ public class NoteAPI {
     public boolean add(Note note) {
         //This method adds a note object to the ArrayList notes and returns
         // the boolean result of the add.
-        return notes.add(note);
+        assignNoteId(note, notes.size());
+        boolean added = notes.add(note);
+        if (added) {
+            note.addNoteListener(noteChangeHandler);
+            indexAdded(note, notes.size() - 1);
+            dirty = true;
+            if (journalEnabled) {
+                journal.recordAdd(note);
+            }
+        }
+        return added;
     }
 
     /**
@@ -85,9 +124,16 @@ public class NoteAPI {
              true to indicate a successful update.
          */
         if (isValidIndex(indexToUpdate)) {
-            notes.get(indexToUpdate).setNoteTitle(noteTitle);
-            notes.get(indexToUpdate).setNotePriority(notePriority);
-            notes.get(indexToUpdate).setNoteCategory(noteCategory);
+            Note noteToUpdate = notes.get(indexToUpdate);
+            changeJournaledHere(() -> { // journaled once below, rather than once per changed field
+                noteToUpdate.setNoteTitle(noteTitle);
+                noteToUpdate.setNotePriority(notePriority);
+                noteToUpdate.setNoteCategory(noteCategory);
+            });
+            dirty = true;
+            if (journalEnabled) {
+                journal.recordUpdate(indexToUpdate, noteTitle, notePriority, noteCategory);
+            }
             return true;
         }
         return false;
@@ -108,10 +154,16 @@ public class NoteAPI {
            notes list, then null should be returned. */
         if (isValidIndex(indexToDelete)) {
             Note noteToDelete = notes.get(indexToDelete);
-            for (int i = 0; i < noteToDelete.getItems().size(); i++) {
-                noteToDelete.deleteItem(i);
-            }
+            // stop listening first, the cascading item deletes below belong to a note that is no longer stored
+            noteToDelete.removeNoteListener(noteChangeHandler);
+            indexDeleted(noteToDelete, indexToDelete); // while the note still has its items
+            deleteItemsOf(noteToDelete);
             notes.remove(indexToDelete);
+            idDeleted(noteToDelete, indexToDelete);
+            dirty = true;
+            if (journalEnabled) {
+                journal.recordDelete(indexToDelete);
+            }
             return noteToDelete;
         }
         else {
@@ -143,7 +195,11 @@ public class NoteAPI {
         if (isValidIndex(indexToArchive)) {
             Note noteToArchive = notes.get(indexToArchive);
             if (!(noteToArchive.isNoteArchived()) && (noteToArchive.checkNoteCompletionStatus())) {
-                noteToArchive.setNoteArchived(true);
+                changeJournaledHere(() -> noteToArchive.setNoteArchived(true));
+                dirty = true;
+                if (journalEnabled) {
+                    journal.recordArchive(indexToArchive);
+                }
                 return true;
             }
         }
@@ -173,19 +229,25 @@ public class NoteAPI {
             return "No active notes stored";
         }
 
-        String archivedNotesString = "Archived Notes:\n";
+        StringBuilder archivedNotesString = new StringBuilder("Archived Notes:\n");
         boolean archivedANoteFlag = false;
 
-        for (Note note : notes) {
-            if (!(note.isNoteArchived()) && (note.checkNoteCompletionStatus())) {
-                archivedANoteFlag = true;
-                note.setNoteArchived(true);
-                archivedNotesString += note.toString();
+        for (int i = 0; i < notes.size(); i++) {
+            if (isArchivedAt(i) || !(isCompletedAt(i))) {
+                continue; // checked without creating or decoding the note
             }
+            Note note = notes.get(i);
+            archivedANoteFlag = true;
+            changeJournaledHere(() -> note.setNoteArchived(true));
+            dirty = true;
+            if (journalEnabled) {
+                journal.recordArchive(i);
+            }
+            archivedNotesString.append(note.toString());
         }
 
         if (archivedANoteFlag) {
-            return archivedNotesString;
+            return archivedNotesString.toString();
         }
         else { // Runs only if there are active notes, but no active note is archived
             return "No active notes eligible for archive";
@@ -193,6 +255,293 @@ public class NoteAPI {
 
     }
 
+    /**
+     * Archives all active notes that have all items completed, like {@link #archiveNotesWithAllItemsComplete()}, but
+     * looks for the eligible notes in parallel and leaves rendering to the caller.
+     * <p>
+     * The notes are split into ranges of {@link #PARALLEL_THRESHOLD} notes, which are checked as tasks on the common
+     * {@link ForkJoinPool}. The notes of a {@link MappedNoteList} are checked from their record headers, which the
+     * tasks read without taking the list's lock, see {@link MappedNoteList#headers()}, so they neither wait for each
+     * other nor decode any notes. The eligible notes are then archived on the calling thread, in order, as archiving
+     * is seen by listeners, the totals and the journal, none of which are thread-safe. Notes must not be changed by
+     * other threads while this runs.
+     *
+     * @return the archived notes, which can be rendered in the format of
+     * {@link #archiveNotesWithAllItemsComplete()} with {@link ArchiveResult#appendTo(Appendable)}
+     */
+    public ArchiveResult archiveNotesWithAllItemsCompleteInParallel() {
+        if (notes.isEmpty() || (numberOfActiveNotes() == 0)) {
+            return new ArchiveResult(new ArrayList<Note>(), false);
+        }
+        MappedNoteList.Headers headers = (notes instanceof MappedNoteList) ? ((MappedNoteList) notes).headers() : null;
+        int[] eligible = ForkJoinPool.commonPool().invoke(new EligibleNotesTask(0, notes.size(), headers));
+        ArrayList<Note> archived = new ArrayList<Note>(eligible.length);
+        for (int position : eligible) {
+            Note note = notes.get(position);
+            changeJournaledHere(() -> note.setNoteArchived(true));
+            if (journalEnabled) {
+                journal.recordArchive(position);
+            }
+            archived.add(note);
+        }
+        if (!archived.isEmpty()) {
+            dirty = true;
+        }
+        return new ArchiveResult(archived, true);
+    }
+
+    /**
+     * Finds the positions of the active notes with all items completed in a range of the notes, splitting ranges
+     * longer than {@link #PARALLEL_THRESHOLD} in two and checking the halves in parallel. The headers of a
+     * {@link MappedNoteList}, if given, are read instead of the notes.
+     */
+    private class EligibleNotesTask extends RecursiveTask<int[]> {
+        EligibleNotesTask(int from, int to, MappedNoteList.Headers headers) {
+            this.from = from;
+            this.to = to;
+            this.headers = headers;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                int[] found = new int[to - from];
+                int count = 0;
+                for (int i = from; i < to; i++) {
+                    if (isEligible(i)) {
+                        found[count++] = i;
+                    }
+                }
+                return Arrays.copyOf(found, count);
+            }
+            int middle = (from + to) >>> 1;
+            EligibleNotesTask firstHalf = new EligibleNotesTask(from, middle, headers);
+            firstHalf.fork();
+            int[] secondFound = new EligibleNotesTask(middle, to, headers).compute();
+            int[] firstFound = firstHalf.join();
+            int[] found = Arrays.copyOf(firstFound, firstFound.length + secondFound.length);
+            System.arraycopy(secondFound, 0, found, firstFound.length, secondFound.length);
+            return found;
+        }
+
+        private boolean isEligible(int position) {
+            if (headers != null) {
+                return !(headers.isArchivedAt(position))
+                        && (headers.numberOfCompletedItemsAt(position) == headers.numberOfItemsAt(position));
+            }
+            return !(isArchivedAt(position)) && isCompletedAt(position);
+        }
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final MappedNoteList.Headers headers;
+    }
+
+    // -------------- ID METHODS --------------
+
+    /**
+     * Finds a {@link Note} by its ID (see {@link Note#getNoteId()}), which, unlike its index, doesn't change when
+     * other notes are deleted. Constant time.
+     *
+     * @param noteId ID of the note to find
+     * @return the {@link Note} with that ID, or {@code null} if no stored note has it
+     */
+    public Note findNoteById(int noteId) {
+        IdEntry entry = notesById().get(noteId);
+        return (entry == null) ? null : entry.note;
+    }
+
+    /**
+     * Updates the title, priority, and category of the {@link Note} with the given ID, like
+     * {@link #updateNote(int, String, int, String)}.
+     *
+     * @param noteId       ID of the note to update
+     * @param noteTitle    new title for the note
+     * @param notePriority new priority for the note (1 to 5)
+     * @param noteCategory new category for the note (one of the valid categories)
+     * @return {@code true} if the update was successful; {@code false} if no stored note has the ID
+     */
+    public boolean updateNoteById(int noteId, String noteTitle, int notePriority, String noteCategory) {
+        IdEntry entry = notesById().get(noteId);
+        if (entry == null) {
+            return false;
+        }
+        Note noteToUpdate = entry.note;
+        changeJournaledHere(() -> { // journaled once below, rather than once per changed field
+            noteToUpdate.setNoteTitle(noteTitle);
+            noteToUpdate.setNotePriority(notePriority);
+            noteToUpdate.setNoteCategory(noteCategory);
+        });
+        dirty = true;
+        if (journalEnabled) {
+            journal.recordUpdate(positionOf(entry), noteTitle, notePriority, noteCategory);
+        }
+        return true;
+    }
+
+    /**
+     * Deletes the {@link Note} with the given ID, and its items, like {@link #deleteNote(int)}.
+     *
+     * @param noteId ID of the note to delete
+     * @return the deleted {@link Note}, or {@code null} if no stored note has the ID
+     */
+    public Note deleteNoteById(int noteId) {
+        IdEntry entry = notesById().get(noteId);
+        return (entry == null) ? null : deleteNote(positionOf(entry));
+    }
+
+    /**
+     * Archives the {@link Note} with the given ID, under the same conditions as {@link #archiveNote(int)}: it must
+     * not be archived already, and all its items must be completed.
+     *
+     * @param noteId ID of the note to archive
+     * @return {@code true} if the note was archived, {@code false} otherwise
+     */
+    public boolean archiveNoteById(int noteId) {
+        Note noteToArchive = findNoteById(noteId);
+        if ((noteToArchive == null) || noteToArchive.isNoteArchived() || !(noteToArchive.checkNoteCompletionStatus())) {
+            return false;
+        }
+        noteToArchive.setNoteArchived(true); // dirty and journaled by the NoteChangeHandler, see positionOf
+        return true;
+    }
+
+    // -------------- BULK METHODS --------------
+
+    /**
+     * Adds several notes at once, e.g. when importing, as {@link #add(Note)} would one at a time. The notes
+     * collection grows once, and the indexes are rebuilt once, when next needed, rather than updated note by note.
+     *
+     * @param notesToAdd the notes to add, in order
+     * @return {@code true} if any notes were added, {@code false} if {@code notesToAdd} is empty
+     */
+    public boolean addAll(Collection<Note> notesToAdd) {
+        if (notesToAdd.isEmpty()) {
+            return false;
+        }
+        if (notes instanceof ArrayList) {
+            ((ArrayList<Note>) notes).ensureCapacity(notes.size() + notesToAdd.size());
+        }
+        for (Note note : notesToAdd) {
+            assignNoteId(note, notes.size());
+            notes.add(note);
+            note.addNoteListener(noteChangeHandler);
+            if (totals != null) {
+                totals.noteAdded(note);
+            }
+            if (journalEnabled) {
+                journal.recordAdd(note);
+            }
+        }
+        dropIndexes();
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * Deletes every note that passes {@code filter}, and their items, like {@link #deleteNote(int)} would one at a
+     * time, but in a single pass over the notes rather than an {@link ArrayList#remove(int)} (and a shift of every
+     * later note and index position) per note. The notes are removed in place, so a memory-mapped or columnar store
+     * (see {@link #setMemoryMapped(boolean)} and {@link #setColumnarStorage(boolean)}) stays one. The indexes are
+     * rebuilt once, when next needed.
+     *
+     * @param filter picks the notes to delete; all notes are checked before any is deleted
+     * @return the deleted notes, in the order they were stored, empty if none passed {@code filter}
+     */
+    public ArrayList<Note> deleteWhere(Predicate<Note> filter) {
+        BitSet toDelete = new BitSet(notes.size());
+        for (int i = 0; i < notes.size(); i++) {
+            if (filter.test(noteToRead(i))) {
+                toDelete.set(i);
+            }
+        }
+        ArrayList<Note> deleted = new ArrayList<Note>(toDelete.cardinality());
+        if (toDelete.isEmpty()) {
+            return deleted;
+        }
+
+        for (int i = toDelete.nextSetBit(0); i >= 0; i = toDelete.nextSetBit(i + 1)) {
+            Note note = notes.get(i);
+            note.removeNoteListener(noteChangeHandler);
+            if (totals != null) {
+                totals.noteDeleted(note);
+            }
+            deleteItemsOf(note);
+            if (journalEnabled) {
+                journal.recordDelete(i - deleted.size()); // its index once the notes before it were deleted
+            }
+            deleted.add(note);
+        }
+        int oldSize = notes.size();
+        removePositions(toDelete);
+        idsDeleted(deleted, toDelete, oldSize);
+        dropIndexes();
+        dirty = true;
+        return deleted;
+    }
+
+    /**
+     * Applies {@code change} to every note that passes {@code filter}, e.g.
+     * {@code updateWhere(note -> note.getNotePriority() == 1, note -> note.setNoteCategory("College"))}.
+     * Title, category and priority indexes that the changes affect are rebuilt once, when next needed, rather than
+     * updated note by note.
+     * <p>
+     * {@code change} may use any {@link Note} method, but must not add or delete notes.
+     *
+     * @param filter picks the notes to change
+     * @param change the change to make to each of them
+     * @return the number of notes changed
+     */
+    public int updateWhere(Predicate<Note> filter, Consumer<Note> change) {
+        int updated = 0;
+        boolean wasBatching = batching;
+        batching = true;
+        try {
+            for (int i = 0; i < notes.size(); i++) {
+                if (!(filter.test(noteToRead(i)))) {
+                    continue;
+                }
+                Note note = notes.get(i);
+                boolean wasArchived = note.isNoteArchived();
+                change.accept(note);
+                updated++;
+                dirty = true;
+                if (journalEnabled) {
+                    journal.recordUpdate(i, note.getNoteTitle(), note.getNotePriority(), note.getNoteCategory());
+                    if (note.isNoteArchived() && !wasArchived) {
+                        journal.recordArchive(i);
+                    }
+                    else if (wasArchived && !(note.isNoteArchived())) {
+                        journalAttached = false; // the journal can't record un-archiving, so save the whole store
+                    }
+                }
+            }
+        }
+        finally {
+            batching = wasBatching;
+        }
+        return updated;
+    }
+
+    /**
+     * Marks every item of every note that passes {@code filter} as completed, with one change per note (see
+     * {@link Note#completeAllItems()}) rather than one per item.
+     *
+     * @param filter picks the notes whose items to complete
+     * @return the number of items that were TODO, and are now completed
+     */
+    public int completeAllItemsWhere(Predicate<Note> filter) {
+        int completed = 0;
+        for (int i = 0; i < notes.size(); i++) {
+            if (filter.test(noteToRead(i))) {
+                completed += notes.get(i).completeAllItems();
+            }
+        }
+        return completed;
+    }
+
 // -------------- END OF CRUD METHODS --------------
 
 // -------------- START OF COUNTING METHODS --------------
@@ -215,18 +564,10 @@ public class NoteAPI {
     public int numberOfArchivedNotes() {
         // returns the number of ARCHIVED notes stored in the notes ArrayList
         // (i.e. where isNoteArchived is set to true).
-        int archiveCtr = 0;
         if ((notes == null) || (notes.isEmpty())) {
-            return archiveCtr;
-        }
-        else {
-            for (Note note : notes) {
-                if (note.isNoteArchived()) {
-                    archiveCtr++;
-                }
-            }
-            return archiveCtr;
+            return 0;
         }
+        return totals().getArchivedNotes(); // constant time, see totals()
     }
 
     /**
@@ -237,18 +578,10 @@ public class NoteAPI {
     public int numberOfActiveNotes() {
         // returns the number of ACTIVE notes stored in the notes ArrayList
         // (i.e. where isNoteArchived is set to false).
-        int activeCtr = 0;
         if ((notes == null) || (notes.isEmpty())) {
-            return activeCtr;
-        }
-        else {
-            for (Note note : notes) {
-                if (!(note.isNoteArchived())) {
-                    activeCtr++;
-                }
-            }
-            return activeCtr;
+            return 0;
         }
+        return notes.size() - totals().getArchivedNotes();
     }
 
     /**
@@ -260,20 +593,11 @@ public class NoteAPI {
      */
     public int numberOfNotesByCategory(String category) {
         // returns the number of notes that are stored for the category passed as a parameter.
-        int categoryCtr = 0;
-        if ((notes == null) || (notes.isEmpty())) {
-            return categoryCtr;
-        }
-        else {
-            if (isValidCategory(category)) {
-                for (Note note : notes) {
-                    if (note.getNoteCategory().equals(category)) {
-                        categoryCtr++;
-                    }
-                }
-            }
-            return categoryCtr;
+        int categoryId = categoryId(category);
+        if ((notes == null) || (notes.isEmpty()) || (categoryId == NO_CATEGORY)) {
+            return 0;
         }
+        return categoryIndex().count(categoryId); // constant time, see categoryIndex()
     }
 
     /**
@@ -286,20 +610,10 @@ public class NoteAPI {
     public int numberOfNotesByPriority(int priority) {
         // returns the number of notes that are stored for the priority passed
         // as a parameter.
-        int priorityCtr = 0;
-        if ((notes == null) || (notes.isEmpty())) {
-            return priorityCtr;
-        }
-        else {
-            if (validRange(priority, 1, 5)) {
-                for (Note note : notes) {
-                    if (note.getNotePriority() == priority) {
-                        priorityCtr++;
-                    }
-                }
-            }
-            return priorityCtr;
+        if ((notes == null) || (notes.isEmpty()) || !(validRange(priority, 1, 5))) {
+            return 0;
         }
+        return priorityIndex().count(priority); // constant time, see priorityIndex()
     }
 
     /**
@@ -310,16 +624,10 @@ public class NoteAPI {
     public int numberOfItems() {
         // adds up the number of items stored on ALL the notes in the ArrayList
         // and returns it.
-        int totalItemsCtr = 0;
         if ((notes == null) || (notes.isEmpty())) {
-            return totalItemsCtr;
-        }
-        else {
-            for (Note note : notes) {
-                totalItemsCtr += note.getItems().size();
-            }
-            return totalItemsCtr;
+            return 0;
         }
+        return totals().getItems(); // constant time, see totals()
     }
 
     /**
@@ -330,22 +638,10 @@ public class NoteAPI {
     public int numberOfCompleteItems() {
         // adds up the number of items stored on ALL the notes in the ArrayList where
         // isItemCompleted is set to true. The number is then returned.
-        int totalItemsCompleteCtr = 0;
         if ((notes == null) || (notes.isEmpty())) {
-            return totalItemsCompleteCtr;
-        }
-        else {
-            for (Note note : notes) {
-                if ((note.getItems() != null) && !(note.getItems().isEmpty())) {
-                    for (Item item : note.getItems()) {
-                        if (item.isItemCompleted()) {
-                            totalItemsCompleteCtr++;
-                        }
-                    }
-                }
-            }
-            return totalItemsCompleteCtr;
+            return 0;
         }
+        return totals().getCompletedItems(); // constant time, see totals()
     }
 
     /**
@@ -356,22 +652,11 @@ public class NoteAPI {
     public int numberOfTodoItems() {
         // adds up the number of items stored on ALL the notes in the ArrayList where
         // isItemCompleted is set to false. The number is then returned.
-        int totalItemsToDoCtr = 0;
         if ((notes == null) || (notes.isEmpty())) {
-            return totalItemsToDoCtr;
-        }
-        else {
-            for (Note note : notes) {
-                if ((note.getItems() != null) && !(note.getItems().isEmpty())) {
-                    for (Item item : note.getItems()) {
-                        if (!(item.isItemCompleted())) {
-                            totalItemsToDoCtr++;
-                        }
-                    }
-                }
-            }
-            return totalItemsToDoCtr;
+            return 0;
         }
+        NoteTotals currentTotals = totals();
+        return currentTotals.getItems() - currentTotals.getCompletedItems();
     }
 
 // -------------- END OF COUNTING METHODS --------------
@@ -385,6 +670,17 @@ public class NoteAPI {
      * @return formatted string of all notes or "No notes stored"
      */
     public String listAllNotes() {
+        return render(this::listAllNotes);
+    }
+
+    /**
+     * Writes all notes to {@code out}, in the format of {@link #listAllNotes()}, without building the listing as a String
+     * first.
+     *
+     * @param out where to write the listing, e.g. a buffered {@code System.out}
+     * @throws IOException if {@code out} can't be written to
+     */
+    public void listAllNotes(Appendable out) throws IOException {
         /*
         ==>> If the notes list is:
             ==>> empty, the String “No notes stored” is returned.
@@ -392,17 +688,13 @@ public class NoteAPI {
                  (including their index number)
         */
         if ((notes == null) || (notes.isEmpty())) {
-            return "\tNo notes stored";
+            out.append("\tNo notes stored");
+            return;
         }
 
-        String allNotes = "";
-
         for (int i = 0; i < notes.size(); i++) {
-            Note note = notes.get(i);
-            allNotes += i + ": " + note.toString();
+            appendListed(out, i);
         }
-
-        return allNotes;
     }
 
     /**
@@ -412,6 +704,17 @@ public class NoteAPI {
      * @return a formatted string of active notes or "No active notes stored"
      */
     public String listActiveNotes() {
+        return render(this::listActiveNotes);
+    }
+
+    /**
+     * Writes the active notes to {@code out}, in the format of {@link #listActiveNotes()}, without building the listing as a String
+     * first.
+     *
+     * @param out where to write the listing, e.g. a buffered {@code System.out}
+     * @throws IOException if {@code out} can't be written to
+     */
+    public void listActiveNotes(Appendable out) throws IOException {
         /*
         If the notes ArrayList is checked to see if Active notes are stored.
         ==>>If active notes:
@@ -420,18 +723,15 @@ public class NoteAPI {
             ==>>don’t exist, the String “No active notes stored” is returned.
          */
         if ((notes == null) || (notes.isEmpty()) || (numberOfActiveNotes() == 0)) {
-            return "No active notes stored";
+            out.append("No active notes stored");
+            return;
         }
 
-        String activeNotes = "";
-
-        for (Note note : notes) {
-            if (note.isNoteArchived() == false) {
-                activeNotes += notes.indexOf(note) + ": " + note.toString();
+        for (int i = 0; i < notes.size(); i++) {
+            if (isArchivedAt(i) == false) {
+                appendListed(out, i);
             }
         }
-
-        return activeNotes;
     }
 
     /**
@@ -441,22 +741,31 @@ public class NoteAPI {
      * @return a formatted string of archived notes or "No archived notes stored"
      */
     public String listArchivedNotes() {
+        return render(this::listArchivedNotes);
+    }
+
+    /**
+     * Writes the archived notes to {@code out}, in the format of {@link #listArchivedNotes()}, without building the listing as a String
+     * first.
+     *
+     * @param out where to write the listing, e.g. a buffered {@code System.out}
+     * @throws IOException if {@code out} can't be written to
+     */
+    public void listArchivedNotes(Appendable out) throws IOException {
         /*
         The functionality of this method is the same as the listActiveNotes()
         functionality, except you are dealing with Archived notes, not active ones.
          */
         if ((notes == null) || (notes.isEmpty()) || (numberOfArchivedNotes() == 0)) {
-            return "No archived notes stored";
+            out.append("No archived notes stored");
+            return;
         }
 
-        String archivedNotes = "";
-
-        for (Note note : notes) {
-            if (note.isNoteArchived()) {
-                archivedNotes += notes.indexOf(note) + ": " + note.toString();
+        for (int i = 0; i < notes.size(); i++) {
+            if (isArchivedAt(i)) {
+                appendListed(out, i);
             }
         }
-        return archivedNotes;
     }
 
     /**
@@ -471,6 +780,18 @@ public class NoteAPI {
      * @return a formatted string of notes in that category or the appropriate message if none relevant
      */
     public String listNotesBySelectedCategory(String category) {
+        return render(out -> listNotesBySelectedCategory(category, out));
+    }
+
+    /**
+     * Writes the notes of a category to {@code out}, in the format of {@link #listNotesBySelectedCategory(String)}, without building the listing as a String
+     * first.
+     *
+     * @param category the category to filter by
+     * @param out where to write the listing, e.g. a buffered {@code System.out}
+     * @throws IOException if {@code out} can't be written to
+     */
+    public void listNotesBySelectedCategory(String category, Appendable out) throws IOException {
         /*
         ==>> If the notes list is:
             ==>> empty, the String “No notes stored” is returned.
@@ -479,24 +800,23 @@ public class NoteAPI {
                 (including their index number). A nice touch would be to include the number of notes in that category.
         */
         if ((notes == null) || (notes.isEmpty())) {
-            return "No notes stored";
+            out.append("No notes stored");
+            return;
         }
-        if (!(isValidCategory(category)) || (numberOfNotesByCategory(category) == 0)) {
-            return "No notes with category " + category;
+        int categoryId = categoryId(category);
+        int[] categoryPositions = (categoryId != NO_CATEGORY) ? categoryIndex().positions(categoryId) : new int[0];
+        if (categoryPositions.length == 0) {
+            out.append("No notes with category ").append(category);
+            return;
         }
 
-        String notesByCategory = "";
-
-        int categoryNoteCount = numberOfNotesByCategory(category);
-        notesByCategory += categoryNoteCount + " notes with category " + category+ ":\n";
+        out.append(Integer.toString(categoryPositions.length)).append(" notes with category ").append(category)
+                .append(":\n");
 
-        for (int i = 0; i < notes.size(); i++) {
-            Note note = notes.get(i);
-            if (note.getNoteCategory().equals(category)) {
-                notesByCategory += notes.indexOf(note) + ": " + note.toString();
-            }
+        // only the notes of the category are looked at
+        for (int position : categoryPositions) {
+            appendListed(out, position);
         }
-        return notesByCategory;
     }
 
     /**
@@ -511,31 +831,41 @@ public class NoteAPI {
      * @return a formatted string of notes matching the priority or relevant message if none found
      */
     public String listNotesBySelectedPriority(int priority) {
+        return render(out -> listNotesBySelectedPriority(priority, out));
+    }
+
+    /**
+     * Writes the notes of a priority to {@code out}, in the format of {@link #listNotesBySelectedPriority(int)}, without building the listing as a String
+     * first.
+     *
+     * @param priority the priority to filter by [1 to 5]
+     * @param out where to write the listing, e.g. a buffered {@code System.out}
+     * @throws IOException if {@code out} can't be written to
+     */
+    public void listNotesBySelectedPriority(int priority, Appendable out) throws IOException {
         /*
         The functionality of this method is the same as the
         listNotesBySelectedCategory(String category) functionality, except you are
         dealing with Priority, not Category.
          */
         if ((notes == null) || (notes.isEmpty())) {
-            return "No notes stored";
+            out.append("No notes stored");
+            return;
         }
 
-        if (!(validRange(priority, 1, 5)) || (numberOfNotesByPriority(priority) == 0)) {
-            return "No notes with priority " + priority;
+        int[] priorityPositions = validRange(priority, 1, 5) ? priorityIndex().positions(priority) : new int[0];
+        if (priorityPositions.length == 0) {
+            out.append("No notes with priority ").append(Integer.toString(priority));
+            return;
         }
 
-        String notesByPriority = "";
+        out.append(Integer.toString(priorityPositions.length)).append(" notes with priority ")
+                .append(Integer.toString(priority)).append(":\n");
 
-        int priorityNoteCount = numberOfNotesByPriority(priority);
-        notesByPriority += priorityNoteCount + " notes with priority " + priority + ":\n";
-
-        for (int i = 0; i < notes.size(); i++) {
-            Note note = notes.get(i);
-            if (note.getNotePriority() == priority) {
-                notesByPriority += notes.indexOf(note) + ": " + note.toString();
-            }
+        // only the notes of the priority are looked at
+        for (int position : priorityPositions) {
+            appendListed(out, position);
         }
-        return notesByPriority;
     }
 
     /**
@@ -548,6 +878,17 @@ public class NoteAPI {
      * @return a formatted string of all to-do items or "No notes stored"
      */
     public String listTodoItems() {
+        return render(this::listTodoItems);
+    }
+
+    /**
+     * Writes the to-do items to {@code out}, in the format of {@link #listTodoItems()}, without building the listing as a String
+     * first.
+     *
+     * @param out where to write the listing, e.g. a buffered {@code System.out}
+     * @throws IOException if {@code out} can't be written to
+     */
+    public void listTodoItems(Appendable out) throws IOException {
         /*
         ==>> If the notes list is:
             ==>> empty, the String “No notes stored” is returned.
@@ -555,21 +896,23 @@ public class NoteAPI {
                  the TODO item to a String. This String is then returned.
         */
         if ((notes == null) || (notes.isEmpty()) || (numberOfTodoItems() == 0)) {
-            return "No notes stored";
+            out.append("No notes stored");
+            return;
         }
 
-        String todoItems = "";
-
-        for (Note note : notes) {
-            if ((note.getItems() != null) && !(note.getItems().isEmpty())) {
-                for (Item item : note.getItems()) {
-                    if (!(item.isItemCompleted())) {
-                        todoItems += note.getNoteTitle() + " " + item.toString() + "\n";
-                    }
+        for (int i = 0; i < notes.size(); i++) {
+            if (isCompletedAt(i)) {
+                continue; // no TODO items, checked without reading its items
+            }
+            String title = titleAt(i);
+            for (Item item : itemsAt(i)) {
+                if (!(item.isItemCompleted())) {
+                    out.append(title).append(' ');
+                    item.appendTo(out);
+                    out.append('\n');
                 }
             }
         }
-        return todoItems;
     }
 
     /**
@@ -585,6 +928,18 @@ public class NoteAPI {
      * @return a formatted string with completion status of items for the given category
      */
     public String listItemStatusByCategory(String category) {
+        return render(out -> listItemStatusByCategory(category, out));
+    }
+
+    /**
+     * Writes the item completion status of a category to {@code out}, in the format of {@link #listItemStatusByCategory(String)}, without building the listing as a String
+     * first.
+     *
+     * @param category category to filter items by
+     * @param out where to write the listing, e.g. a buffered {@code System.out}
+     * @throws IOException if {@code out} can't be written to
+     */
+    public void listItemStatusByCategory(String category, Appendable out) throws IOException {
         /*
         ==>> If the notes list is:
             ==>> empty, the String “No notes stored” is returned.
@@ -592,110 +947,391 @@ public class NoteAPI {
                 containing TODO items and the other for containing Completed items. Then,
                 for every note of the chosen category, add each item to the
                 appropriate string. Finally, return a formatted result including counts.
+
+        Written as it goes instead: the items are counted first, then the completed items are
+        written, then the TODO items. Each line after the first starts with its line break, so
+        the text ends without one.
         */
         if ((notes == null) || (notes.isEmpty())) {
-            return "No notes stored";
+            out.append("No notes stored");
+            return;
         }
-        if (!(isValidCategory(category))) {
-            return "No notes with category " + category;
+        int categoryId = categoryId(category);
+        if (categoryId == NO_CATEGORY) {
+            out.append("No notes with category ").append(category);
+            return;
         }
+        int[] categoryPositions = categoryIndex().positions(categoryId);
         int completedCtr = 0;
-        String completedItems = "";
         int todoCtr = 0;
-        String todoItems = "";
-
-        String itemStatusByCategory = "";
-
-        for (Note note : notes) {
-            if ((note.getItems() != null) && !(note.getItems().isEmpty())) {
-                if (note.getNoteCategory().equals(category)) {
-                    for (Item item : note.getItems()) {
-                        String itemDescription = item.getItemDescription() + " (Note: " + note.getNoteTitle() + " )\n";
-                        if (item.isItemCompleted()) {
-                            completedItems += itemDescription;
-                            completedCtr++;
-                        }
-                        else {
-                            todoItems += itemDescription;
-                            todoCtr++;
-                        }
-                    }
+        for (int position : categoryPositions) {
+            for (Item item : itemsAt(position)) {
+                if (item.isItemCompleted()) {
+                    completedCtr++;
+                }
+                else {
+                    todoCtr++;
                 }
             }
         }
 
-        itemStatusByCategory += "Number completed: " + completedCtr + "\n";
-        itemStatusByCategory += completedItems;
-        itemStatusByCategory += "Number TODO: " + todoCtr + "\n";
-        itemStatusByCategory += todoItems;
+        out.append("Number completed: ").append(Integer.toString(completedCtr));
+        appendItemStatus(out, categoryPositions, true);
+        out.append("\nNumber TODO: ").append(Integer.toString(todoCtr));
+        appendItemStatus(out, categoryPositions, false);
+    }
 
-        return itemStatusByCategory.trim();
+    /**
+     * Writes the completed, or the to-do, items of some notes for {@link #listItemStatusByCategory(String, Appendable)},
+     * each on a new line.
+     */
+    private void appendItemStatus(Appendable out, int[] positions, boolean completed) throws IOException {
+        for (int position : positions) {
+            String title = titleAt(position);
+            for (Item item : itemsAt(position)) {
+                if (item.isItemCompleted() == completed) {
+                    out.append('\n').append(item.getItemDescription()).append(" (Note: ").append(title)
+                            .append(" )");
+                }
+            }
+        }
     }
 
-// -------------- END OF LISTING METHODS --------------
+    /**
+     * Writes one note of a listing, with its position, e.g. "0: Learning Java, Priority=5, ...".
+     *
+     * @param out where to write the note
+     * @param position the position of the note
+     * @throws IOException if {@code out} can't be written to
+     */
+    private void appendListed(Appendable out, int position) throws IOException {
+        out.append(Integer.toString(position)).append(": ");
+        noteToRead(position).appendTo(out);
+    }
 
-// -------------- START OF FINDING/SEARCHING METHODS --------------
+    // -------------- PAGED LISTING METHODS --------------
 
     /**
-     * Finds and returns a {@link Note} by its index if valid, otherwise returns {@code null}.
+     * Lists one page of all notes, in the format of {@link #listAllNotes()}. Only the notes of the page are rendered.
      *
-     * @param index index of the note to find
-     * @return {@link Note} at the given index or {@code null}
-     * */
-    public Note findNote(int index) {
-        /*
-        This method first checks that the index, passed as a parameter, is valid.
-        ==>> If it is:
-            ==>> valid, then the note at that index location in the notes ArrayList is returned.
-            ==>> not valid, null is returned.
-         */
-        if (isValidIndex(index)) {
-            return notes.get(index);
-        }
-        else {
-            return null;
-        }
+     * @param cursor {@link NotePage#FIRST_PAGE}, or the next cursor of the page before
+     * @param pageSize the largest number of notes on the page, at least 1
+     * @return the page, holding "No notes stored" if there are no notes
+     */
+    public NotePage listAllNotes(int cursor, int pageSize) {
+        return listPage(null, null, cursor, pageSize, "\tNo notes stored");
     }
 
     /**
-     * Searches for notes by title.
-     * <ul>
-     *   <li>If no notes stored, returns "No notes stored".</li>
-     *   <li>Otherwise returns a list of notes whose title contains the given search string. </li>
-     *   <ul>
-     *   <li>If none found, returns "No notes found for: X".</li>
-     *   </ul>
-     * </ul>
+     * Lists one page of the active notes, in the format of {@link #listActiveNotes()}. Only the notes up to the end of
+     * the page, and the next active note after it, are looked at.
      *
-     * @param searchTitle title substring to search for
-     * @return a formatted string of matching notes or an appropriate message if none found
+     * @param cursor {@link NotePage#FIRST_PAGE}, or the next cursor of the page before
+     * @param pageSize the largest number of notes on the page, at least 1
+     * @return the page, holding "No active notes stored" if there are none
      */
-    public String searchNotesByTitle(String searchTitle) {
-        /*
-        ==>> If the notes list is:
-            ==>> empty, the String “No notes stored” is returned.
-            ==>> not empty, the title of each note is checked against the searchTitle.
-                 If a match is found, add the note and its index to a String.
-                 If no matches, return “No notes found for: ” + searchTitle.
-        */
+    public NotePage listActiveNotes(int cursor, int pageSize) {
+        return listPage(null, note -> !(note.isNoteArchived()), cursor, pageSize, "No active notes stored");
+    }
+
+    /**
+     * Lists one page of the archived notes, in the format of {@link #listArchivedNotes()}. Only the notes up to the
+     * end of the page, and the next archived note after it, are looked at.
+     *
+     * @param cursor {@link NotePage#FIRST_PAGE}, or the next cursor of the page before
+     * @param pageSize the largest number of notes on the page, at least 1
+     * @return the page, holding "No archived notes stored" if there are none
+     */
+    public NotePage listArchivedNotes(int cursor, int pageSize) {
+        return listPage(null, Note::isNoteArchived, cursor, pageSize, "No archived notes stored");
+    }
+
+    /**
+     * Lists one page of the notes of a category, in the format of {@link #listNotesBySelectedCategory(String)} but
+     * without the heading, so use {@link #numberOfNotesByCategory(String)} for the total. Only the positions of the
+     * page are read from the category index.
+     *
+     * @param category the category to filter by
+     * @param cursor {@link NotePage#FIRST_PAGE}, or the next cursor of the page before
+     * @param pageSize the largest number of notes on the page, at least 1
+     * @return the page, holding "No notes stored" or "No notes with category [category]" if there are none
+     */
+    public NotePage listNotesBySelectedCategory(String category, int cursor, int pageSize) {
+        if ((notes == null) || (notes.isEmpty())) {
+            return new NotePage("No notes stored", NotePage.NO_MORE_PAGES);
+        }
+        int categoryId = categoryId(category);
+        int[] positions = (categoryId != NO_CATEGORY)
+                ? categoryIndex().positionsFrom(categoryId, cursor, Math.max(pageSize, 1) + 1) : new int[0];
+        return listPage(positions, null, cursor, pageSize, "No notes with category " + category);
+    }
+
+    /**
+     * Lists one page of the notes of a priority, in the format of {@link #listNotesBySelectedPriority(int)} but
+     * without the heading, so use {@link #numberOfNotesByPriority(int)} for the total. Only the positions of the
+     * page are read from the priority index.
+     *
+     * @param priority the priority to filter by [1 to 5]
+     * @param cursor {@link NotePage#FIRST_PAGE}, or the next cursor of the page before
+     * @param pageSize the largest number of notes on the page, at least 1
+     * @return the page, holding "No notes stored" or "No notes with priority [1-5]" if there are none
+     */
+    public NotePage listNotesBySelectedPriority(int priority, int cursor, int pageSize) {
+        if ((notes == null) || (notes.isEmpty())) {
+            return new NotePage("No notes stored", NotePage.NO_MORE_PAGES);
+        }
+        int[] positions = validRange(priority, 1, 5)
+                ? priorityIndex().positionsFrom(priority, cursor, Math.max(pageSize, 1) + 1) : new int[0];
+        return listPage(positions, null, cursor, pageSize, "No notes with priority " + priority);
+    }
+
+    /**
+     * Renders one page of a listing. The page is filled from the first position at or after the cursor, then the
+     * next matching position is found so the next cursor can point straight at it.
+     *
+     * @param positions the positions of the listing in ascending order (only those from the cursor are needed), or
+     * {@code null} for every note
+     * @param filter the notes to list, {@code null} for all of them
+     * @param cursor where the page starts
+     * @param pageSize the largest number of notes on the page; values below 1 are treated as 1
+     * @param noneMessage the text of a first page with no notes
+     * @return the page
+     */
+    private NotePage listPage(int[] positions, Predicate<Note> filter, int cursor, int pageSize, String noneMessage) {
+        if (notes == null) {
+            return new NotePage(noneMessage, NotePage.NO_MORE_PAGES);
+        }
+        int end = (positions == null) ? notes.size() : positions.length;
+        int next; // the next note, or the next entry of positions, to look at
+        if (cursor < 0) {
+            next = end; // NO_MORE_PAGES gives an empty page
+        }
+        else if (positions == null) {
+            next = cursor;
+        }
+        else {
+            int found = Arrays.binarySearch(positions, cursor);
+            next = (found >= 0) ? found : -(found + 1);
+        }
+
+        int size = Math.max(pageSize, 1);
+        int[] pagePositions = new int[Math.max(Math.min(size, end - next), 0)];
+        int listed = 0;
+        int nextCursor = NotePage.NO_MORE_PAGES;
+        for (; next < end; next++) {
+            int position = (positions == null) ? next : positions[next];
+            if ((filter != null) && !(filter.test(noteToRead(position)))) {
+                continue;
+            }
+            if (listed == size) {
+                nextCursor = position;
+                break;
+            }
+            pagePositions[listed++] = position;
+        }
+
+        if ((listed == 0) && (cursor == NotePage.FIRST_PAGE)) {
+            return new NotePage(noneMessage, nextCursor);
+        }
+        int pageLength = listed;
+        return new NotePage(render(out -> {
+            for (int i = 0; i < pageLength; i++) {
+                appendListed(out, pagePositions[i]);
+            }
+        }), nextCursor);
+    }
+
+// -------------- END OF LISTING METHODS --------------
+
+// -------------- START OF FINDING/SEARCHING METHODS --------------
+
+    /**
+     * Finds and returns a {@link Note} by its index if valid, otherwise returns {@code null}.
+     *
+     * @param index index of the note to find
+     * @return {@link Note} at the given index or {@code null}
+     * */
+    public Note findNote(int index) {
+        /*
+        This method first checks that the index, passed as a parameter, is valid.
+        ==>> If it is:
+            ==>> valid, then the note at that index location in the notes ArrayList is returned.
+            ==>> not valid, null is returned.
+         */
+        if (isValidIndex(index)) {
+            return notes.get(index);
+        }
+        else {
+            return null;
+        }
+    }
+
+    /**
+     * Searches for notes by title.
+     * <ul>
+     *   <li>If no notes stored, returns "No notes stored".</li>
+     *   <li>Otherwise returns a list of notes whose title contains the given search string. </li>
+     *   <ul>
+     *   <li>If none found, returns "No notes found for: X".</li>
+     *   </ul>
+     * </ul>
+     *
+     * @param searchTitle title substring to search for
+     * @return a formatted string of matching notes or an appropriate message if none found
+     */
+    public String searchNotesByTitle(String searchTitle) {
+        return render(out -> searchNotesByTitle(searchTitle, out));
+    }
+
+    /**
+     * Writes the notes whose title contains the search string to {@code out}, in the format of
+     * {@link #searchNotesByTitle(String)}, without building the results as a String first.
+     *
+     * @param searchTitle title substring to search for
+     * @param out where to write the results, e.g. a buffered {@code System.out}
+     * @throws IOException if {@code out} can't be written to
+     */
+    public void searchNotesByTitle(String searchTitle, Appendable out) throws IOException {
+        /*
+        ==>> If the notes list is:
+            ==>> empty, the String “No notes stored” is returned.
+            ==>> not empty, the title of each note is checked against the searchTitle.
+                 If a match is found, add the note and its index to a String.
+                 If no matches, return “No notes found for: ” + searchTitle.
+        */
         if (notes == null || notes.isEmpty()) {
-            return "No notes stored";
+            out.append("No notes stored");
+            return;
         }
 
-        String searchResultsByTitle = "";
+        boolean found = false;
 
-        for (Note note : notes) {
-            String noteTitle = note.getNoteTitle();
-            if (noteTitle.contains(searchTitle)) {
-                searchResultsByTitle += "Note " + notes.indexOf(note) + ": " + note.toString() + "\n";
+        // the title index narrows the notes down when it can, see TitleIndex.candidatesContaining
+        int[] candidatePositions = titleIndex().candidatesContaining(searchTitle);
+        if (candidatePositions != null) {
+            for (int position : candidatePositions) {
+                if (titleAt(position).contains(searchTitle)) {
+                    appendSearchResult(out, position);
+                    found = true;
+                }
+            }
+        }
+        else {
+            for (int i = 0; i < notes.size(); i++) {
+                if (titleAt(i).contains(searchTitle)) {
+                    appendSearchResult(out, i);
+                    found = true;
+                }
             }
         }
 
-        if (searchResultsByTitle.isEmpty()) {
+        if (!found) {
+            out.append("No notes found for: ").append(searchTitle);
+        }
+    }
+
+    /**
+     * Searches for notes whose titles contain every one of the given words as a whole word, ignoring case, e.g.
+     * "java learning" finds "Learning Java" but not "Learning JavaScript". Uses the title index, so only the notes
+     * with those words are looked at.
+     * <ul>
+     *   <li>If no notes stored, returns "No notes stored".</li>
+     *   <li>If none found, returns "No notes found for: X".</li>
+     * </ul>
+     *
+     * @param searchWords one or more words, separated by spaces or punctuation
+     * @return a formatted string of matching notes or an appropriate message if none found
+     */
+    public String searchNotesByTitleWords(String searchWords) {
+        if (notes == null || notes.isEmpty()) {
+            return "No notes stored";
+        }
+        return listSearchResults(titleIndex().positionsWithWords(searchWords), searchWords);
+    }
+
+    /**
+     * Searches for notes with a word in their titles that starts with the given prefix, ignoring case, e.g. "app"
+     * finds "Code App" and "Apple Pie". Uses the title index, so only the notes with those words are looked at.
+     * <ul>
+     *   <li>If no notes stored, returns "No notes stored".</li>
+     *   <li>If none found, returns "No notes found for: X".</li>
+     * </ul>
+     *
+     * @param searchPrefix the start of a word
+     * @return a formatted string of matching notes or an appropriate message if none found
+     */
+    public String searchNotesByTitlePrefix(String searchPrefix) {
+        if (notes == null || notes.isEmpty()) {
+            return "No notes stored";
+        }
+        return listSearchResults(titleIndex().positionsWithPrefix(searchPrefix), searchPrefix);
+    }
+
+    /**
+     * Searches for notes whose titles are close to the given title, ignoring case, so a mistyped title still finds
+     * its note, e.g. "Lerning Jva" finds "Learning Java". Allows up to {@link #DEFAULT_FUZZY_DISTANCE} typos.
+     *
+     * @param searchTitle the title to search for, possibly mistyped
+     * @return a formatted string of matching notes or an appropriate message if none found
+     * @see #searchNotesByTitleFuzzy(String, int)
+     */
+    public String searchNotesByTitleFuzzy(String searchTitle) {
+        return searchNotesByTitleFuzzy(searchTitle, DEFAULT_FUZZY_DISTANCE);
+    }
+
+    /**
+     * Searches for notes whose titles are within the given edit distance of the given title, ignoring case. The edit
+     * distance is the number of single character insertions, deletions and substitutions needed to turn one title
+     * into the other. Uses a BK-tree of the titles, so only a few of them have their distance measured.
+     * <ul>
+     *   <li>If no notes stored, returns "No notes stored".</li>
+     *   <li>If none found, or maxDistance is negative, returns "No notes found for: X".</li>
+     *   <li>Otherwise the closest titles are listed first.</li>
+     * </ul>
+     *
+     * @param searchTitle the title to search for, possibly mistyped
+     * @param maxDistance the largest edit distance allowed, 0 for titles that only differ in case
+     * @return a formatted string of matching notes or an appropriate message if none found
+     */
+    public String searchNotesByTitleFuzzy(String searchTitle, int maxDistance) {
+        if (notes == null || notes.isEmpty()) {
+            return "No notes stored";
+        }
+        if (maxDistance < 0) {
             return "No notes found for: " + searchTitle;
         }
+        return listSearchResults(titleIndex().positionsNear(searchTitle, maxDistance), searchTitle);
+    }
+
+    /**
+     * Formats the notes found by a title search, in the same way as {@link #searchNotesByTitle(String)}.
+     *
+     * @param positions the positions of the notes found
+     * @param searchText what was searched for
+     * @return the formatted notes, or "No notes found for: X" if there are none
+     */
+    private String listSearchResults(int[] positions, String searchText) {
+        if (positions.length == 0) {
+            return "No notes found for: " + searchText;
+        }
+        return render(out -> {
+            for (int position : positions) {
+                appendSearchResult(out, position);
+            }
+        });
+    }
 
-        return searchResultsByTitle;
+    /**
+     * Writes one note found by a title search, e.g. "Note 0: Learning Java, Priority=5, ...".
+     *
+     * @param out where to write the note
+     * @param position the position of the note
+     * @throws IOException if {@code out} can't be written to
+     */
+    private void appendSearchResult(Appendable out, int position) throws IOException {
+        out.append("Note ").append(Integer.toString(position)).append(": ");
+        noteToRead(position).appendTo(out);
+        out.append('\n');
     }
 
     /**
@@ -710,6 +1346,18 @@ public class NoteAPI {
      * @return a formatted string of matching items or an appropriate message if none found
      */
     public String searchItemByDescription(String searchItemDescription) {
+        return render(out -> searchItemByDescription(searchItemDescription, out));
+    }
+
+    /**
+     * Writes the items whose description contains the search string to {@code out}, in the format of
+     * {@link #searchItemByDescription(String)}, without building the results as a String first.
+     *
+     * @param searchItemDescription the description substring to search for
+     * @param out where to write the results, e.g. a buffered {@code System.out}
+     * @throws IOException if {@code out} can't be written to
+     */
+    public void searchItemByDescription(String searchItemDescription, Appendable out) throws IOException {
         /*
         ==>> If the notes list is:
             ==>> empty, the String “No notes stored” is returned.
@@ -718,106 +1366,1871 @@ public class NoteAPI {
                  If no matches found, return "No items found for: " + searchItemDescription.
         */
         if (notes == null || notes.isEmpty()) {
-            return "No notes stored";
+            out.append("No notes stored");
+            return;
         }
 
-        String searchResultsByDescription = "";
+        boolean found = false;
 
-        for (Note note : notes) {
-            if ((note.getItems() != null) && !(note.getItems().isEmpty())) {
-                for (Item item : note.getItems()) {
-                    if (item.getItemDescription().contains(searchItemDescription)) {
-                        int noteIndex = notes.indexOf(note); // explicit because getting confusing with multiple indexes
-                        int itemIndex = note.getItems().indexOf(item);
-                        searchResultsByDescription += noteIndex + ": " + note.getNoteTitle() + "\n"
-                                + itemIndex + ": " + item.toString() + "\n";
-                    }
-                }
+        // the description index narrows the notes down for searches of three or more characters
+        int[] candidatePositions = descriptionIndex().candidatesContaining(searchItemDescription);
+        if (candidatePositions != null) {
+            for (int noteIndex : candidatePositions) {
+                found |= searchItemsOfNote(noteIndex, searchItemDescription, out);
+            }
+        }
+        else {
+            for (int noteIndex = 0; noteIndex < notes.size(); noteIndex++) {
+                found |= searchItemsOfNote(noteIndex, searchItemDescription, out);
             }
         }
-        if (searchResultsByDescription.isEmpty()) {
-            return "No items found for: " + searchItemDescription;
+        if (!found) {
+            out.append("No items found for: ").append(searchItemDescription);
         }
-        return searchResultsByDescription;
     }
 
-// -------------- END OF FINDING/SEARCHING METHODS --------------
+    /**
+     * Iterates over all notes from the highest priority (5) to the lowest (1), without sorting them. Notes with the
+     * same priority come in the order they are stored.
+     * <p>
+     * The notes of each priority are taken from the priority index as the iterator reaches them, so stopping after the
+     * first few notes never looks at the lower priorities. Notes shouldn't be added or deleted while iterating.
+     *
+     * @return an iterator over the notes, highest priority first
+     */
+    public Iterator<Note> notesByPriority() {
+        return new Iterator<Note>() {
+            @Override
+            public boolean hasNext() {
+                while ((next == positions.length) && (priority > 1)) {
+                    priority--;
+                    positions = priorityIndex().positions(priority);
+                    next = 0;
+                }
+                return next < positions.length;
+            }
 
-    // -------------- SINGLE HELPER METHOD IMPORTANT --------------
+            @Override
+            public Note next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return notes.get(positions[next++]);
+            }
+
+            private int priority = 6; // one above the highest, so the first hasNext() moves to 5
+            private int[] positions = new int[0];
+            private int next = 0;
+        };
+    }
 
     /**
-     * Checks if provided index is valid for the notes collection.
+     * Writes the items of one note whose descriptions contain the search string, in the format of
+     * {@link #searchItemByDescription(String)}.
      *
-     * @param index index to validate
-     * @return {@code true} if index is within the valid range; {@code false} otherwise
+     * @param noteIndex the index of the note
+     * @param searchItemDescription the description substring to search for
+     * @param out where to write the matching items with their note
+     * @return {@code true} if any item matched
+     * @throws IOException if {@code out} can't be written to
      */
-    public boolean isValidIndex(int index) {
-        /*
-        This helper method will be used by several methods below,
-        so it is a good idea to write it first!!!!
-        isValidIndex(int) - This method checks that the index, passed as a parameter
-        is a valid index in the notes ArrayList. If it is a valid index, return true.
-         If invalid, return false.
-         */
-        return (validRange(index, 0, (this.notes.size()) - 1));
+    private boolean searchItemsOfNote(int noteIndex, String searchItemDescription, Appendable out) throws IOException {
+        boolean found = false;
+        List<Item> items = itemsAt(noteIndex);
+        if (!(items.isEmpty())) {
+            for (int itemIndex = 0; itemIndex < items.size(); itemIndex++) {
+                Item item = items.get(itemIndex);
+                if (item.getItemDescription().contains(searchItemDescription)) {
+                    out.append(Integer.toString(noteIndex)).append(": ").append(titleAt(noteIndex)).append('\n')
+                            .append(Integer.toString(itemIndex)).append(": ");
+                    item.appendTo(out);
+                    out.append('\n');
+                    found = true;
+                }
+            }
+        }
+        return found;
     }
 
-    // -------------- TWO PERSISTENCE METHODS  --------------
+    // -------------- QUERY METHODS --------------
 
     /**
-     * Loads the notes from an XML file ("notes.xml") into the notes ArrayList using {@link XStream} and {@link DomDriver}.
-     * Relevant classes added to avoid security warnings. <b>This method was taken from lecture notes.</b>
-     * @throws IOException if there is an issue reading the file
-     * @throws ClassNotFoundException if the classes are not found
-     * @author Dave Hearne
+     * Finds the notes that meet every condition of a query, e.g. the active Work notes of priority 4 or 5 that are at
+     * least half done. See {@link #explainQuery(NoteQuery)} for how the notes are found.
+     *
+     * @param query the conditions the notes must meet
+     * @return the matching notes, in the order they are stored; empty if there are none
      */
-    public void load() throws IOException, ClassNotFoundException {
-        // this method saves the notes ArrayList to an XML file on your hard disk.
-        XStream xstream = new XStream(new DomDriver());
-        // ------------------ PREVENT SECURITY WARNINGS-----------------------------
-        // The Note class is what we are reading in.
-        // Modify to include others if needed by modifying the next line,
-        // add additional classes inside the braces, comma separated
-        Class<?>[] classes = new Class[]{Note.class, Item.class, NoteAPI.class};
+    public ArrayList<Note> findNotes(NoteQuery query) {
+        ArrayList<Note> found = new ArrayList<Note>();
+        for (int position : matchingPositions(query)) {
+            found.add(notes.get(position));
+        }
+        return found;
+    }
 
-        XStream.setupDefaultSecurity(xstream);
-        xstream.allowTypes(classes);
-        // -------------------------------------------------------------------------
+    /**
+     * Lists the notes that meet every condition of a query.
+     * <ul>
+     *   <li>If no notes exist, returns "No notes stored".</li>
+     *   <li>If no notes match, returns "No notes match the query".</li>
+     *   <li>Otherwise returns the number of matching notes and a formatted list of them.</li>
+     * </ul>
+     *
+     * @param query the conditions the notes must meet
+     * @return a formatted string of the matching notes or the appropriate message if there are none
+     */
+    public String listNotesMatching(NoteQuery query) {
+        return render(out -> listNotesMatching(query, out));
+    }
 
-        ObjectInputStream is = xstream.createObjectInputStream(new FileReader("notes.xml"));
-        notes = (ArrayList<Note>) is.readObject();
-        is.close();
+    /**
+     * Writes the notes that meet every condition of a query to {@code out}, in the format of
+     * {@link #listNotesMatching(NoteQuery)}, without building the listing as a String first.
+     *
+     * @param query the conditions the notes must meet
+     * @param out where to write the listing, e.g. a buffered {@code System.out}
+     * @throws IOException if {@code out} can't be written to
+     */
+    public void listNotesMatching(NoteQuery query, Appendable out) throws IOException {
+        if ((notes == null) || (notes.isEmpty())) {
+            out.append("No notes stored");
+            return;
+        }
+        int[] positions = matchingPositions(query);
+        if (positions.length == 0) {
+            out.append("No notes match the query");
+            return;
+        }
+        out.append(Integer.toString(positions.length)).append(" notes matching the query:\n");
+        for (int position : positions) {
+            appendListed(out, position);
+        }
     }
 
     /**
-     * Saves the current notes ArrayList to an XML file ("notes.xml") using @link XStream} and {@link DomDriver}.
-     * Relevant classes added to avoid security warnings. <b>This method was taken from lecture notes.</b>
-     * @throws Exception if an error occurs during the save
-     * @author Dave Hearne
+     * Lists one page of the notes that meet every condition of a query, in the format of
+     * {@link #listNotesMatching(NoteQuery)} but without the heading. The query is planned as for
+     * {@link #findNotes(NoteQuery)}, but only the candidates up to the end of the page, and the next match after it,
+     * are checked.
+     *
+     * @param query the conditions the notes must meet
+     * @param cursor {@link NotePage#FIRST_PAGE}, or the next cursor of the page before
+     * @param pageSize the largest number of notes on the page, at least 1
+     * @return the page, holding "No notes stored" or "No notes match the query" if there are none
      */
-    public void save() throws Exception {
-        // this method loads the XML file previously stored on your hard disk into the
-        // notes ArrayList.
-        XStream xstream = new XStream(new DomDriver());
+    public NotePage listNotesMatching(NoteQuery query, int cursor, int pageSize) {
+        if ((notes == null) || (notes.isEmpty())) {
+            return new NotePage("No notes stored", NotePage.NO_MORE_PAGES);
+        }
+        return listPage(planQuery(query).candidates, query::matches, cursor, pageSize, "No notes match the query");
+    }
+
+    /**
+     * Describes how {@link #findNotes(NoteQuery)} would find the notes of a query.
+     * <p>
+     * Each condition with an index gives the positions of the notes that can meet it:
+     * <ul>
+     *   <li>the category and priority conditions, from the category and priority indexes, whose sizes are known
+     *   without reading them;</li>
+     *   <li>the title condition, from the title index, if the text is only letters and digits;</li>
+     *   <li>the item description condition, from the description index, if the text is three or more characters.</li>
+     * </ul>
+     * The smallest of these is taken first and intersected with the others from smallest to largest, and only the
+     * notes left are checked against the whole query. Conditions without an index (archived and completion) are only
+     * checked, and a query with no usable index checks every note.
+     *
+     * @param query the conditions the notes must meet
+     * @return e.g. "category index (3 notes), then priority index (5 notes), checking 2 notes" or
+     * "full scan, checking 6 notes"
+     */
+    public String explainQuery(NoteQuery query) {
+        return planQuery(query).description;
+    }
+
+    /**
+     * Finds the positions of the notes that meet a query, checking only the candidates of its plan.
+     */
+    private int[] matchingPositions(NoteQuery query) {
+        QueryPlan plan = planQuery(query);
+        int[] positions = new int[(plan.candidates == null) ? notes.size() : plan.candidates.length];
+        int found = 0;
+        if (plan.candidates == null) {
+            for (int i = 0; i < notes.size(); i++) {
+                if (query.matches(noteToRead(i))) {
+                    positions[found++] = i;
+                }
+            }
+        }
+        else {
+            for (int position : plan.candidates) {
+                if (query.matches(noteToRead(position))) {
+                    positions[found++] = position;
+                }
+            }
+        }
+        return Arrays.copyOf(positions, found);
+    }
 
-        // ------------------ PREVENT SECURITY WARNINGS-----------------------------
-        // The Note class is what we are reading in.
-        // Modify to include others if needed by modifying the next line,
-        // add additional classes inside the braces, comma separated
-        Class<?>[] classes = new Class[]{Note.class, Item.class, NoteAPI.class};
+    /**
+     * Picks the indexes that can narrow down the notes of a query, see {@link #explainQuery(NoteQuery)}. An index
+     * that would give every note is left out, as it narrows nothing down.
+     */
+    private QueryPlan planQuery(NoteQuery query) {
+        List<IndexScan> scans = new ArrayList<IndexScan>();
 
-        XStream.setupDefaultSecurity(xstream);
-        xstream.allowTypes(classes);
-        // -------------------------------------------------------------------------
+        if (query.getCategory() != null) {
+            int categoryId = query.getCategoryId();
+            scans.add(new IndexScan("category index", categoryIndex().count(categoryId),
+                    () -> categoryIndex().positions(categoryId)));
+        }
+        if (query.hasPriorityRange()) {
+            int lowest = Math.max(query.getMinPriority(), 1);
+            int highest = Math.min(query.getMaxPriority(), 5);
+            int size = 0;
+            for (int priority = lowest; priority <= highest; priority++) {
+                size += priorityIndex().count(priority);
+            }
+            scans.add(new IndexScan("priority index", size, () -> {
+                List<int[]> buckets = new ArrayList<int[]>();
+                for (int priority = lowest; priority <= highest; priority++) {
+                    buckets.add(priorityIndex().positions(priority));
+                }
+                return PositionIndex.union(buckets);
+            }));
+        }
+        if (query.getTitleText() != null) {
+            int[] titlePositions = titleIndex().candidatesContaining(query.getTitleText());
+            if (titlePositions != null) {
+                scans.add(new IndexScan("title index", titlePositions.length, () -> titlePositions));
+            }
+        }
+        if (query.getDescriptionText() != null) {
+            int[] descriptionPositions = descriptionIndex().candidatesContaining(query.getDescriptionText());
+            if (descriptionPositions != null) {
+                scans.add(new IndexScan("description index", descriptionPositions.length, () -> descriptionPositions));
+            }
+        }
+        scans.removeIf(scan -> scan.size >= notes.size());
 
-        ObjectOutputStream out = xstream.createObjectOutputStream(new FileWriter("notes.xml"));
-        out.writeObject(notes);
-        out.close();
+        if (scans.isEmpty()) {
+            return new QueryPlan(null, "full scan, checking " + notes.size() + " notes");
+        }
+        scans.sort(Comparator.comparingInt(scan -> scan.size));
+        int[] candidates = null;
+        StringBuilder description = new StringBuilder();
+        for (IndexScan scan : scans) {
+            candidates = (candidates == null) ? scan.positions.get()
+                    : PositionIndex.intersection(candidates, scan.positions.get());
+            description.append((description.length() == 0) ? "" : ", then ").append(scan.name)
+                    .append(" (").append(scan.size).append(" notes)");
+            if (candidates.length == 0) {
+                break; // the remaining indexes can't add any notes
+            }
+        }
+        return new QueryPlan(candidates, description.append(", checking ").append(candidates.length).append(" notes")
+                .toString());
     }
 
     /**
-     * The ArrayList of {@link Note} objects
-     * Initially empty when the object is created, populated through CRUD operations.
+     * One index that can narrow down the notes of a query: its name, the number of positions it gives and how to get
+     * them, so the positions of the larger indexes are only read if they are needed.
+     */
+    private static class IndexScan {
+        IndexScan(String name, int size, Supplier<int[]> positions) {
+            this.name = name;
+            this.size = size;
+            this.positions = positions;
+        }
+
+        private final String name;
+        private final int size;
+        private final Supplier<int[]> positions;
+    }
+
+    /**
+     * The notes a query has to check, {@code null} for all of them, and how they were found.
+     */
+    private static class QueryPlan {
+        QueryPlan(int[] candidates, String description) {
+            this.candidates = candidates;
+            this.description = description;
+        }
+
+        private final int[] candidates;
+        private final String description;
+    }
+
+// -------------- END OF FINDING/SEARCHING METHODS --------------
+
+    // -------------- SINGLE HELPER METHOD IMPORTANT --------------
+
+    /**
+     * Checks if provided index is valid for the notes collection.
+     *
+     * @param index index to validate
+     * @return {@code true} if index is within the valid range; {@code false} otherwise
+     */
+    public boolean isValidIndex(int index) {
+        /*
+        This helper method will be used by several methods below,
+        so it is a good idea to write it first!!!!
+        isValidIndex(int) - This method checks that the index, passed as a parameter
+        is a valid index in the notes ArrayList. If it is a valid index, return true.
+         If invalid, return false.
+         */
+        return (validRange(index, 0, (this.notes.size()) - 1));
+    }
+
+    // -------------- PERSISTENCE METHODS  --------------
+
+    /**
+     * Loads the notes from the store file ("notes.xml" by default, see {@link #getStoreFile()}) into the notes
+     * ArrayList.
+     * <p>
+     * The format is detected from the file contents, so either format can be loaded whatever
+     * {@link #getStoreFormat()} is set to:
+     * <ul>
+     *   <li>{@link StoreFormat#BINARY} snapshots are read with {@link NoteBinaryCodec}.</li>
+     *   <li>{@link StoreFormat#XML} and {@link StoreFormat#COMPACT_XML} files are read with {@link NoteXmlReader}, a
+     *   streaming (StAX) reader that recognises both dialects.</li>
+     * </ul>
+     * Both readers hand each {@link Note} to a new list as soon as it has been decoded, so memory use is bounded by
+     * one note rather than the whole document. The notes collection is only replaced once the whole file has been
+     * read, so a failed load leaves the current notes untouched.
+     * <p>
+     * Older XML files containing XStream object references can't be streamed, and are loaded with {@link XStream}
+     * instead (see {@link #loadWithXStream(File)}).
+     * <p>
+     * A sharded store (see {@link #setShardCount(int)}) has its shard files read in parallel and joined in order.
+     * <p>
+     * If memory mapping is on (see {@link #setMemoryMapped(boolean)}), a binary snapshot is mapped into memory with
+     * {@link MappedNoteList} instead, and each note is only decoded the first time it is used. If lazy items are on
+     * (see {@link #setLazyItems(boolean)}), only the note headers of a binary snapshot are read, and each note's items
+     * are read the first time they are needed.
+     * <p>
+     * If columnar storage is on (see {@link #setColumnarStorage(boolean)}), notes that aren't memory-mapped are held
+     * in a {@link ColumnarNoteList}, with each note created the first time it is used.
+     * <p>
+     * If a journal of changes made since the file was saved exists (see {@link #setJournalEnabled(boolean)}), the
+     * changes are replayed on top of the loaded notes.
+     *
+     * @throws IOException if there is an issue reading the file
+     * @throws ClassNotFoundException if the classes are not found
+     * @author Joe O'Mahony, Dave Hearne
+     */
+    public void load() throws IOException, ClassNotFoundException {
+        waitForBackgroundWrites(); // a queued save may still be writing the file
+        File file = getStoreFile();
+        List<Note> loadedNotes = readStoreFile(file, memoryMapped);
+        // the loaded notes have no listener yet, so replaying doesn't touch the dirty flag, totals, indexes or
+        // journal of the notes stored now, which stay as they were if the read or the replay fails
+        NoteJournal.replay(getJournalFile(), file, loadedNotes);
+
+        forEachNoteInMemory(notes, note -> note.removeNoteListener(noteChangeHandler));
+        if (loadedNotes instanceof MappedNoteList) {
+            // notes decoded from here on get the listener as they are decoded, like columnar notes as they are created
+            ((MappedNoteList) loadedNotes).setOnDecode(note -> note.addNoteListener(noteChangeHandler));
+        }
+        else if (columnarStorage) {
+            // created notes get the listener as they are created, like mapped notes
+            loadedNotes = new ColumnarNoteList(loadedNotes, note -> note.addNoteListener(noteChangeHandler));
+        }
+        else {
+            for (Note note : loadedNotes) {
+                note.addNoteListener(noteChangeHandler);
+            }
+        }
+        notes = loadedNotes;
+        notesById = null; // all rebuilt from the loaded notes when next needed
+        idTombstones.clear();
+        nextNoteId = 0;
+        dropIndexes();
+        totals = null;
+        journal.discardPending();
+        journalAttached = NoteJournal.isCurrentVersion(getJournalFile()); // an older journal is folded in by a save
+        dirty = false;
+    }
+
+    /**
+     * Reads every note in a store file, detecting its format from the file contents. A shard manifest (see
+     * {@link #setShardCount(int)}) has its shards read in parallel by {@link ShardedStore}, each with this method.
+     *
+     * @param file the store file or shard file to read
+     * @param allowMapping whether a binary snapshot may be returned as a {@link MappedNoteList}
+     * @return the notes, in order
+     * @throws IOException if there is an issue reading the file
+     * @throws ClassNotFoundException if the classes are not found
+     */
+    private List<Note> readStoreFile(File file, boolean allowMapping) throws IOException, ClassNotFoundException {
+        List<Note> loadedNotes = new ArrayList<Note>();
+        try (BufferedInputStream in = openForReading(file)) {
+            // a compressed file can't be mapped, its notes are only in memory once decompressed
+            boolean compressed = !(in instanceof FileBufferedInputStream);
+            if (startsWithMagic(in, ShardedStore.MAGIC)) {
+                return ShardedStore.read(file, shardFile -> readStoreFile(shardFile, false));
+            }
+            else if (startsWithMagic(in, NoteBinaryCodec.MAGIC)) {
+                if (allowMapping && !compressed) {
+                    // mapped notes get the listener as they are decoded, once the journal is replayed, see load()
+                    loadedNotes = new MappedNoteList(file, lazyItems, null);
+                }
+                else if (lazyItems && !compressed) {
+                    NoteBinaryCodec.readLazily(NoteBinaryCodec.map(file), loadedNotes::add);
+                }
+                else {
+                    NoteBinaryCodec.read(in, loadedNotes::add);
+                }
+            }
+            else {
+                NoteXmlReader.read(new InputStreamReader(in), loadedNotes::add);
+            }
+        }
+        catch (NoteXmlReader.UnsupportedXmlException e) {
+            loadedNotes = loadWithXStream(file);
+        }
+        return loadedNotes;
+    }
+
+    /**
+     * Loads the notes from an XML file into the notes ArrayList using the shared {@link XStream} of
+     * {@link NoteXStreamCodec}. Only used for files that {@link NoteXmlReader} can't stream.
+     * @param file the XML file to load
+     * @return the loaded notes
+     * @throws IOException if there is an issue reading the file
+     * @throws ClassNotFoundException if the classes are not found
+     * @author Dave Hearne
+     */
+    private ArrayList<Note> loadWithXStream(File file) throws IOException, ClassNotFoundException {
+        return NoteXStreamCodec.read(new InputStreamReader(openForReading(file)));
+    }
+
+    /**
+     * Opens a store file for reading, decompressing it on the fly if it starts with the GZIP magic bytes (see
+     * {@link #setCompressionLevel(int)}), whatever the current compression level is.
+     *
+     * @param file the file to open
+     * @return a buffered stream of the (decompressed) file contents, supporting mark/reset; a
+     * {@link FileBufferedInputStream} if the file isn't compressed
+     * @throws IOException if the file can't be opened
+     */
+    private BufferedInputStream openForReading(File file) throws IOException {
+        BufferedInputStream in = new FileBufferedInputStream(new FileInputStream(file), bufferSize);
+        in.mark(2);
+        boolean compressed = (in.read() == (GZIP_MAGIC & 0xFF)) && (in.read() == (GZIP_MAGIC >> 8));
+        in.reset();
+        if (compressed) {
+            return new BufferedInputStream(new GZIPInputStream(in, bufferSize), bufferSize);
+        }
+        return in;
+    }
+
+    /**
+     * A {@link BufferedInputStream} straight on a file, so {@link #readStoreFile(File, boolean)} can tell an
+     * uncompressed file from a decompressing stream.
+     */
+    private static class FileBufferedInputStream extends BufferedInputStream {
+        FileBufferedInputStream(InputStream in, int size) {
+            super(in, size);
+        }
+    }
+
+    /**
+     * Saves the current notes.
+     * <ul>
+     *   <li>If journaling is enabled (see {@link #setJournalEnabled(boolean)}) and the store file holds the notes as
+     *   they were when last loaded or compacted, only the changes made since are appended to the journal file, so
+     *   the cost of a save depends on what changed rather than on the number of notes.</li>
+     *   <li>Otherwise the whole notes ArrayList is written to the store file, as {@link #compact()} does.</li>
+     * </ul>
+     * If async saving is on (see {@link #setAsyncSave(boolean)}), the changed journal records or a copy of the notes
+     * are handed to a background thread and this method returns without waiting for the write.
+     *
+     * @throws Exception if an error occurs during the save, or an earlier background save failed
+     * @author Joe O'Mahony, Dave Hearne
+     */
+    public void save() throws Exception {
+        if (asyncSave) {
+            saveInBackground();
+        }
+        else if (journalEnabled && journalAttached) {
+            waitForBackgroundWrites(); // records must be appended in order
+            journal.flush(getJournalFile(), getStoreFile());
+        }
+        else {
+            compact();
+        }
+        dirty = false;
+    }
+
+    /**
+     * Queues a save on the background thread. Only the copying happens on the calling thread: the journal records
+     * recorded since the last save, or (when the whole store has to be written) a copy of every note in memory, so the
+     * background thread writes the notes exactly as they were when the save was asked for. With journaling on, the
+     * whole store is only written by the first save after a change the journal can't hold (see
+     * {@link #setJournalEnabled(boolean)}).
+     *
+     * @throws Exception if an earlier background save failed; nothing is queued, and the next save writes the whole
+     * store
+     */
+    private void saveInBackground() throws Exception {
+        Exception failure = backgroundSaver.takeFailure();
+        if (failure != null) {
+            // the files on disk no longer match the journal records recorded since, so start again from a full write
+            journalAttached = false;
+            throw failure;
+        }
+        if (journalEnabled && journalAttached) {
+            if (journal.hasPendingRecords()) {
+                backgroundSaver.submitRecords(journal.takePending(), getJournalFile(), getStoreFile());
+            }
+        }
+        else {
+            List<Note> notesToWrite = copyOfNotes();
+            WriteSettings settings = currentWriteSettings();
+            File file = getStoreFile();
+            File journalFile = getJournalFile();
+            backgroundSaver.submitSnapshot(() -> writeStore(notesToWrite, settings, file, journalFile));
+            journal.discardPending();
+            journalAttached = true;
+        }
+    }
+
+    /**
+     * Waits for every queued background save to be written, e.g. before exiting. Does nothing if async saving is
+     * off and no background saves were queued.
+     *
+     * @throws Exception if a background save failed
+     */
+    public void flush() throws Exception {
+        awaitPersisted(0);
+    }
+
+    /**
+     * Waits up to {@code timeoutMillis} for every queued background save to be written.
+     *
+     * @param timeoutMillis the longest time to wait, or 0 to wait as long as it takes
+     * @return {@code true} if everything saved so far is on disk, {@code false} if the time ran out first
+     * @throws Exception if a background save failed
+     */
+    public boolean awaitPersisted(long timeoutMillis) throws Exception {
+        boolean persisted = backgroundSaver.awaitIdle(timeoutMillis);
+        Exception failure = backgroundSaver.takeFailure();
+        if (failure != null) {
+            journalAttached = false;
+            throw failure;
+        }
+        return persisted;
+    }
+
+    /**
+     * Writes the whole notes ArrayList to the store file ("notes.xml" by default, see {@link #getStoreFile()}) in
+     * the current {@link #getStoreFormat()}, then deletes the journal, whose changes the new file now contains.
+     * <p>
+     * The notes are written to a temporary file next to the store file, which then replaces the store file, so a
+     * failed save never leaves a half-written store behind.
+     *
+     * @throws Exception if an error occurs during the save
+     */
+    public void compact() throws Exception {
+        waitForBackgroundWrites(); // so an older background save can't overwrite this one
+        writeStore(notesForWriting(), currentWriteSettings(), getStoreFile(), getJournalFile());
+        journal.discardPending();
+        journalAttached = true;
+    }
+
+    /**
+     * Writes {@code notesToWrite} to a temporary file, moves it over {@code file}, then deletes the journal.
+     * With more than one shard, {@link ShardedStore} writes the shards in parallel and {@code file} becomes their
+     * manifest. Called on the calling thread by {@link #compact()}, and on the background thread by async saves.
+     *
+     * @param notesToWrite the notes to write
+     * @param settings the format, number of shards and compression to write with
+     * @param file the store file
+     * @param journalFile the journal of {@code file}, whose changes the new file contains
+     * @throws Exception if an error occurs during the save
+     */
+    private static void writeStore(List<Note> notesToWrite, WriteSettings settings, File file, File journalFile)
+            throws Exception {
+        if (settings.shards > 1) {
+            ShardedStore.write(notesToWrite, settings.shards, file, (shardNotes, shardFile) ->
+                    writeStoreFile(shardNotes, settings, shardFile));
+        }
+        else {
+            List<File> oldShards = ShardedStore.listShards(file); // if the store was sharded before
+            File tempFile = new File(file.getPath() + ".tmp");
+            writeStoreFile(notesToWrite, settings, tempFile);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            ShardedStore.deleteAll(oldShards);
+        }
+        Files.deleteIfExists(journalFile.toPath());
+    }
+
+    /**
+     * Writes the notes to a single file in the given format, compressing them on the fly if the settings ask for it.
+     * The compressed bytes go straight to the file, so the uncompressed document is never held in memory.
+     *
+     * @param notesToWrite the notes to write
+     * @param settings the format and compression to write with
+     * @param file the file to write
+     * @throws Exception if an error occurs during the save
+     */
+    private static void writeStoreFile(List<Note> notesToWrite, WriteSettings settings, File file) throws Exception {
+        // each stream is closed even if the next one can't be opened (e.g. writing the GZIP header fails) or the
+        // codec fails before closing them itself; closing them again after a successful write does nothing
+        try (OutputStream fileOut = new FileOutputStream(file);
+             OutputStream compressedOut = (settings.compressionLevel != NO_COMPRESSION)
+                     ? new LeveledGZIPOutputStream(fileOut, settings.bufferSize, settings.compressionLevel) : fileOut;
+             OutputStream out = new BufferedOutputStream(compressedOut, settings.bufferSize)) {
+            switch (settings.format) {
+                case BINARY -> saveBinary(notesToWrite, out);
+                case COMPACT_XML -> NoteXStreamCodec.writeCompact(notesToWrite, new OutputStreamWriter(out));
+                default -> saveXml(notesToWrite, out);
+            }
+        }
+    }
+
+    /**
+     * Saves the notes as XML using the shared {@link XStream} of {@link NoteXStreamCodec}, which writes
+     * shared items out in full rather than as XPath references, so the file can always be streamed by {@link #load()}.
+     * @param notesToSave the notes to save
+     * @param out the stream to write to, closed afterwards
+     * @throws Exception if an error occurs during the save
+     * @author Dave Hearne
+     */
+    private static void saveXml(List<Note> notesToSave, OutputStream out) throws Exception {
+        NoteXStreamCodec.write(notesToSave, new OutputStreamWriter(out));
+    }
+
+    /**
+     * Saves the notes as a binary snapshot using {@link NoteBinaryCodec}.
+     * @param notesToSave the notes to save
+     * @param out the stream to write to, closed afterwards
+     * @throws IOException if an error occurs during the save
+     */
+    private static void saveBinary(List<Note> notesToSave, OutputStream out) throws IOException {
+        try (out) {
+            NoteBinaryCodec.write(notesToSave, out);
+        }
+    }
+
+    /**
+     * A {@link GZIPOutputStream} with a chosen compression level, rather than the default.
+     */
+    private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+        LeveledGZIPOutputStream(OutputStream out, int size, int level) throws IOException {
+            super(out, size);
+            def.setLevel(level);
+        }
+    }
+
+    /**
+     * The settings a whole-store write uses, copied when the save is asked for so a background save isn't affected by
+     * settings changed while it waits.
+     */
+    private static class WriteSettings {
+        WriteSettings(StoreFormat format, int shards, int compressionLevel, int bufferSize) {
+            this.format = format;
+            this.shards = shards;
+            this.compressionLevel = compressionLevel;
+            this.bufferSize = bufferSize;
+        }
+
+        private final StoreFormat format;
+        private final int shards;
+        private final int compressionLevel;
+        private final int bufferSize;
+    }
+
+    /**
+     * Gets the current write settings.
+     * @return the format, number of shards, compression level and buffer size set on this {@code NoteAPI}
+     */
+    private WriteSettings currentWriteSettings() {
+        return new WriteSettings(storeFormat, shardCount, compressionLevel, bufferSize);
+    }
+
+    /**
+     * Copies the notes, so a background save can write them while the originals keep changing. The notes of a
+     * {@link MappedNoteList} that haven't been decoded can't have changed, so they are left in the mapped file and
+     * decoded by the background thread (see {@link MappedNoteList#snapshot(java.util.function.UnaryOperator)}).
+     * @return a copy of the notes, in order
+     */
+    private List<Note> copyOfNotes() {
+        if (notes instanceof MappedNoteList) {
+            return ((MappedNoteList) notes).snapshot(NoteAPI::copyOf);
+        }
+        ArrayList<Note> copy = new ArrayList<Note>(notes.size());
+        for (Note note : notesForWriting()) {
+            copy.add(copyOf(note));
+        }
+        return copy;
+    }
+
+    /**
+     * Copies a note and its items, see {@link #copyOfNotes()}.
+     */
+    private static Note copyOf(Note note) {
+        Note noteCopy = new Note(note.getNoteTitle(), note.getNotePriority(), note.getNoteCategory());
+        noteCopy.setNoteArchived(note.isNoteArchived());
+        noteCopy.setNoteId(note.getNoteId());
+        if (!note.isItemsLoaded()) {
+            // unloaded items can't have changed, so the copy reads them from the same place when it is written
+            noteCopy.setItemLoader(note.getItemLoader(), note.numberOfItems(), note.numberOfCompletedItems());
+            return noteCopy;
+        }
+        ArrayList<Item> itemsCopy = new ArrayList<Item>(note.numberOfItems());
+        for (Item item : note.getItems()) {
+            Item itemCopy = new Item(item.getItemDescription(), item.isItemCompleted());
+            itemCopy.setItemId(item.getItemId());
+            itemsCopy.add(itemCopy);
+        }
+        noteCopy.setItems(itemsCopy);
+        return noteCopy;
+    }
+
+    /**
+     * Gets the notes to write to a file. For a {@link ColumnarNoteList} these are its detached notes, so notes that
+     * haven't been used aren't kept in memory after they are written.
+     */
+    private List<Note> notesForWriting() {
+        return (notes instanceof ColumnarNoteList) ? ((ColumnarNoteList) notes).detachedNotes() : notes;
+    }
+
+    /**
+     * Waits for queued background saves to finish writing, without reporting their failures (see {@link #flush()}).
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    private void waitForBackgroundWrites() throws InterruptedIOException {
+        try {
+            backgroundSaver.awaitIdle(0);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a background save");
+        }
+    }
+
+    /**
+     * Runs {@code action} for every note in {@code noteList} that is in memory. For a {@link MappedNoteList} that is
+     * only the notes decoded so far, so nothing extra is read from the mapped file, and for a {@link ColumnarNoteList}
+     * only the notes created so far.
+     */
+    private static void forEachNoteInMemory(List<Note> noteList, Consumer<Note> action) {
+        if (noteList instanceof MappedNoteList) {
+            ((MappedNoteList) noteList).forEachDecoded(action);
+        }
+        else if (noteList instanceof ColumnarNoteList) {
+            ((ColumnarNoteList) noteList).forEachMaterialised(action);
+        }
+        else {
+            noteList.forEach(action);
+        }
+    }
+
+    /**
+     * Checks whether a stream starts with the given 4 byte magic number, without consuming anything from it.
+     *
+     * @param in the stream to check, which must support mark/reset
+     * @param magic the magic number to look for
+     * @return {@code true} if the first four bytes match, {@code false} otherwise
+     * @throws IOException if the stream can't be read
+     */
+    private static boolean startsWithMagic(BufferedInputStream in, int magic) throws IOException {
+        in.mark(4);
+        int found = 0;
+        int bytesRead = 0;
+        int nextByte;
+        while ((bytesRead < 4) && ((nextByte = in.read()) != -1)) {
+            found = (found << 8) | nextByte;
+            bytesRead++;
+        }
+        in.reset();
+        return (bytesRead == 4) && (found == magic);
+    }
+
+    // -------------- PERSISTENCE SETTINGS --------------
+
+    /**
+     * Gets the format used by {@link #save()}. Defaults to {@link StoreFormat#XML}.
+     * @return the current save format
+     */
+    public StoreFormat getStoreFormat() {
+        return storeFormat;
+    }
+
+    /**
+     * Sets the format used by {@link #save()}. {@link #load()} detects the format from the file, so this doesn't
+     * need to be changed to load a file in the other format.
+     * @param storeFormat the format to save in, ignored if {@code null}
+     */
+    public void setStoreFormat(StoreFormat storeFormat) {
+        if (storeFormat != null) {
+            this.storeFormat = storeFormat;
+        }
+    }
+
+    /**
+     * Gets the file notes are saved to and loaded from. Unless set with {@link #setStoreFile(File)}, this is the
+     * default file of the current format, i.e. "notes.xml" or "notes.dat" in the working directory.
+     * @return the store file
+     */
+    public File getStoreFile() {
+        if (storeFile == null) {
+            return new File(storeFormat.getDefaultFileName());
+        }
+        return storeFile;
+    }
+
+    /**
+     * Sets the file notes are saved to and loaded from.
+     * @param storeFile the store file, or {@code null} to go back to the default file of the current format
+     */
+    public void setStoreFile(File storeFile) {
+        this.storeFile = storeFile;
+        journalAttached = false;
+    }
+
+    /**
+     * Gets the journal file, which sits next to the store file, e.g. "notes.xml.journal".
+     * @return the journal file
+     */
+    public File getJournalFile() {
+        return new File(getStoreFile().getPath() + ".journal");
+    }
+
+    /**
+     * Checks whether changes are journaled, see {@link #setJournalEnabled(boolean)}.
+     * @return {@code true} if journaling is enabled
+     */
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    /**
+     * Turns journaling on or off. Defaults to off.
+     * <p>
+     * While journaling is on, every change made through {@link #add(Note)}, {@link #updateNote(int, String, int, String)},
+     * {@link #deleteNote(int)}, {@link #archiveNote(int)}, {@link #archiveNotesWithAllItemsComplete()} and the
+     * {@link Note} item methods is recorded, and {@link #save()} appends those changes to the journal file instead of
+     * rewriting the store. {@link #compact()} folds the journal back into the store file.
+     * <p>
+     * Changes made while journaling was off were never recorded, so the first save after turning it on writes the
+     * whole store.
+     *
+     * @param journalEnabled {@code true} to journal changes, {@code false} to always write the whole store
+     */
+    public void setJournalEnabled(boolean journalEnabled) {
+        if (journalEnabled && !this.journalEnabled) {
+            journalAttached = false;
+        }
+        this.journalEnabled = journalEnabled;
+    }
+
+    /**
+     * Checks whether binary snapshots are memory-mapped, see {@link #setMemoryMapped(boolean)}.
+     * @return {@code true} if binary snapshots are memory-mapped by {@link #load()}
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Turns memory mapping of binary snapshots on or off. Defaults to off. Takes effect on the next {@link #load()}.
+     * <p>
+     * When on, {@link #load()} maps a {@link StoreFormat#BINARY} snapshot into memory and only reads its header, so
+     * startup time no longer depends on the number of notes. Each note is decoded the first time it is used, and
+     * counts such as {@link #numberOfNotes()} don't decode any. XML files are always read in full.
+     * <p>
+     * Only uncompressed snapshots smaller than 2GB can be mapped.
+     *
+     * @param memoryMapped {@code true} to memory-map binary snapshots, {@code false} to read them in full
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Checks whether loaded notes are held in columns, see {@link #setColumnarStorage(boolean)}.
+     * @return {@code true} if {@link #load()} holds the loaded notes in a {@link ColumnarNoteList}
+     */
+    public boolean isColumnarStorage() {
+        return columnarStorage;
+    }
+
+    /**
+     * Turns columnar storage of loaded notes on or off. Defaults to off. Takes effect on the next {@link #load()}.
+     * <p>
+     * When on, {@link #load()} keeps the title, priority, category, archived state, ID and item counts of the loaded
+     * notes in parallel arrays (see {@link ColumnarNoteList}) rather than in a {@link Note} object each. Counting,
+     * the indexes behind the category, priority and title methods, and listing by archived state read the arrays,
+     * and a {@link Note} is only created for a note that is shown, changed or looked up. Memory-mapped snapshots
+     * (see {@link #setMemoryMapped(boolean)}) are left mapped.
+     *
+     * @param columnarStorage {@code true} to hold loaded notes in columns, {@code false} to hold a {@link Note} each
+     */
+    public void setColumnarStorage(boolean columnarStorage) {
+        this.columnarStorage = columnarStorage;
+    }
+
+    /**
+     * Checks whether saves are written on a background thread, see {@link #setAsyncSave(boolean)}.
+     * @return {@code true} if async saving is on
+     */
+    public boolean isAsyncSave() {
+        return asyncSave;
+    }
+
+    /**
+     * Turns async saving on or off. Defaults to off.
+     * <p>
+     * When on, {@link #save()} only copies what needs writing and returns, and a background thread does the writing.
+     * Together with journaling (see {@link #setJournalEnabled(boolean)}) that is only the changes made since the last
+     * save; without it, every note in memory is copied on each save.
+     * Saves asked for while a write is running are coalesced into a single write. {@link #flush()} waits for the
+     * writes to finish, and should be called before exiting. {@link #load()} and {@link #compact()} wait for them too.
+     *
+     * @param asyncSave {@code true} to save on a background thread, {@code false} to save on the calling thread
+     */
+    public void setAsyncSave(boolean asyncSave) {
+        this.asyncSave = asyncSave;
+    }
+
+    /**
+     * Gets the number of shard files {@link #compact()} splits the store into, see {@link #setShardCount(int)}.
+     * @return the number of shards, 1 if the store is a single file
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Sets the number of shard files the store is split into. Defaults to 1, a single file. Takes effect on the next
+     * save that writes the whole store.
+     * <p>
+     * With more than one shard, the notes are split by position into that many shard files next to the store file,
+     * written in the current {@link #getStoreFormat()}, and the store file lists them (see {@link ShardedStore}).
+     * Shards are written and read in parallel, one task per shard on a thread pool, so saving and loading a large store
+     * can use every core. {@link #load()} detects a sharded store by itself, whatever this is set to, and
+     * joins the shards back in order. The journal works the same way with or without shards.
+     * <p>
+     * A sharded store isn't memory-mapped (see {@link #setMemoryMapped(boolean)}); lazy items still apply to each
+     * binary shard.
+     *
+     * @param shardCount the number of shards, between 1 and {@link #MAX_SHARDS}; values outside that are ignored
+     */
+    public void setShardCount(int shardCount) {
+        if (validRange(shardCount, 1, MAX_SHARDS)) {
+            this.shardCount = shardCount;
+        }
+    }
+
+    /**
+     * Gets the GZIP compression level used by {@link #save()}, see {@link #setCompressionLevel(int)}.
+     * @return the compression level, {@link #NO_COMPRESSION} if files aren't compressed
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the GZIP compression level used when the whole store is written. Defaults to {@link #NO_COMPRESSION}.
+     * <p>
+     * From 1 (fastest) to 9 (smallest), store files (or each shard) are streamed through a {@link GZIPOutputStream}
+     * as they are written, and {@link #load()} detects the GZIP magic bytes and decompresses them as they are read, so
+     * the uncompressed document is never held in memory. Any format can be compressed; the journal never is, since it
+     * only holds small appended records. Compressed binary snapshots can't be memory-mapped, so
+     * {@link #setMemoryMapped(boolean)} and {@link #setLazyItems(boolean)} don't apply to them.
+     *
+     * @param compressionLevel {@link #NO_COMPRESSION}, or a level from 1 to 9; values outside that are ignored
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (validRange(compressionLevel, NO_COMPRESSION, Deflater.BEST_COMPRESSION)) {
+            this.compressionLevel = compressionLevel;
+        }
+    }
+
+    /**
+     * Gets the buffer size used for store file streams, see {@link #setBufferSize(int)}.
+     * @return the buffer size in bytes
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Sets the buffer size used for store file streams, and for the compression and decompression buffers. Defaults
+     * to {@link #DEFAULT_BUFFER_SIZE}. Larger buffers mean fewer, larger reads and writes.
+     *
+     * @param bufferSize the buffer size in bytes, from 512 bytes to 16MB; values outside that are ignored
+     */
+    public void setBufferSize(int bufferSize) {
+        if (validRange(bufferSize, 512, 16 * 1024 * 1024)) {
+            this.bufferSize = bufferSize;
+        }
+    }
+
+    /**
+     * Checks whether the report totals are verified, see {@link #setVerifyingTotals(boolean)}.
+     * @return {@code true} if every read of a total also recounts it
+     */
+    public boolean isVerifyingTotals() {
+        return verifyingTotals;
+    }
+
+    /**
+     * Turns verifying of the report totals on or off. Defaults to off.
+     * <p>
+     * {@link #numberOfArchivedNotes()}, {@link #numberOfActiveNotes()}, {@link #numberOfItems()},
+     * {@link #numberOfCompleteItems()} and {@link #numberOfTodoItems()} answer from totals kept up to date as the notes
+     * change. With verifying on, they also recount the notes every time and throw an {@link IllegalStateException} if
+     * the kept totals are wrong, e.g. because an {@link Item} was changed directly rather than through
+     * {@link Note#updateItem(int, String, boolean)}. Meant for tests, as it makes every count walk all the items again.
+     *
+     * @param verifyingTotals {@code true} to verify the totals on every read
+     */
+    public void setVerifyingTotals(boolean verifyingTotals) {
+        this.verifyingTotals = verifyingTotals;
+    }
+
+    /**
+     * Checks whether notes are loaded without their items, see {@link #setLazyItems(boolean)}.
+     * @return {@code true} if items are loaded lazily
+     */
+    public boolean isLazyItems() {
+        return lazyItems;
+    }
+
+    /**
+     * Turns lazy loading of items on or off. Defaults to off. Takes effect on the next {@link #load()}.
+     * <p>
+     * When on, {@link #load()} only reads the header of each note in a {@link StoreFormat#BINARY} snapshot (title,
+     * priority, category, archived state and item counts), and a note's items are read the first time they are needed
+     * (see {@link Note#setItemLoader(models.ItemLoader, int, int)}), so startup time and memory depend on the number
+     * of notes rather than the number of items. Counting methods such as {@link #numberOfActiveNotes()},
+     * {@link #numberOfNotesByCategory(String)} and {@link #numberOfItems()} never load items; listings that print
+     * notes with their items (e.g. {@link #listActiveNotes()}) load the items of the notes they print. The snapshot is
+     * memory-mapped to read them from.
+     * <p>
+     * XML files don't record where each note's items are, so they are always loaded with their items.
+     *
+     * @param lazyItems {@code true} to load items lazily, {@code false} to load every item up front
+     */
+    public void setLazyItems(boolean lazyItems) {
+        this.lazyItems = lazyItems;
+    }
+
+    /**
+     * Checks whether the notes have changed since they were last loaded or saved.
+     * @return {@code true} if there are changes that {@link #save()} hasn't been asked to write yet
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    // -------------- NOTE LISTENER --------------
+
+    /**
+     * Finds the position of a note in the notes ArrayList by identity, rather than with {@link Note#equals(Object)},
+     * which would match an earlier note with the same contents. Constant time once {@link #notesById} is built,
+     * otherwise a scan.
+     *
+     * @param note the note to find
+     * @return the index of the note, or -1 if it isn't stored
+     */
+    private int positionOf(Note note) {
+        if (notesById != null) {
+            IdEntry entry = notesById.get(note.getNoteId());
+            if ((entry != null) && (entry.note == note)) {
+                return positionOf(entry);
+            }
+        }
+        if (notes instanceof MappedNoteList) {
+            // only decoded notes have the listener, so there is no need to decode the rest
+            return ((MappedNoteList) notes).indexOfDecoded(note);
+        }
+        if (notes instanceof ColumnarNoteList) {
+            return ((ColumnarNoteList) notes).indexOfMaterialised(note);
+        }
+        for (int i = 0; i < notes.size(); i++) {
+            if (notes.get(i) == note) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether the note at {@code position} is {@code note}, by identity. A note of a {@link ColumnarNoteList}
+     * that hasn't been created yet can't be the note, so it isn't created to find out.
+     */
+    private boolean isNoteAt(int position, Note note) {
+        if (notes instanceof ColumnarNoteList) {
+            return ((ColumnarNoteList) notes).isMaterialisedAt(position, note);
+        }
+        return notes.get(position) == note;
+    }
+
+    // the header of the note at a position, read from the columns of a ColumnarNoteList rather than its Note (and,
+    // where the record header has it, from a MappedNoteList without decoding the note)
+
+    private String titleAt(int position) {
+        return (notes instanceof ColumnarNoteList) ? ((ColumnarNoteList) notes).titleAt(position)
+                : notes.get(position).getNoteTitle();
+    }
+
+    private int categoryIdAt(int position) {
+        return (notes instanceof ColumnarNoteList) ? ((ColumnarNoteList) notes).categoryIdAt(position)
+                : notes.get(position).getNoteCategoryId();
+    }
+
+    private int priorityAt(int position) {
+        return (notes instanceof ColumnarNoteList) ? ((ColumnarNoteList) notes).priorityAt(position)
+                : notes.get(position).getNotePriority();
+    }
+
+    private int noteIdAt(int position) {
+        if (notes instanceof ColumnarNoteList) {
+            return ((ColumnarNoteList) notes).noteIdAt(position);
+        }
+        if (notes instanceof MappedNoteList) {
+            return ((MappedNoteList) notes).noteIdAt(position);
+        }
+        return notes.get(position).getNoteId();
+    }
+
+    private boolean isArchivedAt(int position) {
+        if (notes instanceof ColumnarNoteList) {
+            return ((ColumnarNoteList) notes).isArchivedAt(position);
+        }
+        if (notes instanceof MappedNoteList) {
+            return ((MappedNoteList) notes).isArchivedAt(position);
+        }
+        return notes.get(position).isNoteArchived();
+    }
+
+    /**
+     * Gets the items of the note at {@code position}, to read only. A note of a {@link ColumnarNoteList} or a
+     * {@link MappedNoteList} that isn't in memory yet isn't kept in memory to get them.
+     */
+    private List<Item> itemsAt(int position) {
+        if (notes instanceof ColumnarNoteList) {
+            return ((ColumnarNoteList) notes).itemsAt(position);
+        }
+        if (notes instanceof MappedNoteList) {
+            return ((MappedNoteList) notes).itemsAt(position);
+        }
+        return notes.get(position).getItems();
+    }
+
+    /**
+     * Gets the note at {@code position}, to read only, e.g. to render it in a listing or test it against a filter. A
+     * note of a {@link ColumnarNoteList} that hasn't been handed out yet is created from its columns for the caller
+     * only, rather than kept for good.
+     */
+    private Note noteToRead(int position) {
+        return (notes instanceof ColumnarNoteList) ? ((ColumnarNoteList) notes).readOnlyAt(position)
+                : notes.get(position);
+    }
+
+    /**
+     * Checks whether the note at {@code position} has all its items completed, see
+     * {@link Note#checkNoteCompletionStatus()}.
+     */
+    private boolean isCompletedAt(int position) {
+        if (notes instanceof ColumnarNoteList) {
+            ColumnarNoteList columns = (ColumnarNoteList) notes;
+            return columns.numberOfCompletedItemsAt(position) == columns.numberOfItemsAt(position);
+        }
+        if (notes instanceof MappedNoteList) {
+            MappedNoteList mapped = (MappedNoteList) notes;
+            return mapped.numberOfCompletedItemsAt(position) == mapped.numberOfItemsAt(position);
+        }
+        return notes.get(position).checkNoteCompletionStatus();
+    }
+
+    /**
+     * Records a note just added at {@code position} in the indexes and totals that have been built.
+     */
+    private void indexAdded(Note note, int position) {
+        if (totals != null) {
+            totals.noteAdded(note);
+        }
+        if (categoryIndex != null) {
+            categoryIndex.add(note.getNoteCategoryId(), position);
+        }
+        if (titleIndex != null) {
+            titleIndex.noteAdded(note.getNoteTitle(), position);
+        }
+        if (descriptionIndex != null) {
+            descriptionIndex.noteAdded(note.getItems(), position);
+        }
+        if (priorityIndex != null) {
+            priorityIndex.add(note.getNotePriority(), position);
+        }
+    }
+
+    /**
+     * Records a note being deleted from {@code position} in the indexes and totals that have been built. Must be
+     * called before any of its items are deleted.
+     */
+    private void indexDeleted(Note note, int position) {
+        if (totals != null) {
+            totals.noteDeleted(note);
+        }
+        if (categoryIndex != null) {
+            categoryIndex.delete(note.getNoteCategoryId(), position);
+        }
+        if (titleIndex != null) {
+            titleIndex.noteDeleted(note.getNoteTitle(), position);
+        }
+        if (descriptionIndex != null) {
+            descriptionIndex.noteDeleted(position);
+        }
+        if (priorityIndex != null) {
+            priorityIndex.delete(note.getNotePriority(), position);
+        }
+    }
+
+    /**
+     * Gets the stored notes by ID, building the map the first time it's needed. Notes without an ID, or sharing one
+     * with an earlier note, are given a new ID. These are notes read from a file saved before notes had IDs, so the
+     * next save writes the whole store (rather than appending to the journal) to keep the new IDs.
+     */
+    private HashMap<Integer, IdEntry> notesById() {
+        if (notesById == null) {
+            nextNoteId();
+            idTombstones.clear();
+            notesById = new HashMap<Integer, IdEntry>(Math.max(16, notes.size() * 2));
+            boolean idsGiven = false;
+            int position = 0;
+            for (Note note : notes) {
+                idsGiven |= registerNoteId(note, position++);
+            }
+            if (idsGiven) {
+                journalAttached = false;
+            }
+        }
+        return notesById;
+    }
+
+    /**
+     * Gives a note about to be stored a new ID if it has none or another stored note has its ID, and records it in
+     * {@link #notesById} if that has been built. An ID above every stored ID can't be taken, so adding a new note
+     * doesn't build the map (and, for a {@link ColumnarNoteList}, create every note) unless it has a lower ID.
+     *
+     * @param position the index the note is about to be stored at
+     */
+    private void assignNoteId(Note note, int position) {
+        int noteId = note.getNoteId();
+        if (noteId >= nextNoteId()) {
+            nextNoteId = noteId + 1;
+        }
+        else {
+            IdEntry holder = (noteId > 0) ? notesById().get(noteId) : null;
+            if ((noteId <= 0) || ((holder != null) && (holder.note != note))) {
+                noteId = nextNoteId++;
+                note.setNoteId(noteId);
+            }
+        }
+        if (notesById != null) {
+            notesById.put(noteId, new IdEntry(note, idTombstones.toSlot(position)));
+        }
+    }
+
+    /**
+     * Gets the ID the next note stored without one is given, working it out from the stored notes' IDs the first
+     * time it's needed after a {@link #load()}. The IDs are read with {@link #noteIdAt(int)}, so no mapped note is
+     * decoded, and no columnar note created, to find the highest.
+     */
+    private int nextNoteId() {
+        if (nextNoteId == 0) {
+            nextNoteId = 1;
+            for (int i = 0; i < notes.size(); i++) {
+                nextNoteId = Math.max(nextNoteId, noteIdAt(i) + 1);
+            }
+        }
+        return nextNoteId;
+    }
+
+    /**
+     * Records a stored note in {@link #notesById}, giving it a new ID if it has none or another note has its ID.
+     *
+     * @param position the index the note is stored at
+     * @return {@code true} if the note was given a new ID
+     */
+    private boolean registerNoteId(Note note, int position) {
+        int noteId = note.getNoteId();
+        IdEntry holder = (noteId > 0) ? notesById.get(noteId) : null;
+        boolean newId = (noteId <= 0) || ((holder != null) && (holder.note != note));
+        if (newId) {
+            noteId = nextNoteId++;
+            note.setNoteId(noteId);
+        }
+        else {
+            nextNoteId = Math.max(nextNoteId, noteId + 1);
+        }
+        notesById.put(noteId, new IdEntry(note, idTombstones.toSlot(position)));
+        return newId;
+    }
+
+    /**
+     * Removes a deleted note from {@link #notesById}, if that has been built. Rather than moving every later note's
+     * slot down one, the deleted slot is marked in {@link #idTombstones}; the slots are only rewritten as indexes once
+     * enough notes have been deleted, see {@link Tombstones#needsCompacting(int)}.
+     *
+     * @param position the index the note was stored at
+     */
+    private void idDeleted(Note note, int position) {
+        if (notesById == null) {
+            return;
+        }
+        IdEntry entry = notesById.get(note.getNoteId());
+        if ((entry != null) && (entry.note == note)) {
+            notesById.remove(note.getNoteId());
+        }
+        idTombstones.delete(position);
+        if (idTombstones.needsCompacting(notesById.size())) {
+            for (IdEntry kept : notesById.values()) {
+                kept.slot = idTombstones.toPosition(kept.slot);
+            }
+            idTombstones.clear();
+        }
+    }
+
+    /**
+     * Removes the notes deleted by {@link #deleteWhere(Predicate)} from {@link #notesById}, if that has been built,
+     * and moves every kept note's position down past the deleted notes stored before it.
+     *
+     * @param deleted the deleted notes
+     * @param positions the indexes the deleted notes were stored at
+     * @param oldSize the number of notes before the delete
+     */
+    private void idsDeleted(List<Note> deleted, BitSet positions, int oldSize) {
+        if (notesById == null) {
+            return;
+        }
+        for (Note note : deleted) {
+            IdEntry entry = notesById.get(note.getNoteId());
+            if ((entry != null) && (entry.note == note)) {
+                notesById.remove(note.getNoteId());
+            }
+        }
+        int[] deletedBefore = new int[oldSize];
+        int count = 0;
+        for (int i = 0; i < oldSize; i++) {
+            deletedBefore[i] = count;
+            if (positions.get(i)) {
+                count++;
+            }
+        }
+        for (IdEntry kept : notesById.values()) {
+            int position = idTombstones.toPosition(kept.slot);
+            kept.slot = position - deletedBefore[position];
+        }
+        idTombstones.clear(); // every slot is an index again
+    }
+
+    /**
+     * Gets the index of a note in {@link #notesById}, from its slot and the notes deleted since it was recorded.
+     */
+    private int positionOf(IdEntry entry) {
+        return idTombstones.toPosition(entry.slot);
+    }
+
+    /**
+     * A stored note and its slot, kept together in {@link #notesById} so the ID methods don't have to search the
+     * notes for its index. The slot is the note's index less any notes deleted since, see {@link #idTombstones}.
+     */
+    private static final class IdEntry {
+        IdEntry(Note note, int slot) {
+            this.note = note;
+            this.slot = slot;
+        }
+
+        /**
+         * The stored note.
+         */
+        private final Note note;
+
+        /**
+         * The note's index in the notes collection when it was recorded, or when the slots were last compacted.
+         */
+        private int slot;
+    }
+
+    /**
+     * Deletes every item of a note being deleted (the cascading delete of {@link #deleteNote(int)}). The note must
+     * no longer have the {@link NoteChangeHandler}, as its items are no longer stored.
+     */
+    private static void deleteItemsOf(Note note) {
+        for (int i = note.numberOfItems() - 1; i >= 0; i--) {
+            note.deleteItem(i);
+        }
+    }
+
+    /**
+     * Removes the notes at the given positions in a single pass, keeping the rest in order. Memory-mapped and columnar
+     * lists compact their own arrays, so notes that haven't been decoded or created yet stay that way.
+     */
+    private void removePositions(BitSet positions) {
+        if (notes instanceof MappedNoteList) {
+            ((MappedNoteList) notes).removePositions(positions);
+        }
+        else if (notes instanceof ColumnarNoteList) {
+            ((ColumnarNoteList) notes).removePositions(positions);
+        }
+        else {
+            int kept = 0;
+            for (int i = 0; i < notes.size(); i++) {
+                if (!(positions.get(i))) {
+                    if (kept != i) {
+                        notes.set(kept, notes.get(i));
+                    }
+                    kept++;
+                }
+            }
+            notes.subList(kept, notes.size()).clear();
+        }
+    }
+
+    /**
+     * Runs a change to a stored note that the caller journals itself, so the {@link NoteChangeHandler} doesn't.
+     */
+    private void changeJournaledHere(Runnable change) {
+        boolean wasJournaledHere = journaledHere;
+        journaledHere = true;
+        try {
+            change.run();
+        }
+        finally {
+            journaledHere = wasJournaledHere;
+        }
+    }
+
+    /**
+     * Drops the position indexes, to be rebuilt from the notes when next needed, after changes that would otherwise
+     * have to be applied to them note by note.
+     */
+    private void dropIndexes() {
+        categoryIndex = null;
+        priorityIndex = null;
+        titleIndex = null;
+        descriptionIndex = null;
+    }
+
+    /**
+     * Moves every stored occurrence of a note from one key to another, after the note changed. Only the positions
+     * of the old key need to be looked at to find the note.
+     */
+    private <K> void moveInIndex(PositionIndex<K> index, Note note, K oldKey, K newKey) {
+        for (int position : index.positions(oldKey)) {
+            if (isNoteAt(position, note)) {
+                index.remove(oldKey, position);
+                index.add(newKey, position);
+            }
+        }
+    }
+
+    /**
+     * Gets the category index, building it from the notes the first time it is needed after a {@link #load()}.
+     * <p>
+     * From then on it is kept up to date by {@link #add(Note)}, {@link #deleteNote(int)} and
+     * {@link NoteListener#categoryChanged(Note, String)} (which covers {@link #updateNote(int, String, int, String)}
+     * and categories changed directly on a stored note), so counting the notes of a category never looks at the notes.
+     * Categories are keyed by ID (see {@link Note#getNoteCategoryId()}), so looking one up never compares names.
+     *
+     * @return the positions of the notes of each category ID
+     */
+    private PositionIndex<Integer> categoryIndex() {
+        if (categoryIndex == null) {
+            PositionIndex<Integer> index = new PositionIndex<Integer>();
+            for (int i = 0; i < notes.size(); i++) {
+                index.add(categoryIdAt(i), i);
+            }
+            categoryIndex = index;
+        }
+        return categoryIndex;
+    }
+
+    /**
+     * Gets the priority index, building it from the notes the first time it is needed after a {@link #load()}.
+     * Kept up to date like the category index (see {@link #categoryIndex()}), using
+     * {@link NoteListener#priorityChanged(Note, int)}.
+     *
+     * @return the positions of the notes of each priority
+     */
+    private PositionIndex<Integer> priorityIndex() {
+        if (priorityIndex == null) {
+            PositionIndex<Integer> index = new PositionIndex<Integer>();
+            for (int i = 0; i < notes.size(); i++) {
+                index.add(priorityAt(i), i);
+            }
+            priorityIndex = index;
+        }
+        return priorityIndex;
+    }
+
+    /**
+     * Gets the title index, building it from the notes the first time it is needed after a {@link #load()}.
+     * Kept up to date like the category index (see {@link #categoryIndex()}), using
+     * {@link NoteListener#titleChanged(Note, String)}.
+     *
+     * @return the words of the note titles
+     */
+    private TitleIndex titleIndex() {
+        if (titleIndex == null) {
+            titleIndex = new TitleIndex(notes.size(), this::titleAt);
+        }
+        return titleIndex;
+    }
+
+    /**
+     * Gets the item description index, building it from all the notes' items the first time it is needed after a
+     * {@link #load()}. The items are read with {@link #itemsAt(int)}, so building it doesn't keep a {@link Note} for
+     * every mapped or columnar note. Kept up to date by {@link #add(Note)}, {@link #deleteNote(int)} and the item
+     * changes seen by the {@link NoteListener}, at the position of the changed note, see {@link DescriptionIndex}.
+     *
+     * @return the trigrams of the item descriptions
+     */
+    private DescriptionIndex descriptionIndex() {
+        if (descriptionIndex == null) {
+            descriptionIndex = new DescriptionIndex(notes.size(), this::itemsAt);
+        }
+        return descriptionIndex;
+    }
+
+    /**
+     * Gets the report totals, counting them from the notes the first time they are needed after a {@link #load()}.
+     * From then on they are kept up to date by {@link #add(Note)}, {@link #deleteNote(int)} and the
+     * {@link NoteListener}, so the counting methods never walk the notes or their items. A columnar or memory-mapped
+     * store is counted from its columns or record headers, so no note is created or decoded to count it.
+     * <p>
+     * If verifying is on (see {@link #setVerifyingTotals(boolean)}), the totals are checked against a fresh count
+     * every time.
+     *
+     * @return the totals
+     * @throws IllegalStateException if verifying is on and the totals don't match the notes
+     */
+    private NoteTotals totals() {
+        if (totals == null) {
+            if (notes instanceof ColumnarNoteList) {
+                totals = ((ColumnarNoteList) notes).totals();
+            }
+            else if (notes instanceof MappedNoteList) {
+                totals = ((MappedNoteList) notes).totals();
+            }
+            else {
+                totals = new NoteTotals(notes);
+            }
+        }
+        else if (verifyingTotals) {
+            totals.verify(notes);
+        }
+        return totals;
+    }
+
+    /**
+     * Listens to every stored {@link Note}, so changes made through the {@link Note} methods (e.g. in
+     * {@link main.Driver}) are journaled like changes made through this class, and are reflected in the indexes and
+     * totals.
+     */
+    private class NoteChangeHandler implements NoteListener {
+        @Override
+        public void itemAdded(Note note, Item item) {
+            dirty = true;
+            if (totals != null) {
+                totals.itemsChanged(1, item.isItemCompleted() ? 1 : 0);
+            }
+            descriptionsChanged(note);
+            if (journalEnabled) {
+                journal.recordItemAdd(positionOf(note), item);
+            }
+        }
+
+        @Override
+        public void itemUpdated(Note note, int index, boolean wasCompleted) {
+            dirty = true;
+            if (totals != null) {
+                int completedChange = (note.findItem(index).isItemCompleted() ? 1 : 0) - (wasCompleted ? 1 : 0);
+                totals.itemsChanged(0, completedChange);
+            }
+            descriptionsChanged(note);
+            if (journalEnabled) {
+                journal.recordItemUpdate(positionOf(note), index, note.findItem(index));
+            }
+        }
+
+        @Override
+        public void itemDeleted(Note note, int index, Item item) {
+            dirty = true;
+            if (totals != null) {
+                totals.itemsChanged(-1, item.isItemCompleted() ? -1 : 0);
+            }
+            descriptionsChanged(note);
+            if (journalEnabled) {
+                journal.recordItemDelete(positionOf(note), index);
+            }
+        }
+
+        @Override
+        public void itemsReplaced(Note note, int oldItemCount, int oldCompletedCount) {
+            dirty = true;
+            if (totals != null) {
+                totals.itemsChanged(note.numberOfItems() - oldItemCount,
+                        note.numberOfCompletedItems() - oldCompletedCount);
+            }
+            descriptionsChanged(note);
+            if (journalEnabled) {
+                journal.recordItemsReplaced(positionOf(note), note.getItems());
+            }
+        }
+
+        @Override
+        public void titleChanged(Note note, String oldTitle) {
+            headerChanged(note);
+            if (batching) {
+                titleIndex = null; // rebuilt once after the batch, see updateWhere
+            }
+            else if (titleIndex != null) {
+                titleIndex.titleChanged(note, oldTitle, position -> isNoteAt(position, note));
+            }
+        }
+
+        @Override
+        public void categoryChanged(Note note, String oldCategory) {
+            headerChanged(note);
+            if (batching) {
+                categoryIndex = null;
+            }
+            else if (categoryIndex != null) {
+                moveInIndex(categoryIndex, note, categoryId(oldCategory), note.getNoteCategoryId());
+            }
+        }
+
+        @Override
+        public void priorityChanged(Note note, int oldPriority) {
+            headerChanged(note);
+            if (batching) {
+                priorityIndex = null;
+            }
+            else if (priorityIndex != null) {
+                moveInIndex(priorityIndex, note, oldPriority, note.getNotePriority());
+            }
+        }
+
+        @Override
+        public void archivedChanged(Note note) {
+            dirty = true;
+            if (totals != null) {
+                totals.archivedChanged(note.isNoteArchived());
+            }
+            if (journalEnabled && !(batching) && !(journaledHere)) {
+                if (note.isNoteArchived()) {
+                    journal.recordArchive(positionOf(note));
+                }
+                else {
+                    journalAttached = false; // the journal can't record un-archiving, so save the whole store
+                }
+            }
+        }
+
+        /**
+         * Brings the description index up to date with a note's items, at the note's position. During a bulk update
+         * the index is dropped instead, like the other indexes.
+         */
+        private void descriptionsChanged(Note note) {
+            if (batching) {
+                descriptionIndex = null;
+            }
+            else if (descriptionIndex != null) {
+                descriptionIndex.itemsChanged(note.getItems(), positionOf(note));
+            }
+        }
+
+        /**
+         * Marks the notes as changed after a title, priority or category change, and journals the note's new header
+         * unless the change is journaled elsewhere (see {@link NoteAPI#batching} and
+         * {@link NoteAPI#journaledHere}).
+         */
+        private void headerChanged(Note note) {
+            dirty = true;
+            if (journalEnabled && !(batching) && !(journaledHere)) {
+                journal.recordUpdate(positionOf(note), note.getNoteTitle(), note.getNotePriority(),
+                        note.getNoteCategory());
+            }
+        }
+    }
+
+    /**
+     * The ArrayList of {@link Note} objects
+     * Initially empty when the object is created, populated through CRUD operations.
+     * A {@link MappedNoteList} instead after a memory-mapped {@link #load()}.
+     */
+    private List<Note> notes = new ArrayList<Note>();
+
+    /**
+     * The format {@link #save()} writes, defaults to the original XStream XML format.
+     */
+    private StoreFormat storeFormat = StoreFormat.XML;
+
+    /**
+     * The file to save to and load from, {@code null} to use the default file of {@link #storeFormat}.
+     */
+    private File storeFile = null;
+
+    /**
+     * Whether changes are journaled, see {@link #setJournalEnabled(boolean)}.
+     */
+    private boolean journalEnabled = false;
+
+    /**
+     * Whether {@link #save()} writes on a background thread, see {@link #setAsyncSave(boolean)}.
+     */
+    private boolean asyncSave = false;
+
+    /**
+     * Whether the notes have changed since they were last loaded or saved, see {@link #isDirty()}.
+     */
+    private boolean dirty = false;
+
+    /**
+     * Runs the writes of async saves.
+     */
+    private final BackgroundSaver backgroundSaver = new BackgroundSaver();
+
+    /**
+     * Number of shard files the store is written as, see {@link #setShardCount(int)}.
+     */
+    private int shardCount = 1;
+
+    /**
+     * Whether {@link #load()} leaves items unread until needed, see {@link #setLazyItems(boolean)}.
+     */
+    private boolean lazyItems = false;
+
+    /**
+     * Whether {@link #load()} memory-maps binary snapshots, see {@link #setMemoryMapped(boolean)}.
+     */
+    private boolean memoryMapped = false;
+
+    /**
+     * Whether {@link #load()} holds the loaded notes in columns, see {@link #setColumnarStorage(boolean)}.
+     */
+    private boolean columnarStorage = false;
+
+    /**
+     * Whether the store file and journal file on disk, plus the changes recorded in {@link #journal}, add up to the
+     * notes in memory. Only then can {@link #save()} append to the journal instead of writing the whole store.
+     */
+    private boolean journalAttached = false;
+
+    /**
+     * Changes recorded since the last save, see {@link NoteJournal}.
+     */
+    private final NoteJournal journal = new NoteJournal();
+
+    /**
+     * Registered on every stored note, to hear about changes made through the {@link Note} item methods.
+     */
+    private final NoteChangeHandler noteChangeHandler = new NoteChangeHandler();
+
+    /**
+     * The stored notes by ID, with their indexes, {@code null} until first needed, see {@link #notesById()}.
+     */
+    private HashMap<Integer, IdEntry> notesById = null;
+
+    /**
+     * The slots of the notes deleted since the slots in {@link #notesById} were last rewritten as indexes, see
+     * {@link #idDeleted(Note, int)}.
+     */
+    private final Tombstones idTombstones = new Tombstones();
+
+    /**
+     * The ID the next note stored without one is given, one more than the highest stored ID, or 0 until worked out
+     * by {@link #nextNoteId()}.
+     */
+    private int nextNoteId = 0;
+
+    /**
+     * The positions of the notes of each category, {@code null} until first needed, see {@link #categoryIndex()}.
+     */
+    private PositionIndex<Integer> categoryIndex = null;
+
+    /**
+     * The positions of the notes of each priority, {@code null} until first needed, see {@link #priorityIndex()}.
+     */
+    private PositionIndex<Integer> priorityIndex = null;
+
+    /**
+     * The words of the note titles, {@code null} until first needed, see {@link #titleIndex()}.
+     */
+    private TitleIndex titleIndex = null;
+
+    /**
+     * The trigrams of the item descriptions, {@code null} until first needed, see {@link #descriptionIndex()}.
+     */
+    private DescriptionIndex descriptionIndex = null;
+
+    /**
+     * The report totals, {@code null} until first needed, see {@link #totals()}.
+     */
+    private NoteTotals totals = null;
+
+    /**
+     * Whether a bulk update is running, during which note changes drop the indexes they affect instead of updating
+     * them, see {@link #updateWhere(Predicate, Consumer)}.
+     */
+    private boolean batching = false;
+
+    /**
+     * Whether a method of this class is changing a note and journals the change itself, at a position it already
+     * knows, so the {@link NoteChangeHandler} doesn't journal it again, see {@link #changeJournaledHere(Runnable)}.
+     */
+    private boolean journaledHere = false;
+
+    /**
+     * Whether the totals are checked against a fresh count every time they are read.
+     */
+    private boolean verifyingTotals = false;
+
+    /**
+     * GZIP compression level for whole-store writes, see {@link #setCompressionLevel(int)}.
+     */
+    private int compressionLevel = NO_COMPRESSION;
+
+    /**
+     * Buffer size used for file streams in {@link #load()} and {@link #save()}, see {@link #setBufferSize(int)}.
+     */
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    /**
+     * Compression level meaning store files are written uncompressed.
+     */
+    public static final int NO_COMPRESSION = 0;
+
+    /**
+     * Default buffer size for file streams.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The first two bytes of every GZIP stream, as read by {@link GZIPInputStream} (little-endian).
+     */
+    private static final int GZIP_MAGIC = GZIPInputStream.GZIP_MAGIC;
+
+    /**
+     * The largest number of shards {@link #setShardCount(int)} accepts.
+     */
+    public static final int MAX_SHARDS = 256;
+
+    /**
+     * The most notes {@link #archiveNotesWithAllItemsCompleteInParallel()} checks in one task.
+     */
+    static final int PARALLEL_THRESHOLD = 4096;
+
+    /**
+     * The number of typos {@link #searchNotesByTitleFuzzy(String)} allows.
      */
-    private ArrayList<Note> notes = new ArrayList<Note>();
-}
\ No newline at end of file
+    public static final int DEFAULT_FUZZY_DISTANCE = 2;
+}
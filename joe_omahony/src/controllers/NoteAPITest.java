@@ -6,6 +6,18 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.Rendering;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -81,6 +93,11 @@ public class NoteAPITest {
         //adding 2 archived Note to the archivedNotes api
         archivedNotes.add(gymHobbyArchived);
         archivedNotes.add(archivedNoteNoItems);
+
+        //every count is checked against a full recount of the notes
+        notes.setVerifyingTotals(true);
+        emptyNotes.setVerifyingTotals(true);
+        archivedNotes.setVerifyingTotals(true);
     }
 
     @AfterEach
@@ -140,6 +157,7 @@ public class NoteAPITest {
             //ensuring items associated with deleted notes are also deleted i.e. cascading deletes.
             assertTrue(notes.searchItemByDescription("Study Objects and Classes").contains("0: Study Objects and Classes. [TODO]"));
             assertEquals(javaWork, notes.deleteNote(0));
+            assertEquals(0, javaWork.numberOfItems());
             assertEquals(4, notes.numberOfNotes());
             assertEquals("No items found for: Study Objects and Classes", notes.searchItemByDescription("Study Objects and Classes"));
         }
@@ -196,6 +214,170 @@ public class NoteAPITest {
             assertFalse(notes.findNote(0).isNoteArchived());
             assertFalse(notes.findNote(2).isNoteArchived());
         }
+
+        @Test
+        void archivingInParallelArchivesTheSameNotes(){
+            ArchiveResult result = notes.archiveNotesWithAllItemsCompleteInParallel();
+            assertEquals(List.of(codeApp, testApp, deployApp), result.getArchivedNotes());
+            assertEquals(3, result.getArchivedCount());
+            assertEquals(4, notes.numberOfArchivedNotes());
+            assertEquals("Archived Notes:\n" + codeApp + testApp + deployApp, result.toString());
+            assertEquals("No active notes eligible for archive",
+                    notes.archiveNotesWithAllItemsCompleteInParallel().toString());
+            assertEquals("No active notes stored", emptyNotes.archiveNotesWithAllItemsCompleteInParallel().toString());
+            assertFalse(archivedNotes.archiveNotesWithAllItemsCompleteInParallel().hadActiveNotes());
+        }
+
+        @Test
+        void archivingInParallelSplitsLargeStores(){
+            int noteCount = NoteAPI.PARALLEL_THRESHOLD * 3 + 5;
+            for (int i = 0; i < noteCount; i++) {
+                Note note = new Note("Bulk " + i, 2, "Home");
+                if (i % 3 != 0) {
+                    note.addItem(new Item("Todo"));
+                }
+                emptyNotes.add(note);
+            }
+            ArchiveResult result = emptyNotes.archiveNotesWithAllItemsCompleteInParallel();
+            assertEquals((noteCount + 2) / 3, result.getArchivedCount());
+            assertEquals("Bulk 3", result.getArchivedNotes().get(1).getNoteTitle());
+            assertEquals(result.getArchivedCount(), emptyNotes.numberOfArchivedNotes());
+        }
+    }
+
+    @Nested
+    class IdMethods {
+        @Test
+        void idsStayWithTheirNotesWhenIndexesChange() {
+            int summerId = summerHoliday.getNoteId();
+            assertTrue(summerId > 0);
+            assertNotEquals(javaWork.getNoteId(), summerId);
+            assertSame(summerHoliday, notes.findNoteById(summerId));
+
+            assertSame(javaWork, notes.deleteNoteById(javaWork.getNoteId()));
+            assertNull(notes.findNoteById(javaWork.getNoteId()));
+            assertNull(notes.deleteNoteById(javaWork.getNoteId()));
+            assertSame(summerHoliday, notes.findNoteById(summerId));
+            assertSame(summerHoliday, notes.findNote(1));
+
+            Note newNote = new Note("New Note", 2, "Home");
+            notes.add(newNote);
+            assertTrue(newNote.getNoteId() > deployApp.getNoteId());
+            assertSame(newNote, notes.findNoteById(newNote.getNoteId()));
+            assertNull(emptyNotes.findNoteById(summerId));
+        }
+
+        @Test
+        void addingANoteWithATakenIdGivesItANewOne() {
+            Note copy = new Note("Copy", 1, "Home");
+            copy.setNoteId(javaWork.getNoteId());
+            notes.add(copy);
+            assertNotEquals(javaWork.getNoteId(), copy.getNoteId());
+            assertSame(javaWork, notes.findNoteById(javaWork.getNoteId()));
+            assertSame(copy, notes.findNoteById(copy.getNoteId()));
+        }
+
+        @Test
+        void updatingAndArchivingByIdWorkLikeTheIndexVersions() {
+            assertTrue(notes.updateNoteById(testApp.getNoteId(), "Test App Again", 2, "College"));
+            assertEquals("Test App Again", notes.findNote(4).getNoteTitle());
+            assertEquals(1, notes.numberOfNotesByCategory("College"));
+            assertFalse(notes.updateNoteById(-1, "Nothing", 2, "College"));
+
+            assertTrue(notes.archiveNoteById(codeApp.getNoteId()));
+            assertFalse(notes.archiveNoteById(codeApp.getNoteId())); // already archived
+            assertFalse(notes.archiveNoteById(summerHoliday.getNoteId())); // items still todo
+            assertFalse(notes.archiveNoteById(-1));
+            assertEquals(2, notes.numberOfArchivedNotes());
+        }
+
+        @Test
+        void idsFindTheRightIndexesAfterManyDeletes() {
+            ArrayList<Note> kept = new ArrayList<Note>();
+            for (int i = 0; i < 600; i++) {
+                Note note = new Note("Bulk " + i, (i % 5) + 1, "Work");
+                emptyNotes.add(note);
+                kept.add(note);
+            }
+            assertSame(kept.get(0), emptyNotes.findNoteById(kept.get(0).getNoteId())); // the IDs are mapped from here on
+            for (int i = 0; i < 400; i++) {
+                Note toDelete = kept.remove((i * 7) % kept.size());
+                assertSame(toDelete, emptyNotes.deleteNoteById(toDelete.getNoteId()));
+                if ((i % 50) == 0) {
+                    Note added = new Note("Added " + i, 1, "Home");
+                    emptyNotes.add(added);
+                    kept.add(added);
+                }
+                if (i == 200) {
+                    ArrayList<Note> deleted = emptyNotes.deleteWhere(note -> note.getNoteTitle().endsWith("3"));
+                    kept.removeAll(deleted);
+                }
+            }
+            assertEquals(kept.size(), emptyNotes.numberOfNotes());
+            for (int i = 0; i < kept.size(); i++) {
+                Note note = kept.get(i);
+                assertTrue(emptyNotes.updateNoteById(note.getNoteId(), "Kept " + i, 2, "Home"));
+                assertEquals("Kept " + i, emptyNotes.findNote(i).getNoteTitle());
+            }
+            assertSame(kept.get(10), emptyNotes.deleteNoteById(kept.get(10).getNoteId()));
+            assertSame(kept.get(11), emptyNotes.findNote(10));
+        }
+    }
+
+    @Nested
+    class BulkMethods {
+        @Test
+        void addAllAddsEveryNoteAndKeepsSearchesInStep() {
+            assertEquals(4, notes.numberOfNotesByCategory("Work")); // builds the category index first
+            ArrayList<Note> imported = new ArrayList<Note>();
+            imported.add(new Note("Imported One", 2, "Work"));
+            imported.add(new Note("Imported Two", 2, "Home"));
+            assertTrue(notes.addAll(imported));
+            assertFalse(notes.addAll(new ArrayList<Note>()));
+            assertEquals(8, notes.numberOfNotes());
+            assertEquals(5, notes.numberOfNotesByCategory("Work"));
+            assertEquals(2, notes.numberOfNotesByPriority(2));
+            assertTrue(notes.searchNotesByTitle("Imported").contains("Imported Two"));
+            assertSame(imported.get(1), notes.findNoteById(imported.get(1).getNoteId()));
+        }
+
+        @Test
+        void deleteWhereDeletesInOnePass() {
+            assertEquals(4, notes.numberOfNotesByCategory("Work")); // builds the category index first
+            ArrayList<Note> deleted = notes.deleteWhere(note -> note.getNotePriority() == 4);
+            assertEquals(List.of(gymHobbyArchived, codeApp, testApp), deleted);
+            assertEquals(0, codeApp.numberOfItems()); // items are deleted with their note, as by deleteNote
+            assertEquals(3, notes.numberOfNotes());
+            assertSame(summerHoliday, notes.findNote(1));
+            assertSame(deployApp, notes.findNote(2));
+            assertEquals(2, notes.numberOfNotesByCategory("Work"));
+            assertEquals(0, notes.numberOfArchivedNotes());
+            assertNull(notes.findNoteById(codeApp.getNoteId()));
+            assertTrue(notes.deleteWhere(note -> false).isEmpty());
+        }
+
+        @Test
+        void updateWhereChangesEveryMatchingNote() {
+            assertEquals(4, notes.numberOfNotesByCategory("Work"));
+            int updated = notes.updateWhere(note -> note.getNoteCategory().equals("Work"), note -> {
+                note.setNoteCategory("College");
+                note.setNotePriority(2);
+            });
+            assertEquals(4, updated);
+            assertEquals(0, notes.numberOfNotesByCategory("Work"));
+            assertEquals(4, notes.numberOfNotesByCategory("College"));
+            assertEquals(4, notes.numberOfNotesByPriority(2));
+            assertTrue(notes.listNotesBySelectedCategory("College").contains("Learning Java"));
+        }
+
+        @Test
+        void completeAllItemsWhereCompletesEveryTodoItem() {
+            assertEquals(6, notes.numberOfTodoItems());
+            assertEquals(6, notes.completeAllItemsWhere(note -> !note.isNoteArchived()));
+            assertEquals(0, notes.numberOfTodoItems());
+            assertEquals(11, notes.numberOfCompleteItems());
+            assertEquals(0, notes.completeAllItemsWhere(note -> true));
+        }
     }
 
     @Nested
@@ -228,6 +410,77 @@ public class NoteAPITest {
             assertEquals(0, emptyNotes.numberOfNotesByCategory("Work"));
         }
 
+        @Test
+        void numberOfNotesByCategoryFollowsChangesToTheNotes() {
+            assertEquals(4, notes.numberOfNotesByCategory("Work")); // builds the category index
+
+            assertTrue(notes.updateNote(0, "Learning Java", 5, "College"));
+            notes.findNote(3).setNoteCategory("College"); // changed directly on the stored note
+            notes.findNote(3).setNoteCategory("Not a category"); // ignored by the note, so no change
+            assertNotNull(notes.deleteNote(1));
+            assertTrue(notes.add(new Note("Paint", 2, "Hobby")));
+
+            assertEquals(2, notes.numberOfNotesByCategory("Work"));
+            assertEquals(2, notes.numberOfNotesByCategory("College"));
+            assertEquals(1, notes.numberOfNotesByCategory("Hobby"));
+            String collegeNotes = notes.listNotesBySelectedCategory("College");
+            assertTrue(collegeNotes.contains("0: " + javaWork.toString()));
+            assertTrue(collegeNotes.contains("2: " + codeApp.toString()));
+            assertTrue(notes.listNotesBySelectedCategory("Hobby").contains("5: "));
+            assertTrue(notes.listItemStatusByCategory("College").contains("Number completed: 3"));
+        }
+
+        @Test
+        void numberOfNotesByPriorityFollowsChangesToTheNotes() {
+            assertEquals(3, notes.numberOfNotesByPriority(4)); // builds the priority index
+
+            assertTrue(notes.updateNote(1, "Gym", 2, "Hobby"));
+            notes.findNote(2).setNotePriority(4); // changed directly on the stored note
+            notes.findNote(2).setNotePriority(9); // ignored by the note, so no change
+            assertNotNull(notes.deleteNote(0));
+            assertTrue(notes.add(new Note("Paint", 5, "Hobby")));
+
+            assertEquals(1, notes.numberOfNotesByPriority(5));
+            assertEquals(3, notes.numberOfNotesByPriority(4));
+            assertEquals(1, notes.numberOfNotesByPriority(2));
+            assertEquals(0, notes.numberOfNotesByPriority(1));
+            String priorityFourNotes = notes.listNotesBySelectedPriority(4);
+            assertTrue(priorityFourNotes.startsWith("3 notes with priority 4"));
+            assertTrue(priorityFourNotes.contains("1: " + summerHoliday.toString()));
+        }
+
+        @Test
+        void reportTotalsFollowChangesToNotesAndItems() {
+            assertEquals(11, notes.numberOfItems()); // counts the totals once
+
+            javaWork.updateItem(0, "Study Objects", true);
+            javaWork.addItem(new Item("Study Interfaces", true));
+            summerHoliday.deleteItem(0);
+            codeApp.setItems(new ArrayList<Item>());
+            assertTrue(notes.archiveNote(3));
+            gymHobbyArchived.setNoteArchived(false);
+            assertNotNull(notes.deleteNote(2));
+            assertTrue(notes.add(archivedNoteNoItems));
+
+            // each read below is also checked against a full recount (setVerifyingTotals)
+            assertEquals(6, notes.numberOfNotes());
+            assertEquals(2, notes.numberOfArchivedNotes());
+            assertEquals(4, notes.numberOfActiveNotes());
+            assertEquals(6, notes.numberOfItems());
+            assertEquals(5, notes.numberOfCompleteItems());
+            assertEquals(1, notes.numberOfTodoItems());
+        }
+
+        @Test
+        void verifyingTotalsCatchesItemsChangedBehindTheNotesBack() {
+            assertEquals(5, notes.numberOfCompleteItems());
+            javaItemOne.setItemCompleted(true); // not seen by the NoteAPI
+            assertThrows(IllegalStateException.class, () -> notes.numberOfCompleteItems());
+
+            notes.setVerifyingTotals(false);
+            assertEquals(5, notes.numberOfCompleteItems());
+        }
+
         @Test
         void numberOfNotesByPriorityCalculatedCorrectly() {
             assertEquals(1, notes.numberOfNotesByPriority(1));
@@ -467,6 +720,126 @@ public class NoteAPITest {
 
     }
 
+    @Nested
+    class StreamingMethods {
+
+        @Test
+        void streamingOverloadsWriteTheSameTextAsTheStringMethods() throws Exception {
+            for (NoteAPI api : List.of(notes, emptyNotes, archivedNotes)) {
+                StringWriter out = new StringWriter();
+                api.listAllNotes(out);
+                assertEquals(api.listAllNotes(), out.toString());
+                assertEquals(api.listActiveNotes(), streamed(api::listActiveNotes));
+                assertEquals(api.listArchivedNotes(), streamed(api::listArchivedNotes));
+                assertEquals(api.listTodoItems(), streamed(api::listTodoItems));
+                for (String category : List.of("Work", "Hobby", "College", "Nonsense")) {
+                    assertEquals(api.listNotesBySelectedCategory(category),
+                            streamed(o -> api.listNotesBySelectedCategory(category, o)));
+                    assertEquals(api.listItemStatusByCategory(category),
+                            streamed(o -> api.listItemStatusByCategory(category, o)));
+                }
+                for (int priority = 0; priority <= 6; priority++) {
+                    int selected = priority;
+                    assertEquals(api.listNotesBySelectedPriority(selected),
+                            streamed(o -> api.listNotesBySelectedPriority(selected, o)));
+                }
+                for (String text : List.of("App", "Book", "o", "missing")) {
+                    assertEquals(api.searchNotesByTitle(text), streamed(o -> api.searchNotesByTitle(text, o)));
+                    assertEquals(api.searchItemByDescription(text),
+                            streamed(o -> api.searchItemByDescription(text, o)));
+                }
+                NoteQuery work = new NoteQuery().withCategory("Work");
+                assertEquals(api.listNotesMatching(work), streamed(o -> api.listNotesMatching(work, o)));
+            }
+        }
+
+        @Test
+        void listingsKeepTheirFormat() {
+            assertEquals("Number completed: 3\n"
+                    + "Study ArrayLists and Collections (Note: Learning Java )\n"
+                    + "Code the UI (Note: Code App )\n"
+                    + "Code the Backend (Note: Code App )\n"
+                    + "Number TODO: 2\n"
+                    + "Study Objects and Classes (Note: Learning Java )\n"
+                    + javaItemThree.getItemDescription() + " (Note: Learning Java )",
+                    notes.listItemStatusByCategory("Work"));
+            assertEquals("Number completed: 0\nNumber TODO: 0", notes.listItemStatusByCategory("College"));
+            assertEquals("0: Learning Java\n0: Study Objects and Classes. [TODO]\n",
+                    notes.searchItemByDescription("Objects"));
+        }
+
+        private String streamed(Rendering rendering) throws Exception {
+            StringBuilder out = new StringBuilder();
+            rendering.writeTo(out);
+            return out.toString();
+        }
+    }
+
+    @Nested
+    class PagedListingMethods {
+
+        @Test
+        void pagesOfAllNotesJoinUpToTheWholeListing() {
+            String joined = "";
+            int pages = 0;
+            NotePage page = notes.listAllNotes(NotePage.FIRST_PAGE, 4);
+            joined += page.getText();
+            while (page.hasMore()) {
+                page = notes.listAllNotes(page.getNextCursor(), 4);
+                joined += page.getText();
+                pages++;
+            }
+            assertEquals(1, pages);
+            assertEquals(notes.listAllNotes(), joined);
+            assertEquals(notes.listAllNotes(), notes.listAllNotes(NotePage.FIRST_PAGE, 100).getText());
+            assertEquals("", notes.listAllNotes(NotePage.NO_MORE_PAGES, 4).getText());
+            assertFalse(emptyNotes.listAllNotes(NotePage.FIRST_PAGE, 4).hasMore());
+            assertEquals(emptyNotes.listAllNotes(), emptyNotes.listAllNotes(NotePage.FIRST_PAGE, 4).getText());
+        }
+
+        @Test
+        void activeAndArchivedPagesOnlyHoldTheirNotes() {
+            NotePage first = notes.listActiveNotes(NotePage.FIRST_PAGE, 2);
+            assertEquals("0: " + javaWork.toString() + "2: " + summerHoliday.toString(), first.getText());
+            assertEquals(3, first.getNextCursor()); // straight to the next active note
+            NotePage second = notes.listActiveNotes(first.getNextCursor(), 2);
+            assertEquals("3: " + codeApp.toString() + "4: " + testApp.toString(), second.getText());
+            NotePage third = notes.listActiveNotes(second.getNextCursor(), 2);
+            assertEquals("5: " + deployApp.toString(), third.getText());
+            assertFalse(third.hasMore());
+
+            NotePage archived = notes.listArchivedNotes(NotePage.FIRST_PAGE, 1);
+            assertEquals("1: " + gymHobbyArchived.toString(), archived.getText());
+            assertFalse(archived.hasMore());
+            assertEquals("No active notes stored", archivedNotes.listActiveNotes(NotePage.FIRST_PAGE, 5).getText());
+        }
+
+        @Test
+        void categoryPriorityAndQueryPagesUseTheirIndexes() {
+            NotePage work = notes.listNotesBySelectedCategory("Work", NotePage.FIRST_PAGE, 3);
+            assertEquals("0: " + javaWork.toString() + "3: " + codeApp.toString() + "4: " + testApp.toString(),
+                    work.getText());
+            NotePage moreWork = notes.listNotesBySelectedCategory("Work", work.getNextCursor(), 3);
+            assertEquals("5: " + deployApp.toString(), moreWork.getText());
+            assertFalse(moreWork.hasMore());
+            assertEquals("No notes with category College",
+                    notes.listNotesBySelectedCategory("College", NotePage.FIRST_PAGE, 3).getText());
+
+            NotePage priorityFour = notes.listNotesBySelectedPriority(4, NotePage.FIRST_PAGE, 0); // treated as 1
+            assertEquals("1: " + gymHobbyArchived.toString(), priorityFour.getText());
+            assertEquals(3, priorityFour.getNextCursor());
+            assertEquals("No notes with priority 6",
+                    notes.listNotesBySelectedPriority(6, NotePage.FIRST_PAGE, 3).getText());
+
+            NoteQuery activeApps = new NoteQuery().withTitleContaining("App").withArchived(false);
+            NotePage apps = notes.listNotesMatching(activeApps, NotePage.FIRST_PAGE, 2);
+            assertEquals("3: " + codeApp.toString() + "4: " + testApp.toString(), apps.getText());
+            assertEquals("5: " + deployApp.toString(), notes.listNotesMatching(activeApps, apps.getNextCursor(), 2)
+                    .getText());
+            assertEquals("No notes stored", emptyNotes.listNotesMatching(activeApps, NotePage.FIRST_PAGE, 2).getText());
+        }
+    }
+
     @Nested
     class FindingSearchingMethods {
 
@@ -540,6 +913,150 @@ public class NoteAPITest {
             assertFalse(searchItemsMultipleHits.contains("study"));
             assertFalse(searchItemsMultipleHits.contains("code the"));
         }
+
+        @Test
+        void searchNotesByTitleKeepsSubstringSemantics() {
+            String substringResults = notes.searchNotesByTitle("App");
+            assertTrue(substringResults.contains("Note 3: " + codeApp.toString()));
+            assertTrue(substringResults.contains("Note 4: " + testApp.toString()));
+            assertTrue(substringResults.contains("Note 5: " + deployApp.toString()));
+            assertTrue(notes.searchNotesByTitle("app").contains("No notes found")); // still case sensitive
+            assertTrue(notes.searchNotesByTitle("ing Ja").contains("Note 0: ")); // spans two words
+            assertTrue(notes.searchNotesByTitle("arnin").contains("Note 0: ")); // inside a word
+        }
+
+        @Test
+        void searchNotesByTitleWordsAndPrefixFollowChanges() {
+            assertTrue(notes.searchNotesByTitleWords("java LEARNING").contains("Note 0: "));
+            assertTrue(notes.searchNotesByTitleWords("java gym").contains("No notes found"));
+            assertTrue(notes.searchNotesByTitleWords("jav").contains("No notes found"));
+            assertTrue(notes.searchNotesByTitlePrefix("jav").contains("Note 0: "));
+
+            assertTrue(notes.updateNote(0, "Learning Kotlin", 5, "Work"));
+            summerHoliday.setNoteTitle("Spain Trip"); // changed directly on the stored note
+            assertNotNull(notes.deleteNote(1));
+            assertTrue(notes.add(new Note("Kotlin Apps", 2, "Hobby")));
+
+            assertTrue(notes.searchNotesByTitlePrefix("jav").contains("No notes found"));
+            String kotlinResults = notes.searchNotesByTitleWords("kotlin");
+            assertTrue(kotlinResults.contains("Note 0: "));
+            assertTrue(kotlinResults.contains("Note 5: "));
+            assertTrue(notes.searchNotesByTitleWords("trip").contains("Note 1: " + summerHoliday.toString()));
+            String appResults = notes.searchNotesByTitlePrefix("app");
+            assertTrue(appResults.contains("Note 2: " + codeApp.toString()));
+            assertTrue(appResults.contains("Note 4: " + deployApp.toString()));
+            assertTrue(appResults.contains("Note 5: "));
+            assertEquals("No notes stored", emptyNotes.searchNotesByTitlePrefix("a"));
+        }
+
+        @Test
+        void searchNotesByTitleFuzzyToleratesTyposAndFollowsChanges() {
+            assertEquals("Note 0: " + javaWork.toString() + "\n", notes.searchNotesByTitleFuzzy("Lerning Jva"));
+            assertTrue(notes.searchNotesByTitleFuzzy("Lerning Jva", 1).contains("No notes found"));
+            assertTrue(notes.searchNotesByTitleFuzzy("learning java", 0).contains("Note 0: "));
+            assertTrue(notes.searchNotesByTitleFuzzy("Learning Java", -1).contains("No notes found"));
+            assertEquals("Note 4: " + testApp.toString() + "\n", notes.searchNotesByTitleFuzzy("Tst App", 1));
+
+            testApp.setNoteTitle("Release App");
+            assertNotNull(notes.deleteNote(0));
+            assertTrue(notes.searchNotesByTitleFuzzy("Tst App", 1).contains("No notes found"));
+            assertEquals("Note 3: " + testApp.toString() + "\n", notes.searchNotesByTitleFuzzy("relase app", 1));
+            assertEquals("No notes stored", emptyNotes.searchNotesByTitleFuzzy("Gym"));
+        }
+
+        @Test
+        void searchItemByDescriptionFollowsItemChanges() {
+            assertTrue(notes.searchItemByDescription("Book").contains("2: " + summerHoliday.getNoteTitle() + "\n3: "));
+
+            summerHoliday.updateItem(3, "Rent a car", false);
+            summerHoliday.deleteItem(0);
+            javaWork.addItem(new Item("Book an exam"));
+            assertNotNull(notes.deleteNote(3));
+
+            String bookResults = notes.searchItemByDescription("Book");
+            assertTrue(bookResults.contains("0: Learning Java\n3: "));
+            assertTrue(bookResults.contains("2: " + summerHoliday.getNoteTitle() + "\n0: "));
+            assertTrue(bookResults.contains("2: " + summerHoliday.getNoteTitle() + "\n1: "));
+            assertFalse(bookResults.contains("Book flights"));
+            assertTrue(notes.searchItemByDescription("a car").contains("2: " + summerHoliday.getNoteTitle() + "\n2: "));
+            assertTrue(notes.searchItemByDescription("book").contains("No items found")); // still case sensitive
+            assertTrue(notes.searchItemByDescription("UI").contains("No items found")); // note deleted
+        }
+
+        @Test
+        void notesByPriorityIteratesHighestPriorityFirst() {
+            Iterator<Note> iterator = notes.notesByPriority();
+            assertSame(javaWork, iterator.next());
+            assertSame(gymHobbyArchived, iterator.next());
+            assertSame(codeApp, iterator.next());
+            assertSame(testApp, iterator.next());
+            assertSame(deployApp, iterator.next());
+            assertSame(summerHoliday, iterator.next());
+            assertFalse(iterator.hasNext());
+            assertThrows(NoSuchElementException.class, iterator::next);
+
+            assertFalse(emptyNotes.notesByPriority().hasNext());
+        }
+    }
+
+    @Nested
+    class QueryMethods {
+
+        @Test
+        void findNotesCombinesEveryCondition() {
+            assertEquals(6, notes.findNotes(new NoteQuery()).size());
+            NoteQuery urgentWork = new NoteQuery().withCategory("Work").withPriorityBetween(4, 5);
+            assertEquals(List.of(javaWork, codeApp, testApp), notes.findNotes(urgentWork));
+            assertEquals(List.of(codeApp, testApp), notes.findNotes(urgentWork.withCompletionBetween(0.5, 1)));
+            assertEquals(List.of(gymHobbyArchived), notes.findNotes(new NoteQuery().withArchived(true)));
+            assertEquals(List.of(summerHoliday),
+                    notes.findNotes(new NoteQuery().withItemDescriptionContaining("Book").withPriority(1)));
+            assertEquals(List.of(codeApp, testApp, deployApp),
+                    notes.findNotes(new NoteQuery().withTitleContaining("App")));
+            assertTrue(notes.findNotes(new NoteQuery().withTitleContaining("app")).isEmpty());
+            assertTrue(notes.findNotes(new NoteQuery().withPriorityBetween(5, 4)).isEmpty());
+            assertTrue(emptyNotes.findNotes(new NoteQuery()).isEmpty());
+        }
+
+        @Test
+        void listNotesMatchingFormatsTheMatchingNotes() {
+            NoteQuery doneWork = new NoteQuery().withCategory("Work").withCompletionBetween(1, 1).withArchived(false);
+            assertEquals("3 notes matching the query:\n3: " + codeApp.toString() + "4: " + testApp.toString()
+                    + "5: " + deployApp.toString(), notes.listNotesMatching(doneWork));
+            assertEquals("No notes match the query", notes.listNotesMatching(new NoteQuery().withCategory("College")));
+            assertEquals("No notes stored", emptyNotes.listNotesMatching(new NoteQuery()));
+        }
+
+        @Test
+        void explainQueryUsesTheMostSelectiveIndexFirst() {
+            assertEquals("full scan, checking 6 notes", notes.explainQuery(new NoteQuery()));
+            assertEquals("full scan, checking 6 notes", notes.explainQuery(new NoteQuery().withArchived(true)));
+            assertEquals("full scan, checking 6 notes", notes.explainQuery(new NoteQuery().withPriorityBetween(1, 5)));
+            assertEquals("priority index (1 notes), then category index (4 notes), checking 1 notes",
+                    notes.explainQuery(new NoteQuery().withCategory("Work").withPriority(5)));
+            NoteQuery holidayApps = new NoteQuery().withCategory("Holiday").withTitleContaining("App");
+            assertEquals("category index (1 notes), then title index (3 notes), checking 0 notes",
+                    notes.explainQuery(holidayApps));
+            assertTrue(notes.findNotes(holidayApps).isEmpty());
+            assertEquals("description index (1 notes), checking 1 notes",
+                    notes.explainQuery(new NoteQuery().withItemDescriptionContaining("airport")));
+        }
+
+        @Test
+        void queriesFollowChangesToTheNotes() {
+            NoteQuery priorityFourWork = new NoteQuery().withCategory("Work").withPriority(4);
+            assertEquals(List.of(codeApp, testApp), notes.findNotes(priorityFourWork));
+
+            codeApp.setNoteCategory("Hobby"); // changed directly on the stored note
+            assertNotNull(notes.deleteNote(0));
+            assertTrue(notes.updateNote(4, "Deploy App", 4, "Work"));
+            deployApp.addItem(new Item("Book a server"));
+
+            assertEquals(List.of(testApp, deployApp), notes.findNotes(priorityFourWork));
+            assertEquals(List.of(summerHoliday, deployApp),
+                    notes.findNotes(new NoteQuery().withItemDescriptionContaining("Book")));
+            assertEquals(List.of(deployApp), notes.findNotes(priorityFourWork.withCompletionBetween(0, 0.5)));
+        }
     }
 
     @Nested
@@ -561,4 +1078,577 @@ public class NoteAPITest {
         }
     }
 
-}
\ No newline at end of file
+    @Nested
+    class PersistenceMethods {
+
+        @TempDir
+        File tempDir;
+
+        @Test
+        void savingAndLoadingXmlKeepsAllNotes() throws Exception {
+            notes.setStoreFile(new File(tempDir, "notes.xml"));
+            notes.save();
+
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(new File(tempDir, "notes.xml"));
+            loadedNotes.load();
+            assertEquals(notes.listAllNotes(), loadedNotes.listAllNotes());
+        }
+
+        @Test
+        void savingAndLoadingBinaryKeepsAllNotes() throws Exception {
+            notes.setStoreFormat(StoreFormat.BINARY);
+            notes.setStoreFile(new File(tempDir, "notes.dat"));
+            notes.save();
+
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(new File(tempDir, "notes.dat"));
+            loadedNotes.load();
+            assertEquals(notes.listAllNotes(), loadedNotes.listAllNotes());
+            assertEquals(javaWork, loadedNotes.findNote(0));
+        }
+
+        @Test
+        void savingAndLoadingCompactXmlKeepsAllNotes() throws Exception {
+            File xmlFile = new File(tempDir, "notes.xml");
+            File compactFile = new File(tempDir, "compact.xml");
+            notes.setStoreFile(xmlFile);
+            notes.save();
+            notes.setStoreFormat(StoreFormat.COMPACT_XML);
+            notes.setStoreFile(compactFile);
+            notes.save();
+            assertTrue(compactFile.length() < xmlFile.length() / 2);
+
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(compactFile);
+            loadedNotes.load();
+            assertEquals(notes.listAllNotes(), loadedNotes.listAllNotes());
+        }
+
+        @Test
+        void convertingBetweenFormatsKeepsAllNotes() throws Exception {
+            File xmlFile = new File(tempDir, "notes.xml");
+            File binaryFile = new File(tempDir, "notes.dat");
+            File xmlAgainFile = new File(tempDir, "notes-again.xml");
+            notes.setStoreFile(xmlFile);
+            notes.save();
+
+            assertEquals(6, StoreConverter.convert(xmlFile, binaryFile, StoreFormat.BINARY));
+            assertEquals(6, StoreConverter.convert(binaryFile, xmlAgainFile, StoreFormat.XML));
+            assertTrue(binaryFile.length() < xmlFile.length());
+
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(xmlAgainFile);
+            loadedNotes.load();
+            assertEquals(notes.listAllNotes(), loadedNotes.listAllNotes());
+        }
+
+        @Test
+        void savingAndLoadingKeepsNoteAndItemIds() throws Exception {
+            javaWork.deleteItem(0); // so the item IDs no longer match the indexes
+            notes.deleteNote(1);
+            for (StoreFormat format : StoreFormat.values()) {
+                File storeFile = new File(tempDir, "notes-" + format);
+                notes.setStoreFormat(format);
+                notes.setStoreFile(storeFile);
+                notes.save();
+
+                NoteAPI loadedNotes = new NoteAPI();
+                loadedNotes.setStoreFile(storeFile);
+                loadedNotes.load();
+                for (int i = 0; i < notes.numberOfNotes(); i++) {
+                    assertEquals(notes.findNote(i).getNoteId(), loadedNotes.findNote(i).getNoteId(), format.name());
+                }
+                Note loadedJavaWork = loadedNotes.findNoteById(javaWork.getNoteId());
+                assertEquals(javaWork, loadedJavaWork);
+                assertEquals(javaItemThree, loadedJavaWork.findItemById(javaItemThree.getItemId()));
+            }
+        }
+
+        @Test
+        void replayingTheJournalKeepsIds() throws Exception {
+            File storeFile = new File(tempDir, "notes.dat");
+            notes.setStoreFormat(StoreFormat.BINARY);
+            notes.setStoreFile(storeFile);
+            notes.setJournalEnabled(true);
+            notes.save();
+            Note journalNote = new Note("Journal Note", 2, "Home");
+            journalNote.setNoteId(40);
+            notes.add(journalNote);
+            Item packBags = new Item("Pack bags");
+            packBags.setItemId(12);
+            summerHoliday.addItem(packBags);
+            notes.save();
+
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(storeFile);
+            loadedNotes.load();
+            assertEquals("Journal Note", loadedNotes.findNoteById(40).getNoteTitle());
+            assertEquals("Pack bags", loadedNotes.findNoteById(summerHoliday.getNoteId()).findItemById(12)
+                    .getItemDescription());
+        }
+
+        @Test
+        void changesByIdAfterDeletesAreJournaledAtTheRightIndexes() throws Exception {
+            File storeFile = new File(tempDir, "notes.dat");
+            notes.setStoreFormat(StoreFormat.BINARY);
+            notes.setStoreFile(storeFile);
+            notes.setJournalEnabled(true);
+            notes.save();
+            assertSame(deployApp, notes.findNoteById(deployApp.getNoteId())); // the IDs are mapped from here on
+            notes.deleteWhere(note -> note.getNotePriority() == 5);
+            assertSame(gymHobbyArchived, notes.deleteNoteById(gymHobbyArchived.getNoteId()));
+            assertTrue(notes.updateNoteById(testApp.getNoteId(), "Test App Again", 2, "College"));
+            assertTrue(notes.archiveNoteById(codeApp.getNoteId()));
+            Note newNote = new Note("New Note", 2, "Home");
+            notes.add(newNote);
+            assertTrue(notes.updateNoteById(newNote.getNoteId(), "Newer Note", 3, "Home"));
+            assertSame(deployApp, notes.deleteNoteById(deployApp.getNoteId()));
+            notes.save();
+
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(storeFile);
+            loadedNotes.load();
+            assertEquals(notes.listAllNotes(), loadedNotes.listAllNotes());
+            assertEquals("Test App Again", loadedNotes.findNote(2).getNoteTitle());
+            assertTrue(loadedNotes.findNote(1).isNoteArchived());
+        }
+
+        @Test
+        void bulkChangesAreJournaled() throws Exception {
+            File storeFile = new File(tempDir, "notes.xml");
+            notes.setStoreFile(storeFile);
+            notes.setJournalEnabled(true);
+            notes.save();
+            notes.addAll(List.of(new Note("Imported", 2, "Home"), new Note("Imported Too", 3, "Home")));
+            notes.deleteWhere(note -> note.getNotePriority() == 4);
+            notes.updateWhere(note -> note.getNoteCategory().equals("Home"), note -> note.setNoteTitle("Chores"));
+            notes.completeAllItemsWhere(note -> note.getNoteCategory().equals("Holiday"));
+            notes.save();
+
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(storeFile);
+            loadedNotes.load();
+            assertEquals(notes.listAllNotes(), loadedNotes.listAllNotes());
+        }
+
+        @Test
+        void noteChangesMadeDirectlyAreJournaled() throws Exception {
+            File storeFile = new File(tempDir, "notes.xml");
+            notes.setStoreFile(storeFile);
+            notes.setJournalEnabled(true);
+            notes.save();
+            long storeLength = storeFile.length();
+            assertFalse(notes.isDirty());
+
+            notes.findNote(0).setNoteTitle("Renamed");
+            assertTrue(notes.isDirty());
+            notes.findNote(2).setNotePriority(2);
+            notes.findNote(3).setNoteCategory("College");
+            notes.findNote(4).setNoteArchived(true);
+            notes.save(); // journaled, the store isn't rewritten
+            assertEquals(storeLength, storeFile.length());
+            assertFalse(notes.isDirty());
+
+            notes.findNote(1).setNoteArchived(false); // can't be journaled, so the next save rewrites the store
+            notes.save();
+
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(storeFile);
+            loadedNotes.load();
+            assertEquals(notes.listAllNotes(), loadedNotes.listAllNotes());
+            assertEquals("Renamed", loadedNotes.findNote(0).getNoteTitle());
+            assertTrue(loadedNotes.findNote(4).isNoteArchived());
+            assertFalse(loadedNotes.findNote(1).isNoteArchived());
+        }
+
+        @Test
+        void savingWithJournalAppendsChangesAndLoadingReplaysThem() throws Exception {
+            File storeFile = new File(tempDir, "notes.xml");
+            notes.setStoreFile(storeFile);
+            notes.setJournalEnabled(true);
+            notes.save(); // first save writes the whole store
+            long storeLength = storeFile.length();
+            assertFalse(notes.getJournalFile().exists());
+
+            notes.add(new Note("Journal Note", 2, "Home"));
+            notes.updateNote(5, "Updated Deploy", 5, "College");
+            notes.archiveNote(3);
+            notes.findNote(2).addItem(new Item("Pack bags"));
+            notes.findNote(2).updateItem(0, "Book cheap flights", true);
+            notes.findNote(0).deleteItem(1);
+            notes.deleteNote(4);
+            notes.save();
+
+            assertEquals(storeLength, storeFile.length());
+            assertTrue(notes.getJournalFile().exists());
+
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(storeFile);
+            loadedNotes.load();
+            assertEquals(notes.listAllNotes(), loadedNotes.listAllNotes());
+        }
+
+        @Test
+        void compactingFoldsJournalIntoStore() throws Exception {
+            File storeFile = new File(tempDir, "notes.xml");
+            notes.setStoreFile(storeFile);
+            notes.setJournalEnabled(true);
+            notes.save();
+            notes.findNote(0).addItem(new Item("Study Generics"));
+            notes.save();
+            assertTrue(notes.getJournalFile().exists());
+
+            notes.compact();
+            assertFalse(notes.getJournalFile().exists());
+
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(storeFile);
+            loadedNotes.load();
+            assertEquals(notes.listAllNotes(), loadedNotes.listAllNotes());
+        }
+
+        @Test
+        void asyncSaveWritesACopyInTheBackground() throws Exception {
+            File storeFile = new File(tempDir, "notes.xml");
+            notes.setStoreFile(storeFile);
+            notes.setAsyncSave(true);
+            notes.add(new Note("Async Note", 3, "Home"));
+            assertTrue(notes.isDirty());
+            notes.save();
+            assertFalse(notes.isDirty());
+            String savedNotes = notes.listAllNotes();
+            notes.findNote(0).addItem(new Item("Changed after save"));
+            notes.flush();
+
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(storeFile);
+            loadedNotes.load();
+            assertEquals(savedNotes, loadedNotes.listAllNotes());
+        }
+
+        @Test
+        void asyncSavesWithJournalAreAllPersisted() throws Exception {
+            File storeFile = new File(tempDir, "notes.dat");
+            notes.setStoreFormat(StoreFormat.BINARY);
+            notes.setStoreFile(storeFile);
+            notes.setJournalEnabled(true);
+            notes.setAsyncSave(true);
+            notes.save();
+            for (int i = 0; i < 50; i++) {
+                notes.add(new Note("Note " + i, 1, "Work"));
+                notes.save();
+            }
+            assertTrue(notes.awaitPersisted(10000));
+
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(storeFile);
+            loadedNotes.load();
+            assertEquals(56, loadedNotes.numberOfNotes());
+            assertEquals(notes.listAllNotes(), loadedNotes.listAllNotes());
+        }
+
+        @Test
+        void failedAsyncSaveIsReportedByFlush() throws Exception {
+            notes.setStoreFile(new File(tempDir, "missing/notes.xml"));
+            notes.setAsyncSave(true);
+            notes.save();
+            assertThrows(Exception.class, () -> notes.flush());
+            notes.flush(); // the failure is only reported once
+        }
+
+        @Test
+        void lazyItemsAreOnlyLoadedWhenNeeded() throws Exception {
+            File storeFile = new File(tempDir, "notes.dat");
+            notes.setStoreFormat(StoreFormat.BINARY);
+            notes.setStoreFile(storeFile);
+            notes.save();
+
+            NoteAPI lazyNotes = new NoteAPI();
+            lazyNotes.setStoreFile(storeFile);
+            lazyNotes.setLazyItems(true);
+            lazyNotes.load();
+            assertEquals(notes.numberOfItems(), lazyNotes.numberOfItems());
+            assertEquals(notes.numberOfActiveNotes(), lazyNotes.numberOfActiveNotes());
+            assertEquals(notes.numberOfNotesByCategory("Work"), lazyNotes.numberOfNotesByCategory("Work"));
+            assertFalse(lazyNotes.findNote(0).isItemsLoaded());
+
+            assertEquals(javaWork, lazyNotes.findNote(0));
+            assertTrue(lazyNotes.findNote(0).isItemsLoaded());
+            assertFalse(lazyNotes.findNote(1).isItemsLoaded());
+
+            // unloaded items are still saved, in either format
+            File xmlFile = new File(tempDir, "notes.xml");
+            lazyNotes.setStoreFormat(StoreFormat.XML);
+            lazyNotes.setStoreFile(xmlFile);
+            lazyNotes.save();
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(xmlFile);
+            loadedNotes.load();
+            assertEquals(notes.listAllNotes(), loadedNotes.listAllNotes());
+        }
+
+        @Test
+        void shardedStoreKeepsNoteOrder() throws Exception {
+            File storeFile = new File(tempDir, "notes.dat");
+            for (int i = 0; i < 20; i++) {
+                notes.add(new Note("Sharded " + i, 1, "Work"));
+            }
+            notes.setStoreFormat(StoreFormat.BINARY);
+            notes.setStoreFile(storeFile);
+            notes.setShardCount(4);
+            notes.save();
+            assertEquals(4, ShardedStore.listShards(storeFile).size());
+
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(storeFile);
+            loadedNotes.load();
+            assertEquals(notes.listAllNotes(), loadedNotes.listAllNotes());
+
+            // resharding replaces the old shard files, and going back to one file removes them
+            List<File> oldShards = ShardedStore.listShards(storeFile);
+            notes.setShardCount(3);
+            notes.compact();
+            assertEquals(3, ShardedStore.listShards(storeFile).size());
+            notes.setShardCount(1);
+            notes.compact();
+            assertTrue(ShardedStore.listShards(storeFile).isEmpty());
+            assertEquals(1, tempDir.listFiles().length);
+            for (File shard : oldShards) {
+                assertFalse(shard.exists());
+            }
+        }
+
+        @Test
+        void shardedSavesCloseTogetherNeverShareShardFiles() throws Exception {
+            File storeFile = new File(tempDir, "notes.dat");
+            notes.setStoreFormat(StoreFormat.BINARY);
+            notes.setStoreFile(storeFile);
+            notes.setShardCount(2);
+            for (int i = 0; i < 5; i++) {
+                List<File> oldShards = ShardedStore.listShards(storeFile);
+                notes.compact();
+                List<File> newShards = ShardedStore.listShards(storeFile);
+                for (File shard : newShards) {
+                    assertTrue(shard.exists());
+                    assertFalse(oldShards.contains(shard));
+                }
+            }
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(storeFile);
+            loadedNotes.load();
+            assertEquals(notes.listAllNotes(), loadedNotes.listAllNotes());
+        }
+
+        @Test
+        void failedShardKeepsTheOldStoreAndThrowsItsOwnException() throws Exception {
+            File storeFile = new File(tempDir, "notes.dat");
+            notes.setStoreFormat(StoreFormat.BINARY);
+            notes.setStoreFile(storeFile);
+            notes.setShardCount(3);
+            notes.compact();
+            List<File> shards = ShardedStore.listShards(storeFile);
+
+            IOException failure = new IOException("Disk full");
+            IOException thrown = assertThrows(IOException.class, () -> ShardedStore.write(List.of(javaWork, codeApp),
+                    3, storeFile, (shardNotes, shardFile) -> {
+                        if (shardFile.getName().endsWith("-1.shard")) {
+                            throw failure;
+                        }
+                    }));
+            assertSame(failure, thrown);
+            assertEquals(shards, ShardedStore.listShards(storeFile));
+            assertEquals(4, tempDir.listFiles().length); // the new shards already written are gone
+
+            assertTrue(shards.get(0).delete());
+            assertThrows(FileNotFoundException.class, () -> ShardedStore.read(storeFile, shardFile -> {
+                new FileInputStream(shardFile).close();
+                return List.of();
+            }));
+        }
+
+        @Test
+        void shardedStoreWorksWithJournalAndXml() throws Exception {
+            File storeFile = new File(tempDir, "notes.xml");
+            notes.setStoreFile(storeFile);
+            notes.setShardCount(3);
+            notes.setJournalEnabled(true);
+            notes.save();
+            notes.findNote(4).addItem(new Item("Journaled"));
+            notes.deleteNote(0);
+            notes.save();
+
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(storeFile);
+            loadedNotes.load();
+            assertEquals(notes.listAllNotes(), loadedNotes.listAllNotes());
+        }
+
+        @Test
+        void compressedStoresAreSmallerAndLoadWithoutSettings() throws Exception {
+            for (StoreFormat format : StoreFormat.values()) {
+                File plainFile = new File(tempDir, "plain-" + format.getDefaultFileName());
+                notes.setStoreFormat(format);
+                notes.setStoreFile(plainFile);
+                notes.save();
+
+                File compressedFile = new File(tempDir, "compressed-" + format.getDefaultFileName());
+                notes.setStoreFile(compressedFile);
+                notes.setCompressionLevel(9);
+                notes.save();
+                notes.setCompressionLevel(NoteAPI.NO_COMPRESSION);
+
+                byte[] header = new byte[2];
+                try (FileInputStream in = new FileInputStream(compressedFile)) {
+                    assertEquals(2, in.read(header));
+                }
+                assertEquals((byte) 0x1f, header[0]);
+                assertEquals((byte) 0x8b, header[1]);
+                assertTrue(compressedFile.length() < plainFile.length());
+
+                // the reader doesn't need to know the file is compressed, and mapping falls back to a normal load
+                NoteAPI loadedNotes = new NoteAPI();
+                loadedNotes.setStoreFile(compressedFile);
+                loadedNotes.setMemoryMapped(true);
+                loadedNotes.setLazyItems(true);
+                loadedNotes.load();
+                assertEquals(notes.listAllNotes(), loadedNotes.listAllNotes());
+            }
+        }
+
+        @Test
+        void compressedShardsWorkWithTheJournal() throws Exception {
+            File storeFile = new File(tempDir, "notes.dat");
+            notes.setStoreFormat(StoreFormat.BINARY);
+            notes.setStoreFile(storeFile);
+            notes.setShardCount(2);
+            notes.setCompressionLevel(1);
+            notes.setBufferSize(1024);
+            notes.setJournalEnabled(true);
+            notes.save();
+            notes.findNote(1).addItem(new Item("Journaled"));
+            notes.save();
+
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(storeFile);
+            loadedNotes.setJournalEnabled(true);
+            loadedNotes.load();
+            assertEquals(notes.listAllNotes(), loadedNotes.listAllNotes());
+        }
+
+        @Test
+        void invalidCompressionSettingsAreIgnored() {
+            notes.setCompressionLevel(10);
+            notes.setCompressionLevel(-1);
+            assertEquals(NoteAPI.NO_COMPRESSION, notes.getCompressionLevel());
+            notes.setBufferSize(0);
+            assertEquals(NoteAPI.DEFAULT_BUFFER_SIZE, notes.getBufferSize());
+        }
+
+        @Test
+        void memoryMappedLoadWorksLikeFullLoad() throws Exception {
+            File storeFile = new File(tempDir, "notes.dat");
+            notes.setStoreFormat(StoreFormat.BINARY);
+            notes.setStoreFile(storeFile);
+            notes.setJournalEnabled(true);
+            notes.save();
+
+            NoteAPI mappedNotes = new NoteAPI();
+            mappedNotes.setStoreFormat(StoreFormat.BINARY);
+            mappedNotes.setStoreFile(storeFile);
+            mappedNotes.setJournalEnabled(true);
+            mappedNotes.setMemoryMapped(true);
+            mappedNotes.load();
+            assertEquals(6, mappedNotes.numberOfNotes());
+            assertEquals(javaWork, mappedNotes.findNote(0));
+
+            mappedNotes.findNote(2).addItem(new Item("Pack bags"));
+            mappedNotes.add(new Note("Mapped Note", 3, "Home"));
+            mappedNotes.deleteNote(1);
+            mappedNotes.save(); // journaled, the mapped snapshot isn't rewritten
+            mappedNotes.compact();
+
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(storeFile);
+            loadedNotes.load();
+            assertEquals(mappedNotes.listAllNotes(), loadedNotes.listAllNotes());
+            assertEquals("Mapped Note", loadedNotes.findNote(5).getNoteTitle());
+        }
+
+        @Test
+        void memoryMappedLoadReplaysTheJournalBeforeListening() throws Exception {
+            File storeFile = new File(tempDir, "notes.dat");
+            notes.setStoreFormat(StoreFormat.BINARY);
+            notes.setStoreFile(storeFile);
+            notes.save();
+
+            NoteAPI mappedNotes = new NoteAPI();
+            mappedNotes.setStoreFile(storeFile);
+            mappedNotes.setJournalEnabled(true);
+            mappedNotes.setMemoryMapped(true);
+            mappedNotes.load();
+            int completeItems = mappedNotes.numberOfCompleteItems();
+            String listing = mappedNotes.listAllNotes();
+
+            // a journal whose second change doesn't fit the notes
+            NoteJournal journal = new NoteJournal();
+            journal.recordItemAdd(1, new Item("Replayed", true));
+            journal.recordItemDelete(1, 99);
+            journal.flush(mappedNotes.getJournalFile(), storeFile);
+            assertThrows(IOException.class, mappedNotes::load);
+            assertFalse(mappedNotes.isDirty());
+            assertEquals(completeItems, mappedNotes.numberOfCompleteItems());
+            assertEquals(listing, mappedNotes.listAllNotes());
+
+            assertTrue(mappedNotes.getJournalFile().delete());
+            journal.recordItemAdd(1, new Item("Replayed", true));
+            journal.flush(mappedNotes.getJournalFile(), storeFile);
+            mappedNotes.load();
+            assertFalse(mappedNotes.isDirty());
+            assertEquals(completeItems + 1, mappedNotes.numberOfCompleteItems());
+            mappedNotes.findNote(1).addItem(new Item("After Load")); // the replayed note has the listener
+            assertTrue(mappedNotes.isDirty());
+            assertEquals(completeItems + 1, mappedNotes.numberOfCompleteItems());
+            assertEquals(mappedNotes.numberOfTodoItems(), notes.numberOfTodoItems() + 1);
+        }
+
+        @Test
+        void columnarStorageWorksLikeFullLoad() throws Exception {
+            File storeFile = new File(tempDir, "notes.xml");
+            notes.setStoreFile(storeFile);
+            notes.setJournalEnabled(true);
+            notes.save();
+
+            NoteAPI columnarNotes = new NoteAPI();
+            columnarNotes.setStoreFile(storeFile);
+            columnarNotes.setJournalEnabled(true);
+            columnarNotes.setVerifyingTotals(true);
+            columnarNotes.setColumnarStorage(true);
+            columnarNotes.load();
+            assertEquals(notes.listAllNotes(), columnarNotes.listAllNotes());
+            assertEquals(notes.numberOfArchivedNotes(), columnarNotes.numberOfArchivedNotes());
+            assertEquals(notes.numberOfCompleteItems(), columnarNotes.numberOfCompleteItems());
+            assertEquals(notes.numberOfNotesByCategory("Work"), columnarNotes.numberOfNotesByCategory("Work"));
+            assertEquals(notes.listActiveNotes(), columnarNotes.listActiveNotes());
+            assertEquals(notes.searchNotesByTitle("App"), columnarNotes.searchNotesByTitle("App"));
+
+            columnarNotes.findNote(3).setNoteCategory("Hobby");
+            columnarNotes.add(new Note("Columnar Note", 3, "Home"));
+            columnarNotes.deleteNote(1);
+            assertEquals(3, columnarNotes.numberOfNotesByCategory("Work"));
+            assertEquals(1, columnarNotes.deleteWhere(note -> note.getNoteTitle().equals("Test App")).size());
+            assertEquals(2, columnarNotes.numberOfNotesByCategory("Work"));
+            assertEquals(5, columnarNotes.numberOfNotes());
+            assertEquals(javaWork.getNoteId(), columnarNotes.findNoteById(javaWork.getNoteId()).getNoteId());
+            columnarNotes.save();
+            columnarNotes.compact();
+
+            NoteAPI loadedNotes = new NoteAPI();
+            loadedNotes.setStoreFile(storeFile);
+            loadedNotes.load();
+            assertEquals(columnarNotes.listAllNotes(), loadedNotes.listAllNotes());
+            assertEquals("Hobby", loadedNotes.findNote(2).getNoteCategory());
+            assertEquals("Columnar Note", loadedNotes.findNote(4).getNoteTitle());
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package controllers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import models.Item;
+import models.Note;
+
+import static utils.CategoryUtility.categoryName;
+
+/**
+ * The responsibility of the {@code NoteBinaryCodec} class is to write and read the compact binary snapshot format
+ * ({@link StoreFormat#BINARY}), an alternative to the XStream XML written to "notes.xml".
+ * <p>
+ * All numbers are big-endian, as written by {@link DataOutputStream}. Strings use {@link DataOutputStream#writeUTF}.
+ * <pre>
+ * header:  int magic ("NOTB"), short version, int noteCount, int itemCount
+ * note:    int recordLength (bytes that follow in this note record)
+ *          byte flags        bits 0-2 priority (1-5), bits 3-5 category ID (0 = none), bit 6 archived
+ *          int noteId
+ *          UTF title
+ *          int itemCount, int completedItemCount
+ *          item* (int itemId, byte completed, UTF description)
+ * </pre>
+ * Version 1 snapshots, written before notes and items had IDs, have no {@code noteId} or {@code itemId} fields. They
+ * are still read, and the notes and items are given IDs when they are stored.
+ * The record length lets a reader skip a note without decoding it, and the counts let a reader size its storage and
+ * report totals before reading any notes. The per-note counts also let {@link #readNoteLazily(ByteBuffer, int, short)} leave
+ * a note's items unread until they are needed.
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+class NoteBinaryCodec {
+
+    /**
+     * The magic number at the start of every binary snapshot ("NOTB" in ASCII).
+     */
+    static final int MAGIC = 0x4E4F5442;
+
+    /**
+     * The current format version, written to the header of every new snapshot.
+     */
+    static final short VERSION = 2;
+
+    /**
+     * The oldest format version that can still be read.
+     */
+    static final short FIRST_VERSION = 1;
+
+    /**
+     * Writes the notes as a binary snapshot. The stream is flushed but not closed.
+     *
+     * @param notes the notes to write, in order
+     * @param out the stream to write to (should be buffered)
+     * @throws IOException if the snapshot can't be written
+     */
+    static void write(List<Note> notes, OutputStream out) throws IOException {
+        int itemCount = 0;
+        for (Note note : notes) {
+            itemCount += note.numberOfItems();
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeInt(notes.size());
+        data.writeInt(itemCount);
+
+        // each record is built in a reusable buffer first, so its length can be written in front of it
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+        DataOutputStream record = new DataOutputStream(recordBytes);
+        for (Note note : notes) {
+            recordBytes.reset();
+            writeNote(note, record);
+            data.writeInt(recordBytes.size());
+            recordBytes.writeTo(data);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a binary snapshot, passing each note to {@code sink} in order.
+     *
+     * @param in the stream to read from (should be buffered)
+     * @param sink receives each {@link Note} as soon as it has been decoded
+     * @return the number of notes read
+     * @throws IOException if the stream isn't a binary snapshot, uses an unsupported version, or is truncated
+     */
+    static int read(InputStream in, Consumer<Note> sink) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a binary notes snapshot");
+        }
+        short version = checkVersion(data.readShort());
+        int noteCount = data.readInt();
+        data.readInt(); // total item count
+        for (int i = 0; i < noteCount; i++) {
+            data.readInt(); // record length, only needed by readers that skip records
+            sink.accept(readNote(data, version));
+        }
+        return noteCount;
+    }
+
+    /**
+     * Reads a memory-mapped binary snapshot (see {@link #map(File)}), passing each note to {@code sink} in order.
+     * Only the note headers are read: each note's items are read from {@code buffer} the first time they are needed,
+     * see {@link #readNoteLazily(ByteBuffer, int, short)}.
+     *
+     * @param buffer the whole snapshot
+     * @param sink receives each {@link Note} as soon as its header has been decoded
+     * @return the number of notes read
+     * @throws IOException if the buffer isn't a binary snapshot, uses an unsupported version, or is truncated
+     */
+    static int readLazily(ByteBuffer buffer, Consumer<Note> sink) throws IOException {
+        int noteCount = checkHeader(buffer);
+        short version = versionOf(buffer);
+        int offset = HEADER_LENGTH;
+        for (int i = 0; i < noteCount; i++) {
+            sink.accept(readNoteLazily(buffer, offset + 4, version));
+            offset += 4 + buffer.getInt(offset);
+        }
+        return noteCount;
+    }
+
+    /**
+     * Maps a snapshot file into memory, read only. The mapping stays valid after the file is replaced by a save,
+     * because saves move a new file over the old one rather than writing into it.
+     *
+     * @param file the snapshot file
+     * @return the mapped file
+     * @throws IOException if the file can't be mapped or is too large to map
+     */
+    static MappedByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Binary snapshot is too large to map [" + file + "]");
+            }
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Checks the header at the start of {@code buffer}, returning the number of notes in the snapshot.
+     *
+     * @param buffer the whole snapshot
+     * @return the number of notes that follow the header
+     * @throws IOException if the header is invalid
+     */
+    static int checkHeader(ByteBuffer buffer) throws IOException {
+        if ((buffer.limit() < HEADER_LENGTH) || (buffer.getInt(0) != MAGIC)) {
+            throw new IOException("Not a binary notes snapshot");
+        }
+        checkVersion(versionOf(buffer));
+        return buffer.getInt(6);
+    }
+
+    /**
+     * Gets the format version of a snapshot whose header has been checked with {@link #checkHeader(ByteBuffer)}.
+     *
+     * @param buffer the whole snapshot
+     * @return the version the snapshot was written with
+     */
+    static short versionOf(ByteBuffer buffer) {
+        return buffer.getShort(4);
+    }
+
+    /**
+     * Checks that a format version can be read, i.e. is from {@link #FIRST_VERSION} to {@link #VERSION}.
+     *
+     * @param version the version from a header
+     * @return the version
+     * @throws IOException if the version can't be read
+     */
+    static short checkVersion(short version) throws IOException {
+        if ((version < FIRST_VERSION) || (version > VERSION)) {
+            throw new IOException("Unsupported binary notes snapshot version [" + version + "]");
+        }
+        return version;
+    }
+
+    /**
+     * Writes a single note record (without its length prefix), in the current {@link #VERSION}.
+     */
+    static void writeNote(Note note, DataOutputStream record) throws IOException {
+        record.writeByte(packFlags(note));
+        record.writeInt(note.getNoteId());
+        record.writeUTF(note.getNoteTitle());
+        record.writeInt(note.numberOfItems());
+        record.writeInt(note.numberOfCompletedItems());
+        for (Item item : note.getItems()) {
+            writeItem(item, record);
+        }
+    }
+
+    /**
+     * Writes a single item of a note record, in the current {@link #VERSION}.
+     */
+    static void writeItem(Item item, DataOutputStream record) throws IOException {
+        record.writeInt(item.getItemId());
+        record.writeBoolean(item.isItemCompleted());
+        record.writeUTF(item.getItemDescription());
+    }
+
+    /**
+     * Reads a single note record (after its length prefix), written in the given format version.
+     */
+    static Note readNote(DataInputStream record, short version) throws IOException {
+        int flags = record.readUnsignedByte();
+        int noteId = (version >= 2) ? record.readInt() : 0;
+        Note note = new Note(record.readUTF(), flags & PRIORITY_MASK, categoryOf(flags));
+        note.setNoteId(noteId);
+        note.setNoteArchived((flags & ARCHIVED_BIT) != 0);
+        int itemCount = record.readInt();
+        record.readInt(); // completed item count, the items themselves follow
+        for (int i = 0; i < itemCount; i++) {
+            note.addItem(readItem(record, version));
+        }
+        return note;
+    }
+
+    /**
+     * Reads a single item of a note record, written in the given format version.
+     */
+    static Item readItem(DataInputStream record, short version) throws IOException {
+        int itemId = (version >= 2) ? record.readInt() : 0;
+        boolean completed = record.readBoolean();
+        Item item = new Item(record.readUTF(), completed);
+        item.setItemId(itemId);
+        return item;
+    }
+
+    /**
+     * Reads a single note record (after its length prefix) from {@code buffer}, leaving its items unread. The note
+     * is given an {@link models.ItemLoader} that reads them from {@code buffer} the first time they are needed.
+     *
+     * @param buffer the whole snapshot, which must not change while the note is in use
+     * @param offset where the record starts, after its length prefix
+     * @param version the format version of the snapshot
+     * @return the note, with its items not loaded yet
+     * @throws IOException if the record is truncated
+     */
+    static Note readNoteLazily(ByteBuffer buffer, int offset, short version) throws IOException {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        DataInputStream record = new DataInputStream(new ByteBufferInputStream(view));
+        int flags = record.readUnsignedByte();
+        int noteId = (version >= 2) ? record.readInt() : 0;
+        Note note = new Note(record.readUTF(), flags & PRIORITY_MASK, categoryOf(flags));
+        note.setNoteId(noteId);
+        note.setNoteArchived((flags & ARCHIVED_BIT) != 0);
+        int itemCount = record.readInt();
+        int completedCount = record.readInt();
+        if (itemCount > 0) {
+            int itemsOffset = view.position();
+            note.setItemLoader(() -> readItems(buffer, itemsOffset, itemCount, version), itemCount, completedCount);
+        }
+        return note;
+    }
+
+    // -------------- RECORD HEADER METHODS --------------
+
+    // parts of the header of a note record in a snapshot buffer, read without decoding the note; offset is where the
+    // record starts, after its length prefix. Only absolute reads are made, so more than one thread may read at once.
+
+    static boolean isArchived(ByteBuffer buffer, int offset) {
+        return (buffer.get(offset) & ARCHIVED_BIT) != 0;
+    }
+
+    static int noteIdOf(ByteBuffer buffer, int offset, short version) {
+        return (version >= 2) ? buffer.getInt(offset + 1) : 0;
+    }
+
+    static int itemCountOf(ByteBuffer buffer, int offset, short version) {
+        return buffer.getInt(countsOffset(buffer, offset, version));
+    }
+
+    static int completedCountOf(ByteBuffer buffer, int offset, short version) {
+        return buffer.getInt(countsOffset(buffer, offset, version) + 4);
+    }
+
+    // -------------- PRIVATE HELPERS --------------
+
+    /**
+     * Gets where the item counts of a note record start, just after its title.
+     */
+    private static int countsOffset(ByteBuffer buffer, int offset, short version) {
+        int titleOffset = offset + 1 + ((version >= 2) ? 4 : 0);
+        return titleOffset + 2 + (buffer.getShort(titleOffset) & 0xFFFF);
+    }
+
+    /**
+     * Reads {@code itemCount} items starting at {@code offset} in {@code buffer}, for a lazily read note.
+     */
+    private static ArrayList<Item> readItems(ByteBuffer buffer, int offset, int itemCount, short version) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(view));
+        ArrayList<Item> items = new ArrayList<Item>(itemCount);
+        try {
+            for (int i = 0; i < itemCount; i++) {
+                items.add(readItem(in, version));
+            }
+        }
+        catch (IOException e) {
+            // the header of this note was read from the same buffer, so the snapshot itself is damaged
+            throw new UncheckedIOException("Corrupt items in binary snapshot at offset " + offset, e);
+        }
+        return items;
+    }
+
+    /**
+     * Packs priority, category and archived state into the flags byte of a note record.
+     */
+    private static int packFlags(Note note) {
+        int flags = note.getNotePriority() & PRIORITY_MASK;
+        flags |= note.getNoteCategoryId() << CATEGORY_SHIFT;
+        if (note.isNoteArchived()) {
+            flags |= ARCHIVED_BIT;
+        }
+        return flags;
+    }
+
+    /**
+     * Gets the category name back from the flags byte of a note record.
+     */
+    private static String categoryOf(int flags) {
+        return categoryName((flags >> CATEGORY_SHIFT) & CATEGORY_MASK);
+    }
+
+    /**
+     * Reads a {@link ByteBuffer} from its position, so {@link DataInputStream} can decode records in place.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        private final ByteBuffer buffer;
+    }
+
+    /**
+     * Bytes before the first note record: magic, version, note count and item count.
+     */
+    static final int HEADER_LENGTH = 4 + 2 + 4 + 4;
+
+    private static final int PRIORITY_MASK = 0x07;
+    private static final int CATEGORY_SHIFT = 3;
+    private static final int CATEGORY_MASK = 0x07;
+    private static final int ARCHIVED_BIT = 0x40;
+}
@@ -0,0 +1,93 @@
+package controllers;
+
+import models.Item;
+import models.Note;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteBinaryCodecTest {
+
+    @Test
+    void writingThenReadingReturnsEqualNotes() throws IOException {
+        ArrayList<Note> notes = new ArrayList<Note>();
+        Note javaWork = new Note("Learning Java", 5, "Work");
+        javaWork.addItem(new Item("Study Objects and Classes"));
+        javaWork.addItem(new Item("Study ArrayLists and Collections", true));
+        Note gym = new Note("Gym", 4, "hobby");
+        gym.setNoteArchived(true);
+        notes.add(javaWork);
+        notes.add(gym);
+        notes.add(new Note("No category", 2, "Invalid"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NoteBinaryCodec.write(notes, out);
+
+        ArrayList<Note> readNotes = new ArrayList<Note>();
+        assertEquals(3, NoteBinaryCodec.read(new ByteArrayInputStream(out.toByteArray()), readNotes::add));
+        assertEquals(javaWork, readNotes.get(0));
+        assertEquals("Gym", readNotes.get(1).getNoteTitle());
+        assertEquals("Hobby", readNotes.get(1).getNoteCategory());
+        assertTrue(readNotes.get(1).isNoteArchived());
+        assertEquals("", readNotes.get(2).getNoteCategory());
+        assertEquals(2, readNotes.get(2).getNotePriority());
+    }
+
+    @Test
+    void writingThenReadingKeepsIds() throws IOException {
+        Note javaWork = new Note("Learning Java", 5, "Work");
+        javaWork.setNoteId(7);
+        javaWork.addItem(new Item("Study Objects and Classes"));
+        javaWork.addItem(new Item("Study ArrayLists and Collections", true));
+        javaWork.deleteItem(0);
+        ArrayList<Note> notes = new ArrayList<Note>();
+        notes.add(javaWork);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NoteBinaryCodec.write(notes, out);
+
+        ArrayList<Note> readNotes = new ArrayList<Note>();
+        NoteBinaryCodec.read(new ByteArrayInputStream(out.toByteArray()), readNotes::add);
+        assertEquals(7, readNotes.get(0).getNoteId());
+        assertEquals(2, readNotes.get(0).findItem(0).getItemId());
+    }
+
+    @Test
+    void readingVersionOneGivesItemsNewIds() throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream recordData = new DataOutputStream(record);
+        recordData.writeByte(5); // priority 5, no category
+        recordData.writeUTF("Old Note");
+        recordData.writeInt(1);
+        recordData.writeInt(0);
+        recordData.writeBoolean(false);
+        recordData.writeUTF("Old Item");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(NoteBinaryCodec.MAGIC);
+        data.writeShort(1);
+        data.writeInt(1);
+        data.writeInt(1);
+        data.writeInt(record.size());
+        record.writeTo(data);
+
+        ArrayList<Note> readNotes = new ArrayList<Note>();
+        NoteBinaryCodec.read(new ByteArrayInputStream(out.toByteArray()), readNotes::add);
+        assertEquals("Old Note", readNotes.get(0).getNoteTitle());
+        assertEquals(0, readNotes.get(0).getNoteId()); // given one when stored
+        assertEquals("Old Item", readNotes.get(0).findItem(0).getItemDescription());
+        assertEquals(1, readNotes.get(0).findItem(0).getItemId());
+    }
+
+    @Test
+    void readingSomethingElseThrowsIOException() {
+        byte[] xml = "<object-stream/>".getBytes();
+        assertThrows(IOException.class, () -> NoteBinaryCodec.read(new ByteArrayInputStream(xml), note -> {}));
+    }
+}
@@ -0,0 +1,450 @@
+package controllers;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import models.Item;
+import models.Note;
+
+/**
+ * The responsibility of the {@code NoteJournal} class is to record the changes made to the notes since the last full
+ * save (the "snapshot"), so {@link NoteAPI#save()} only has to append what changed instead of rewriting the store.
+ * <p>
+ * Changes are recorded in memory as they happen, and appended to the journal file ("notes.xml.journal" next to
+ * "notes.xml") by {@link #flush(File, File)}. {@link #replay(File, File, List)} applies a journal file to freshly
+ * loaded notes, and {@link NoteAPI#compact()} folds the journal into a new snapshot and deletes it.
+ * <p>
+ * File layout (big-endian, as written by {@link DataOutputStream}):
+ * <pre>
+ * header:  int magic ("NOTJ"), short version, long snapshotLength, long snapshotLastModified
+ * record:  int payloadLength, int payloadCrc32, byte[] payload (byte type, then the fields of that type)
+ * </pre>
+ * The header identifies the snapshot the journal was started on. A journal whose snapshot has since been replaced
+ * (e.g. the program stopped between writing a new snapshot and deleting the old journal) is ignored, because the new
+ * snapshot already contains its changes. A record cut short or corrupted by a crash ends the replay, and the journal is
+ * truncated back to the last good record.
+ * <p>
+ * Notes and items in version 2 records are written with their IDs, in the {@link NoteBinaryCodec} version 2 layout.
+ * Version 1 journals are still replayed, but never appended to (see {@link #isCurrentVersion(File)}).
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+class NoteJournal {
+
+    // -------------- RECORDING METHODS --------------
+
+    /**
+     * Records a note added to the end of the notes.
+     * @param note the added note
+     */
+    void recordAdd(Note note) {
+        try {
+            startRecord(ADD);
+            NoteBinaryCodec.writeNote(note, record);
+            endRecord();
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory streams don't throw
+        }
+    }
+
+    /**
+     * Records a call to {@link NoteAPI#updateNote(int, String, int, String)} that found its note.
+     * @param index index of the updated note
+     * @param title title passed to the update
+     * @param priority priority passed to the update
+     * @param category category passed to the update
+     */
+    void recordUpdate(int index, String title, int priority, String category) {
+        try {
+            startRecord(UPDATE);
+            record.writeInt(index);
+            record.writeUTF(title);
+            record.writeInt(priority);
+            record.writeUTF(category);
+            endRecord();
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Records a deleted note.
+     * @param index index of the deleted note
+     */
+    void recordDelete(int index) {
+        recordIndexes(DELETE, index);
+    }
+
+    /**
+     * Records an archived note.
+     * @param index index of the archived note
+     */
+    void recordArchive(int index) {
+        recordIndexes(ARCHIVE, index);
+    }
+
+    /**
+     * Records an item added to the end of a note's items.
+     * @param noteIndex index of the note
+     * @param item the added item
+     */
+    void recordItemAdd(int noteIndex, Item item) {
+        try {
+            startRecord(ITEM_ADD);
+            record.writeInt(noteIndex);
+            writeItem(item);
+            endRecord();
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Records an updated item, storing its new description and completion status.
+     * @param noteIndex index of the note
+     * @param itemIndex index of the item in the note
+     * @param item the item after the update
+     */
+    void recordItemUpdate(int noteIndex, int itemIndex, Item item) {
+        try {
+            startRecord(ITEM_UPDATE);
+            record.writeInt(noteIndex);
+            record.writeInt(itemIndex);
+            writeItem(item);
+            endRecord();
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Records a deleted item.
+     * @param noteIndex index of the note
+     * @param itemIndex index the item was deleted from
+     */
+    void recordItemDelete(int noteIndex, int itemIndex) {
+        recordIndexes(ITEM_DELETE, noteIndex, itemIndex);
+    }
+
+    /**
+     * Records a note's items being replaced, storing the full new list.
+     * @param noteIndex index of the note
+     * @param items the note's new items
+     */
+    void recordItemsReplaced(int noteIndex, List<Item> items) {
+        try {
+            startRecord(ITEMS_REPLACED);
+            record.writeInt(noteIndex);
+            record.writeInt(items.size());
+            for (Item item : items) {
+                writeItem(item);
+            }
+            endRecord();
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // -------------- FILE METHODS --------------
+
+    /**
+     * Checks whether there are recorded changes that haven't been flushed yet.
+     * @return {@code true} if {@link #flush(File, File)} has something to write
+     */
+    boolean hasPendingRecords() {
+        return pending.size() > 0;
+    }
+
+    /**
+     * Forgets all recorded changes that haven't been flushed, i.e. after a new snapshot has been written or loaded.
+     */
+    void discardPending() {
+        pending.reset();
+    }
+
+    /**
+     * Takes the recorded changes out of the journal, e.g. to append them on another thread with
+     * {@link #append(File, File, byte[])}.
+     * @return the recorded changes, empty if there are none
+     */
+    byte[] takePending() {
+        byte[] records = pending.toByteArray();
+        pending.reset();
+        return records;
+    }
+
+    /**
+     * Appends the recorded changes to the journal file and forces them to disk. If the journal file doesn't exist
+     * yet, it is created with a header for {@code snapshotFile}.
+     *
+     * @param journalFile the journal file
+     * @param snapshotFile the snapshot the journal applies to
+     * @throws IOException if the journal can't be written
+     */
+    void flush(File journalFile, File snapshotFile) throws IOException {
+        if (!hasPendingRecords()) {
+            return;
+        }
+        append(journalFile, snapshotFile, pending.toByteArray());
+        pending.reset();
+    }
+
+    /**
+     * Appends records to the journal file and forces them to disk. If the journal file doesn't exist yet, it is
+     * created with a header for {@code snapshotFile}.
+     *
+     * @param journalFile the journal file
+     * @param snapshotFile the snapshot the journal applies to
+     * @param records whole records, as taken from {@link #takePending()}
+     * @throws IOException if the journal can't be written
+     */
+    static void append(File journalFile, File snapshotFile, byte[] records) throws IOException {
+        boolean newJournal = !journalFile.exists();
+        try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+            if (newJournal) {
+                DataOutputStream header = new DataOutputStream(out);
+                header.writeInt(MAGIC);
+                header.writeShort(VERSION);
+                header.writeLong(snapshotFile.length());
+                header.writeLong(snapshotFile.lastModified());
+            }
+            out.write(records);
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * Applies the changes in a journal file to notes that were just loaded from {@code snapshotFile}.
+     * Does nothing if the journal doesn't exist or belongs to a different snapshot.
+     *
+     * @param journalFile the journal file
+     * @param snapshotFile the snapshot the notes were loaded from
+     * @param notes the loaded notes, changed in place
+     * @return the number of changes applied
+     * @throws IOException if the journal can't be read, or a change doesn't fit the notes
+     */
+    static int replay(File journalFile, File snapshotFile, List<Note> notes) throws IOException {
+        if (!journalFile.exists()) {
+            return 0;
+        }
+        int applied = 0;
+        long goodLength = HEADER_LENGTH;
+        boolean truncated = false;
+        short version;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a notes journal [" + journalFile + "]");
+                }
+                version = in.readShort();
+                if ((version < FIRST_VERSION) || (version > VERSION)) {
+                    throw new IOException("Unsupported notes journal version [" + version + "]");
+                }
+                if ((in.readLong() != snapshotFile.length()) || (in.readLong() != snapshotFile.lastModified())) {
+                    return 0; // started on an older snapshot, whose replacement already holds these changes
+                }
+            }
+            catch (EOFException e) {
+                return 0; // header never finished, so no changes were written
+            }
+
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    int expectedCrc = in.readInt();
+                    if ((length <= 0) || (length > MAX_RECORD_LENGTH)) {
+                        truncated = true;
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != expectedCrc) {
+                        truncated = true;
+                        break;
+                    }
+                }
+                catch (EOFException e) {
+                    truncated = (journalFile.length() > goodLength);
+                    break;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(payload)), notes, version);
+                applied++;
+                goodLength += RECORD_HEADER_LENGTH + payload.length;
+            }
+        }
+        if (truncated) {
+            try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+                file.setLength(goodLength);
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Checks whether new records can be appended to a journal file, i.e. it doesn't exist yet or was started in the
+     * current {@link #VERSION}. An older journal has to be folded into a new snapshot instead, see
+     * {@link NoteAPI#compact()}.
+     *
+     * @param journalFile the journal file
+     * @return {@code true} if {@link #append(File, File, byte[])} can add to the file
+     * @throws IOException if the journal can't be read
+     */
+    static boolean isCurrentVersion(File journalFile) throws IOException {
+        if (!journalFile.exists()) {
+            return true;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(journalFile))) {
+            return (in.readInt() == MAGIC) && (in.readShort() == VERSION);
+        }
+        catch (EOFException e) {
+            return false; // header never finished, so it can't be appended to either
+        }
+    }
+
+    // -------------- PRIVATE HELPERS --------------
+
+    /**
+     * Applies a single record payload, written in the given journal version, to the notes.
+     */
+    private static void apply(DataInputStream payload, List<Note> notes, short version) throws IOException {
+        byte type = payload.readByte();
+        if (type == ADD) {
+            notes.add(NoteBinaryCodec.readNote(payload, version));
+            return;
+        }
+        int index = payload.readInt();
+        Note note = noteAt(notes, index);
+        switch (type) {
+            case UPDATE -> {
+                note.setNoteTitle(payload.readUTF());
+                note.setNotePriority(payload.readInt());
+                note.setNoteCategory(payload.readUTF());
+            }
+            case DELETE -> notes.remove(index);
+            case ARCHIVE -> note.setNoteArchived(true);
+            case ITEM_ADD -> note.addItem(NoteBinaryCodec.readItem(payload, version));
+            case ITEM_UPDATE -> {
+                int itemIndex = payload.readInt();
+                Item item = NoteBinaryCodec.readItem(payload, version);
+                if (!note.updateItem(itemIndex, item.getItemDescription(), item.isItemCompleted())) {
+                    throw new IOException("Journal does not match notes: no item " + itemIndex);
+                }
+            }
+            case ITEM_DELETE -> {
+                int itemIndex = payload.readInt();
+                if (note.deleteItem(itemIndex) == null) {
+                    throw new IOException("Journal does not match notes: no item " + itemIndex);
+                }
+            }
+            case ITEMS_REPLACED -> {
+                int itemCount = payload.readInt();
+                ArrayList<Item> items = new ArrayList<Item>(itemCount);
+                for (int i = 0; i < itemCount; i++) {
+                    items.add(NoteBinaryCodec.readItem(payload, version));
+                }
+                note.setItems(items);
+            }
+            default -> throw new IOException("Unknown journal record type [" + type + "]");
+        }
+    }
+
+    /**
+     * Gets the note a record refers to, checking the index is still valid.
+     */
+    private static Note noteAt(List<Note> notes, int index) throws IOException {
+        if ((index < 0) || (index >= notes.size())) {
+            throw new IOException("Journal does not match notes: no note " + index);
+        }
+        return notes.get(index);
+    }
+
+    private void writeItem(Item item) throws IOException {
+        NoteBinaryCodec.writeItem(item, record);
+    }
+
+    /**
+     * Records a change made up of a type and one or more indexes.
+     */
+    private void recordIndexes(byte type, int... indexes) {
+        try {
+            startRecord(type);
+            for (int index : indexes) {
+                record.writeInt(index);
+            }
+            endRecord();
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void startRecord(byte type) throws IOException {
+        recordBytes.reset();
+        record.writeByte(type);
+    }
+
+    /**
+     * Frames the record that was just built with its length and checksum, and adds it to the pending changes.
+     */
+    private void endRecord() throws IOException {
+        record.flush();
+        recordCrc.reset();
+        recordCrc.update(recordBytes.toByteArray());
+        DataOutputStream out = new DataOutputStream(pending);
+        out.writeInt(recordBytes.size());
+        out.writeInt((int) recordCrc.getValue());
+        recordBytes.writeTo(out);
+        out.flush();
+    }
+
+    static final int MAGIC = 0x4E4F544A; // "NOTJ"
+    static final short VERSION = 2;
+    static final short FIRST_VERSION = 1;
+
+    private static final int HEADER_LENGTH = 4 + 2 + 8 + 8;
+    private static final int RECORD_HEADER_LENGTH = 4 + 4;
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    private static final byte ADD = 1;
+    private static final byte UPDATE = 2;
+    private static final byte DELETE = 3;
+    private static final byte ARCHIVE = 4;
+    private static final byte ITEM_ADD = 5;
+    private static final byte ITEM_UPDATE = 6;
+    private static final byte ITEM_DELETE = 7;
+    private static final byte ITEMS_REPLACED = 8;
+
+    /**
+     * Framed records waiting to be appended to the journal file.
+     */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    /**
+     * Scratch buffer the record being recorded is built in.
+     */
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private final CRC32 recordCrc = new CRC32();
+}
@@ -0,0 +1,77 @@
+package controllers;
+
+import models.Item;
+import models.Note;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteJournalTest {
+
+    @TempDir
+    File tempDir;
+
+    private File snapshotFile, journalFile;
+    private ArrayList<Note> notes;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        snapshotFile = new File(tempDir, "notes.dat");
+        journalFile = new File(tempDir, "notes.dat.journal");
+        Files.write(snapshotFile.toPath(), new byte[]{1, 2, 3});
+        notes = new ArrayList<Note>();
+        notes.add(new Note("Learning Java", 5, "Work"));
+    }
+
+    @Test
+    void replayingAppliesChangesInOrder() throws IOException {
+        NoteJournal journal = new NoteJournal();
+        journal.recordItemAdd(0, new Item("Study Objects and Classes"));
+        journal.recordAdd(new Note("Gym", 4, "Hobby"));
+        journal.recordUpdate(1, "Gym and Swim", 3, "Hobby");
+        journal.recordItemUpdate(0, 0, new Item("Study Objects", true));
+        journal.recordArchive(0);
+        journal.recordDelete(1);
+        journal.flush(journalFile, snapshotFile);
+        assertFalse(journal.hasPendingRecords());
+
+        assertEquals(6, NoteJournal.replay(journalFile, snapshotFile, notes));
+        assertEquals(1, notes.size());
+        assertTrue(notes.get(0).isNoteArchived());
+        assertEquals(new Item("Study Objects", true), notes.get(0).findItem(0));
+    }
+
+    @Test
+    void replayingJournalOfAnotherSnapshotChangesNothing() throws IOException {
+        NoteJournal journal = new NoteJournal();
+        journal.recordDelete(0);
+        journal.flush(journalFile, snapshotFile);
+        Files.write(snapshotFile.toPath(), new byte[]{1, 2, 3, 4});
+
+        assertEquals(0, NoteJournal.replay(journalFile, snapshotFile, notes));
+        assertEquals(1, notes.size());
+    }
+
+    @Test
+    void replayingTornJournalStopsAtLastGoodRecordAndTruncates() throws IOException {
+        NoteJournal journal = new NoteJournal();
+        journal.recordArchive(0);
+        journal.flush(journalFile, snapshotFile);
+        long goodLength = journalFile.length();
+        try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+            out.write(new byte[]{0, 0, 0, 20, 1, 2}); // a record cut short by a crash
+        }
+
+        assertEquals(1, NoteJournal.replay(journalFile, snapshotFile, notes));
+        assertTrue(notes.get(0).isNoteArchived());
+        assertEquals(goodLength, journalFile.length());
+    }
+}
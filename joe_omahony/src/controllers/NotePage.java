@@ -0,0 +1,80 @@
+package controllers;
+
+/**
+ * The responsibility of the {@code NotePage} class is to hold one page of a paged listing from {@link NoteAPI}, e.g.
+ * {@link NoteAPI#listAllNotes(int, int)}, so a long listing can be shown a few notes at a time without rendering
+ * the rest.
+ * <p>
+ * Each page comes with a cursor for the page after it. The first page is asked for with {@link #FIRST_PAGE}, and each
+ * following one with the {@link #getNextCursor()} of the page before. Cursors should be treated as opaque: only
+ * {@link NoteAPI} knows what they mean, and a cursor is only good until notes are added or deleted.
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+public class NotePage {
+
+    /**
+     * Creates a page.
+     *
+     * @param text the rendered notes of the page
+     * @param nextCursor the cursor of the next page, {@link #NO_MORE_PAGES} if this is the last one
+     */
+    NotePage(String text, int nextCursor) {
+        this.text = text;
+        this.nextCursor = nextCursor;
+    }
+
+    // -------------- GETTERS --------------
+
+    /**
+     * Gets the notes of this page, formatted like the matching unpaged listing. If the listing has no notes at all,
+     * the first page holds the same message the unpaged listing gives, e.g. "No notes stored".
+     *
+     * @return the rendered page
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Gets the cursor to pass to the same listing method for the next page.
+     * @return the cursor, or {@link #NO_MORE_PAGES} if this is the last page
+     */
+    public int getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Checks whether there is another page after this one.
+     * @return {@code true} if at least one more note follows this page
+     */
+    public boolean hasMore() {
+        return nextCursor != NO_MORE_PAGES;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * The rendered notes of the page.
+     */
+    private final String text;
+
+    /**
+     * The cursor of the next page, {@link #NO_MORE_PAGES} after the last page.
+     */
+    private final int nextCursor;
+
+    /**
+     * The cursor of the first page of any listing.
+     */
+    public static final int FIRST_PAGE = 0;
+
+    /**
+     * The next cursor of the last page of a listing. Asking for a page with it gives an empty page.
+     */
+    public static final int NO_MORE_PAGES = -1;
+}
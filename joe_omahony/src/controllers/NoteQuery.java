@@ -0,0 +1,281 @@
+package controllers;
+
+import models.Item;
+import models.Note;
+
+import static utils.CategoryUtility.NO_CATEGORY;
+import static utils.CategoryUtility.categoryId;
+
+/**
+ * The responsibility of the {@code NoteQuery} class is to describe which notes to find with
+ * {@link NoteAPI#findNotes(NoteQuery)}, by combining any of the following conditions:
+ * <ul>
+ *   <li>the category of the note,</li>
+ *   <li>a range of priorities,</li>
+ *   <li>whether the note is archived,</li>
+ *   <li>text the title must contain,</li>
+ *   <li>text the description of at least one item must contain,</li>
+ *   <li>a range for the share of the note's items that are completed.</li>
+ * </ul>
+ * A note has to meet every condition that was set; a new query, with no conditions, matches every note. Each
+ * {@code with...} method replaces any earlier value of its condition and returns the query, so conditions can be
+ * chained, e.g. {@code new NoteQuery().withCategory("Work").withPriorityBetween(4, 5).withArchived(false)}.
+ * <p>
+ * {@link NoteAPI} decides how to find the notes, using its indexes where it can (see
+ * {@link NoteAPI#explainQuery(NoteQuery)}); {@link #matches(Note)} is the final check of each note either way.
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+public class NoteQuery {
+
+    // -------------- CONDITIONS --------------
+
+    /**
+     * Only matches notes with the given category, compared in the same way as
+     * {@link NoteAPI#listNotesBySelectedCategory(String)}.
+     *
+     * @param category the category of the notes
+     * @return this query
+     */
+    public NoteQuery withCategory(String category) {
+        this.category = category;
+        int id = categoryId(category);
+        // "" asks for the notes without a category, anything else that isn't a category matches no notes
+        this.categoryId = ((id != NO_CATEGORY) || (category == null) || category.isEmpty()) ? id : UNKNOWN_CATEGORY;
+        return this;
+    }
+
+    /**
+     * Only matches notes with the given priority.
+     *
+     * @param priority the priority of the notes [1 to 5]
+     * @return this query
+     */
+    public NoteQuery withPriority(int priority) {
+        return withPriorityBetween(priority, priority);
+    }
+
+    /**
+     * Only matches notes with a priority from {@code minPriority} to {@code maxPriority}, inclusive. A range with
+     * {@code minPriority} above {@code maxPriority} matches no notes.
+     *
+     * @param minPriority the lowest priority
+     * @param maxPriority the highest priority
+     * @return this query
+     */
+    public NoteQuery withPriorityBetween(int minPriority, int maxPriority) {
+        this.minPriority = minPriority;
+        this.maxPriority = maxPriority;
+        return this;
+    }
+
+    /**
+     * Only matches archived, or only active, notes.
+     *
+     * @param archived {@code true} for archived notes, {@code false} for active notes
+     * @return this query
+     */
+    public NoteQuery withArchived(boolean archived) {
+        this.archived = archived;
+        return this;
+    }
+
+    /**
+     * Only matches notes whose title contains the given text, case sensitive, like
+     * {@link NoteAPI#searchNotesByTitle(String)}.
+     *
+     * @param titleText the text to look for
+     * @return this query
+     */
+    public NoteQuery withTitleContaining(String titleText) {
+        this.titleText = titleText;
+        return this;
+    }
+
+    /**
+     * Only matches notes with at least one item whose description contains the given text, case sensitive, like
+     * {@link NoteAPI#searchItemByDescription(String)}.
+     *
+     * @param descriptionText the text to look for
+     * @return this query
+     */
+    public NoteQuery withItemDescriptionContaining(String descriptionText) {
+        this.descriptionText = descriptionText;
+        return this;
+    }
+
+    /**
+     * Only matches notes where the share of completed items is from {@code minRatio} to {@code maxRatio}, inclusive,
+     * e.g. 0.5 to 1 for notes at least half done. A note with no items counts as complete (a ratio of 1), as in
+     * {@link Note#checkNoteCompletionStatus()}.
+     *
+     * @param minRatio the lowest share of completed items [0 to 1]
+     * @param maxRatio the highest share of completed items [0 to 1]
+     * @return this query
+     */
+    public NoteQuery withCompletionBetween(double minRatio, double maxRatio) {
+        this.minCompletion = minRatio;
+        this.maxCompletion = maxRatio;
+        return this;
+    }
+
+    // -------------- MATCHING --------------
+
+    /**
+     * Checks a note against every condition of this query.
+     *
+     * @param note the note to check
+     * @return {@code true} if the note meets every condition that was set
+     */
+    public boolean matches(Note note) {
+        if ((category != null) && (note.getNoteCategoryId() != categoryId)) {
+            return false;
+        }
+        if ((note.getNotePriority() < minPriority) || (note.getNotePriority() > maxPriority)) {
+            return false;
+        }
+        if ((archived != null) && (note.isNoteArchived() != archived)) {
+            return false;
+        }
+        if ((titleText != null) && !(note.getNoteTitle().contains(titleText))) {
+            return false;
+        }
+        if (hasCompletionRange()) {
+            double ratio = completionOf(note);
+            if ((ratio < minCompletion) || (ratio > maxCompletion)) {
+                return false;
+            }
+        }
+        return (descriptionText == null) || hasItemContaining(note, descriptionText); // last, as it may load items
+    }
+
+    // -------------- GETTERS --------------
+
+    /**
+     * @return the category, or {@code null} if any category matches
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * @return the ID of the category (see {@link Note#getNoteCategoryId()}), which no note has if the category isn't
+     * one of {@link utils.CategoryUtility#getCategories()} or ""
+     */
+    public int getCategoryId() {
+        return categoryId;
+    }
+
+    public int getMinPriority() {
+        return minPriority;
+    }
+
+    public int getMaxPriority() {
+        return maxPriority;
+    }
+
+    /**
+     * @return whether the notes must be archived, or {@code null} if both archived and active notes match
+     */
+    public Boolean getArchived() {
+        return archived;
+    }
+
+    /**
+     * @return the text the title must contain, or {@code null} if any title matches
+     */
+    public String getTitleText() {
+        return titleText;
+    }
+
+    /**
+     * @return the text an item description must contain, or {@code null} if the items don't matter
+     */
+    public String getDescriptionText() {
+        return descriptionText;
+    }
+
+    /**
+     * @return {@code true} if a priority range was set
+     */
+    public boolean hasPriorityRange() {
+        return (minPriority != Integer.MIN_VALUE) || (maxPriority != Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return {@code true} if a completion range was set
+     */
+    public boolean hasCompletionRange() {
+        return (minCompletion != Double.NEGATIVE_INFINITY) || (maxCompletion != Double.POSITIVE_INFINITY);
+    }
+
+    // -------------- PRIVATE HELPERS --------------
+
+    /**
+     * Gets the share of a note's items that are completed, without loading them.
+     */
+    private static double completionOf(Note note) {
+        int items = note.numberOfItems();
+        return (items == 0) ? 1.0 : ((double) note.numberOfCompletedItems() / items);
+    }
+
+    private static boolean hasItemContaining(Note note, String text) {
+        for (Item item : note.getItems()) {
+            if (item.getItemDescription().contains(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The category ID of a category that isn't one of {@link utils.CategoryUtility#getCategories()}.
+     */
+    private static final int UNKNOWN_CATEGORY = -1;
+
+    /**
+     * The category of the notes, {@code null} for any.
+     */
+    private String category = null;
+
+    /**
+     * The ID of {@link #category}, resolved once by {@link #withCategory(String)}, so matching compares IDs.
+     */
+    private int categoryId = NO_CATEGORY;
+
+    /**
+     * The lowest priority of the notes, {@link Integer#MIN_VALUE} if there is no lower limit.
+     */
+    private int minPriority = Integer.MIN_VALUE;
+
+    /**
+     * The highest priority of the notes, {@link Integer#MAX_VALUE} if there is no upper limit.
+     */
+    private int maxPriority = Integer.MAX_VALUE;
+
+    /**
+     * Whether the notes are archived, {@code null} for both.
+     */
+    private Boolean archived = null;
+
+    /**
+     * Text the titles contain, {@code null} for any title.
+     */
+    private String titleText = null;
+
+    /**
+     * Text an item description contains, {@code null} if the items don't matter.
+     */
+    private String descriptionText = null;
+
+    /**
+     * The lowest share of completed items, {@link Double#NEGATIVE_INFINITY} if there is no lower limit.
+     */
+    private double minCompletion = Double.NEGATIVE_INFINITY;
+
+    /**
+     * The highest share of completed items, {@link Double#POSITIVE_INFINITY} if there is no upper limit.
+     */
+    private double maxCompletion = Double.POSITIVE_INFINITY;
+}
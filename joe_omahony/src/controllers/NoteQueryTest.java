@@ -0,0 +1,49 @@
+package controllers;
+
+import models.Item;
+import models.Note;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteQueryTest {
+
+    @Test
+    void anEmptyQueryMatchesEveryNote() {
+        NoteQuery query = new NoteQuery();
+        assertTrue(query.matches(new Note("Gym", 4, "Hobby")));
+        assertFalse(query.hasPriorityRange());
+        assertFalse(query.hasCompletionRange());
+        assertNull(query.getCategory());
+        assertNull(query.getArchived());
+    }
+
+    @Test
+    void everyConditionMustBeMet() {
+        Note note = new Note("Code App", 4, "Work");
+        note.addItem(new Item("Code the UI", true));
+        note.addItem(new Item("Test the UI"));
+
+        NoteQuery query = new NoteQuery().withCategory("Work").withPriorityBetween(3, 4).withArchived(false)
+                .withTitleContaining("App").withItemDescriptionContaining("Test").withCompletionBetween(0.5, 0.5);
+        assertTrue(query.matches(note));
+        assertFalse(query.withTitleContaining("app").matches(note));
+        assertTrue(query.withTitleContaining("Code").matches(note));
+        assertFalse(query.withCompletionBetween(0.6, 1).matches(note));
+        assertTrue(query.withCompletionBetween(0, 1).matches(note));
+        assertFalse(query.withPriority(5).matches(note));
+        assertTrue(query.withPriority(4).matches(note));
+        note.setNoteArchived(true);
+        assertFalse(query.matches(note));
+        assertTrue(query.withArchived(true).matches(note));
+        assertFalse(query.withItemDescriptionContaining("Deploy").matches(note));
+    }
+
+    @Test
+    void aNoteWithNoItemsCountsAsComplete() {
+        Note note = new Note("Test App", 4, "Work");
+        assertTrue(new NoteQuery().withCompletionBetween(1, 1).matches(note));
+        assertFalse(new NoteQuery().withCompletionBetween(0, 0.99).matches(note));
+        assertFalse(new NoteQuery().withItemDescriptionContaining("").matches(note));
+    }
+}
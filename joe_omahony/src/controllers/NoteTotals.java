@@ -0,0 +1,138 @@
+package controllers;
+
+import java.util.List;
+
+import models.Item;
+import models.Note;
+
+/**
+ * The responsibility of the {@code NoteTotals} class is to keep the totals shown on the report screens (archived
+ * notes, items and completed items) for {@link NoteAPI}, so they can be read without walking the notes and their
+ * items.
+ * <p>
+ * The totals are counted once from the notes, then adjusted by {@link NoteAPI} as notes are added and deleted and by
+ * its {@link models.NoteListener} as items change and notes are archived. The number of active notes and to-do items
+ * follow from these and the number of notes.
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+class NoteTotals {
+
+    /**
+     * Counts the totals of the given notes. Items that haven't been loaded yet are counted without loading them.
+     * @param notes the notes to count
+     */
+    NoteTotals(List<Note> notes) {
+        for (Note note : notes) {
+            noteAdded(note);
+        }
+    }
+
+    /**
+     * Starts from totals already counted, e.g. from the columns of a {@link ColumnarNoteList}.
+     *
+     * @param archivedNotes the number of archived notes
+     * @param items the number of items
+     * @param completedItems the number of completed items
+     */
+    NoteTotals(int archivedNotes, int items, int completedItems) {
+        this.archivedNotes = archivedNotes;
+        this.items = items;
+        this.completedItems = completedItems;
+    }
+
+    // -------------- UPDATE METHODS --------------
+
+    /**
+     * Adds a note, with all its items, to the totals.
+     * @param note the note added
+     */
+    void noteAdded(Note note) {
+        if (note.isNoteArchived()) {
+            archivedNotes++;
+        }
+        itemsChanged(note.numberOfItems(), note.numberOfCompletedItems());
+    }
+
+    /**
+     * Takes a note, with all its items, out of the totals. Must be called before any of its items are deleted.
+     * @param note the note deleted
+     */
+    void noteDeleted(Note note) {
+        if (note.isNoteArchived()) {
+            archivedNotes--;
+        }
+        itemsChanged(-note.numberOfItems(), -note.numberOfCompletedItems());
+    }
+
+    /**
+     * Adjusts the item totals.
+     * @param itemChange the change in the number of items
+     * @param completedChange the change in the number of completed items
+     */
+    void itemsChanged(int itemChange, int completedChange) {
+        items += itemChange;
+        completedItems += completedChange;
+    }
+
+    /**
+     * Adjusts the archived total after a note was archived or unarchived.
+     * @param archived whether the note is now archived
+     */
+    void archivedChanged(boolean archived) {
+        archivedNotes += archived ? 1 : -1;
+    }
+
+    // -------------- GETTERS --------------
+
+    int getArchivedNotes() {
+        return archivedNotes;
+    }
+
+    int getItems() {
+        return items;
+    }
+
+    int getCompletedItems() {
+        return completedItems;
+    }
+
+    /**
+     * Checks the totals against a fresh count of the notes, for {@link NoteAPI#setVerifyingTotals(boolean)}. The items
+     * of every loaded note are looked at one by one, rather than trusting {@link Note#numberOfCompletedItems()}.
+     *
+     * @param notes the notes the totals should match
+     * @throws IllegalStateException if a total doesn't match the notes, e.g. because an {@link Item} was
+     * changed directly rather than through its {@link Note}
+     */
+    void verify(List<Note> notes) {
+        NoteTotals counted = new NoteTotals(List.of());
+        for (Note note : notes) {
+            if (note.isNoteArchived()) {
+                counted.archivedNotes++;
+            }
+            if (note.isItemsLoaded()) {
+                for (Item item : note.getItems()) {
+                    counted.itemsChanged(1, item.isItemCompleted() ? 1 : 0);
+                }
+            }
+            else {
+                counted.itemsChanged(note.numberOfItems(), note.numberOfCompletedItems());
+            }
+        }
+        if ((counted.archivedNotes != archivedNotes) || (counted.items != items)
+                || (counted.completedItems != completedItems)) {
+            throw new IllegalStateException("Totals out of step with the notes: kept " + this + ", counted " + counted);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[archived notes=" + archivedNotes + ", items=" + items + ", completed items=" + completedItems + "]";
+    }
+
+    private int archivedNotes = 0;
+    private int items = 0;
+    private int completedItems = 0;
+}
@@ -0,0 +1,65 @@
+package controllers;
+
+import models.Item;
+import models.Note;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteXStreamCodecTest {
+
+    @Test
+    void writingThenReadingReturnsEqualNotes() throws Exception {
+        ArrayList<Note> notes = new ArrayList<Note>();
+        Note javaWork = new Note("Learning Java", 5, "Work");
+        javaWork.addItem(new Item("Study Objects and Classes", true));
+        notes.add(javaWork);
+        notes.add(javaWork); // written twice in full, not as a reference
+
+        StringWriter out = new StringWriter();
+        NoteXStreamCodec.write(notes, out);
+        assertFalse(out.toString().contains("reference="));
+
+        ArrayList<Note> readNotes = NoteXStreamCodec.read(new StringReader(out.toString()));
+        assertEquals(notes, readNotes);
+    }
+
+    @Test
+    void readingGivesItemsWithoutIdsNewIds() throws Exception {
+        ArrayList<Note> notes = new ArrayList<Note>();
+        Note javaWork = new Note("Learning Java", 5, "Work");
+        javaWork.addItem(new Item("Study Objects and Classes"));
+        javaWork.addItem(new Item("Study ArrayLists and Collections"));
+        javaWork.findItem(0).setItemId(0); // as if saved before items had IDs
+        javaWork.findItem(1).setItemId(0);
+        notes.add(javaWork);
+
+        StringWriter out = new StringWriter();
+        NoteXStreamCodec.write(notes, out);
+        Note readNote = NoteXStreamCodec.read(new StringReader(out.toString())).get(0);
+        assertEquals(1, readNote.findItem(0).getItemId());
+        assertEquals(2, readNote.findItem(1).getItemId());
+        Item added = new Item("Study Streams");
+        readNote.addItem(added);
+        assertEquals(3, added.getItemId());
+    }
+
+    @Test
+    void sharedInstanceCanBeUsedAgainAndAgain() throws Exception {
+        ArrayList<Note> notes = new ArrayList<Note>();
+        notes.add(new Note("Gym", 4, "Hobby"));
+        String first = null;
+        for (int i = 0; i < 3; i++) {
+            StringWriter out = new StringWriter();
+            NoteXStreamCodec.write(notes, out);
+            if (first == null) {
+                first = out.toString();
+            }
+            assertEquals(first, out.toString());
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package controllers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import models.Item;
+import models.Note;
+
+/**
+ * The responsibility of the {@code NoteXmlReader} class is to read the XML written by {@link NoteAPI#save()} one
+ * {@link Note} at a time, using a StAX pull parser instead of building a DOM.
+ * <p>
+ * Both XML dialects are recognised, element by element, so no format flag is needed to load either:
+ * <ul>
+ *   <li>{@link StoreFormat#XML}: {@code <models.Note>} elements with a child element per field, and
+ *   {@code <models.Item>} elements inside {@code <items>}.</li>
+ *   <li>{@link StoreFormat#COMPACT_XML}: {@code <note>} elements with priority, category, archived and id attributes
+ *   and a {@code <title>} child, and {@code <item completed="..." id="...">description</item>} elements directly
+ *   inside.</li>
+ * </ul>
+ * Each note element (and its nested item elements) is turned into a {@link Note} and handed to a caller supplied
+ * {@link Consumer} as soon as its closing tag is read, so peak memory is bounded by the size of one note rather than by
+ * the size of the whole file.
+ * <p>
+ * Notes and items are built through their public constructors and mutators, so loaded values pass through the same
+ * validation rules as values entered in {@link main.Driver} (e.g. an unknown category is stored as "").
+ * Note and item IDs are optional, as files saved before they existed have none (see {@link Note#getNoteId()}).
+ * Unknown elements are skipped. Files containing XStream object references (the {@code reference} attribute) are not
+ * supported by this reader, and a {@link UnsupportedXmlException} is thrown so the caller can fall back to
+ * {@code XStream}.
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+class NoteXmlReader {
+
+    /**
+     * Thrown when the XML uses a feature this streaming reader does not support (i.e. XStream object references).
+     */
+    static class UnsupportedXmlException extends IOException {
+        UnsupportedXmlException(String message) {
+            super(message);
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Reads every note in the XML document and passes each one to {@code sink} in document order.
+     *
+     * @param source the XML to read, e.g. a {@link java.io.FileReader} on "notes.xml"
+     * @param sink receives each {@link Note} as soon as it has been fully parsed
+     * @return the number of notes read
+     * @throws IOException if the XML is malformed or cannot be read
+     */
+    static int read(Reader source, Consumer<Note> sink) throws IOException {
+        int notesRead = 0;
+        XMLStreamReader xml = null;
+        try {
+            xml = FACTORY.createXMLStreamReader(source);
+            while (xml.hasNext()) {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT) {
+                    checkForReference(xml);
+                    if (xml.getLocalName().equals(NOTE_ELEMENT)) {
+                        sink.accept(readNote(xml));
+                        notesRead++;
+                    }
+                    else if (xml.getLocalName().equals(COMPACT_NOTE_ELEMENT)) {
+                        sink.accept(readCompactNote(xml));
+                        notesRead++;
+                    }
+                }
+            }
+        }
+        catch (XMLStreamException e) {
+            throw new IOException("Unable to read notes XML: " + e.getMessage(), e);
+        }
+        finally {
+            if (xml != null) {
+                try {
+                    xml.close();
+                }
+                catch (XMLStreamException e) {
+                    // nothing more to do, the underlying reader is closed by the caller
+                }
+            }
+        }
+        return notesRead;
+    }
+
+    // -------------- PRIVATE HELPERS --------------
+
+    /**
+     * Reads one {@code <models.Note>} element. The cursor must be on its start tag, and is left on its end tag.
+     */
+    private static Note readNote(XMLStreamReader xml) throws XMLStreamException, IOException {
+        String title = "No Title";
+        int priority = 1;
+        String category = "";
+        boolean archived = false;
+        int noteId = 0;
+        Note note = null;
+
+        while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            checkForReference(xml);
+            switch (xml.getLocalName()) {
+                case "noteTitle" -> title = xml.getElementText();
+                case "notePriority" -> priority = parseInt(xml.getElementText());
+                case "noteCategory" -> category = xml.getElementText();
+                case "isNoteArchived" -> archived = Boolean.parseBoolean(xml.getElementText().trim());
+                case "noteId" -> noteId = parseInt(xml.getElementText());
+                case "items" -> {
+                    note = new Note(title, priority, category);
+                    readItems(xml, note);
+                }
+                default -> skipElement(xml);
+            }
+        }
+        // XStream writes the fields in declaration order, so items normally come last. If they didn't, the header
+        // fields read after the items still need to be applied.
+        if (note == null) {
+            note = new Note(title, priority, category);
+        }
+        else {
+            note.setNoteTitle(title);
+            note.setNotePriority(priority);
+            note.setNoteCategory(category);
+        }
+        note.setNoteArchived(archived);
+        note.setNoteId(noteId);
+        return note;
+    }
+
+    /**
+     * Reads the {@code <items>} collection of a note, adding each {@code <models.Item>} to {@code note}.
+     */
+    private static void readItems(XMLStreamReader xml, Note note) throws XMLStreamException, IOException {
+        while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            checkForReference(xml);
+            if (xml.getLocalName().equals(ITEM_ELEMENT)) {
+                note.addItem(readItem(xml));
+            }
+            else {
+                skipElement(xml);
+            }
+        }
+    }
+
+    /**
+     * Reads one {@code <models.Item>} element. The cursor must be on its start tag, and is left on its end tag.
+     */
+    private static Item readItem(XMLStreamReader xml) throws XMLStreamException, IOException {
+        String description = null;
+        boolean completed = false;
+        int itemId = 0;
+        while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            checkForReference(xml);
+            switch (xml.getLocalName()) {
+                case "itemDescription" -> description = xml.getElementText();
+                case "isItemCompleted" -> completed = Boolean.parseBoolean(xml.getElementText().trim());
+                case "itemId" -> itemId = parseInt(xml.getElementText());
+                default -> skipElement(xml);
+            }
+        }
+        Item item = new Item(description, completed);
+        item.setItemId(itemId);
+        return item;
+    }
+
+    /**
+     * Reads one compact {@code <note>} element. The cursor must be on its start tag, and is left on its end tag.
+     */
+    private static Note readCompactNote(XMLStreamReader xml) throws XMLStreamException, IOException {
+        String priority = xml.getAttributeValue(null, "priority");
+        String category = xml.getAttributeValue(null, "category");
+        boolean archived = Boolean.parseBoolean(xml.getAttributeValue(null, "archived"));
+        Note note = new Note("No Title", (priority == null) ? 1 : parseInt(priority), (category == null) ? "" : category);
+        note.setNoteArchived(archived);
+        note.setNoteId(parseId(xml));
+
+        while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            checkForReference(xml);
+            switch (xml.getLocalName()) {
+                case "title" -> note.setNoteTitle(xml.getElementText());
+                case COMPACT_ITEM_ELEMENT -> {
+                    boolean completed = Boolean.parseBoolean(xml.getAttributeValue(null, "completed"));
+                    int itemId = parseId(xml);
+                    Item item = new Item(xml.getElementText(), completed);
+                    item.setItemId(itemId);
+                    note.addItem(item);
+                }
+                default -> skipElement(xml);
+            }
+        }
+        return note;
+    }
+
+    /**
+     * Skips the current element and everything inside it, leaving the cursor on its end tag.
+     */
+    private static void skipElement(XMLStreamReader xml) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * XStream writes an element with a {@code reference} attribute when an object appears more than once in the saved
+     * graph. Resolving those would mean remembering every element read so far, which defeats streaming.
+     */
+    private static void checkForReference(XMLStreamReader xml) throws UnsupportedXmlException {
+        if (xml.getAttributeValue(null, "reference") != null) {
+            throw new UnsupportedXmlException("XStream object references are not supported by the streaming reader");
+        }
+    }
+
+    /**
+     * Parses an integer field, leaving it to {@link Note} validation to reject anything out of range.
+     */
+    private static int parseInt(String text) throws IOException {
+        try {
+            return Integer.parseInt(text.trim());
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Invalid number in notes XML [" + text + "]", e);
+        }
+    }
+
+    /**
+     * Parses the optional {@code id} attribute of a compact note or item, 0 if there is none.
+     */
+    private static int parseId(XMLStreamReader xml) throws IOException {
+        String id = xml.getAttributeValue(null, "id");
+        return (id == null) ? 0 : parseInt(id);
+    }
+
+    /**
+     * Element name XStream uses for a {@link Note}.
+     */
+    private static final String NOTE_ELEMENT = "models.Note";
+
+    /**
+     * Element name XStream uses for an {@link Item}.
+     */
+    private static final String ITEM_ELEMENT = "models.Item";
+
+    /**
+     * Element name of a {@link Note} in the compact dialect, see {@link NoteXStreamCodec#writeCompact}.
+     */
+    private static final String COMPACT_NOTE_ELEMENT = "note";
+
+    /**
+     * Element name of an {@link Item} in the compact dialect.
+     */
+    private static final String COMPACT_ITEM_ELEMENT = "item";
+
+    /**
+     * Shared StAX factory, configured once. DTDs and external entities are disabled, in the same spirit as the
+     * {@code XStream} security setup in {@link NoteXStreamCodec}.
+     */
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newFactory();
+
+    static {
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+}
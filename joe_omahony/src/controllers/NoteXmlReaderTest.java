@@ -0,0 +1,111 @@
+package controllers;
+
+import models.Item;
+import models.Note;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteXmlReaderTest {
+
+    private static final String OBJECT_STREAM = """
+            <object-stream>
+              <list>
+                <models.Note>
+                  <noteTitle>Grocery List</noteTitle>
+                  <notePriority>2</notePriority>
+                  <noteCategory>Home</noteCategory>
+                  <isNoteArchived>false</isNoteArchived>
+                  <items>
+                    <models.Item>
+                      <itemDescription>Buy milk &amp; bread</itemDescription>
+                      <isItemCompleted>false</isItemCompleted>
+                    </models.Item>
+                    <models.Item>
+                      <itemDescription>Buy eggs</itemDescription>
+                      <isItemCompleted>true</isItemCompleted>
+                    </models.Item>
+                  </items>
+                </models.Note>
+                <models.Note>
+                  <noteTitle>Math Homework</noteTitle>
+                  <notePriority>1</notePriority>
+                  <noteCategory>College</noteCategory>
+                  <isNoteArchived>true</isNoteArchived>
+                  <items/>
+                </models.Note>
+              </list>
+            </object-stream>
+            """;
+
+    @Test
+    void readingObjectStreamReturnsEveryNoteInOrder() throws IOException {
+        ArrayList<Note> notes = new ArrayList<Note>();
+        assertEquals(2, NoteXmlReader.read(new StringReader(OBJECT_STREAM), notes::add));
+        assertEquals(2, notes.size());
+
+        Note grocery = new Note("Grocery List", 2, "Home");
+        grocery.addItem(new Item("Buy milk & bread", false));
+        grocery.addItem(new Item("Buy eggs", true));
+        assertEquals(grocery, notes.get(0));
+
+        Note homework = new Note("Math Homework", 1, "College");
+        homework.setNoteArchived(true);
+        assertEquals(homework, notes.get(1));
+    }
+
+    @Test
+    void readingCompactDialectReturnsTheSameNotes() throws IOException {
+        String compact = """
+                <notes>
+                <note priority="2" category="Home" archived="false">
+                <title>Grocery List</title>
+                <item completed="false">Buy milk &amp; bread</item>
+                <item completed="true">Buy eggs</item>
+                </note>
+                <note priority="1" category="College" archived="true">
+                <title>Math Homework</title>
+                </note>
+                </notes>
+                """;
+        ArrayList<Note> compactNotes = new ArrayList<Note>();
+        ArrayList<Note> objectStreamNotes = new ArrayList<Note>();
+        assertEquals(2, NoteXmlReader.read(new StringReader(compact), compactNotes::add));
+        NoteXmlReader.read(new StringReader(OBJECT_STREAM), objectStreamNotes::add);
+        assertEquals(objectStreamNotes, compactNotes);
+        assertTrue(compactNotes.get(1).isNoteArchived());
+        assertTrue(compactNotes.get(0).findItem(1).isItemCompleted());
+    }
+
+    @Test
+    void readingEmptyListReturnsNoNotes() throws IOException {
+        ArrayList<Note> notes = new ArrayList<Note>();
+        assertEquals(0, NoteXmlReader.read(new StringReader("<object-stream><list/></object-stream>"), notes::add));
+        assertTrue(notes.isEmpty());
+    }
+
+    @Test
+    void readingAppliesNoteValidation() throws IOException {
+        String xml = "<object-stream><list><models.Note><noteTitle>Vacation Plan</noteTitle>"
+                + "<notePriority>9</notePriority><noteCategory>Travel</noteCategory>"
+                + "<isNoteArchived>false</isNoteArchived><items/></models.Note></list></object-stream>";
+        ArrayList<Note> notes = new ArrayList<Note>();
+        NoteXmlReader.read(new StringReader(xml), notes::add);
+        assertEquals("Vacation Plan", notes.get(0).getNoteTitle());
+        assertEquals(1, notes.get(0).getNotePriority());
+        assertEquals("", notes.get(0).getNoteCategory());
+    }
+
+    @Test
+    void readingObjectReferencesThrowsUnsupported() {
+        String xml = "<object-stream><list><models.Note><noteTitle>A</noteTitle><items>"
+                + "<models.Item><itemDescription>x</itemDescription><isItemCompleted>false</isItemCompleted></models.Item>"
+                + "<models.Item reference=\"../models.Item\"/></items></models.Note></list></object-stream>";
+        assertThrows(NoteXmlReader.UnsupportedXmlException.class,
+                () -> NoteXmlReader.read(new StringReader(xml), note -> {}));
+    }
+}
@@ -0,0 +1,318 @@
+package controllers;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The responsibility of the {@code PositionIndex} class is to remember, for each key (e.g. a category), the positions
+ * of the notes in {@link NoteAPI}'s notes ArrayList that have that key, so they can be counted and listed without
+ * looking at any other note.
+ * <p>
+ * Each key has a bucket of positions kept in ascending order, so the notes of a key are listed in the same order as
+ * the notes ArrayList. Counting a key is constant time. Adding a note at the end of the list is constant time
+ * (amortised).
+ * <p>
+ * Deleting a note doesn't move the positions after it in every bucket. The buckets hold slots, each note's position
+ * when it was recorded, and a delete only takes the note's own slot out of the buckets of its keys and marks it in
+ * {@link Tombstones}. Slots are turned into positions as they are read, and the buckets are only rewritten as
+ * positions (compacted) once the tombstones have built up, so a delete costs amortised constant time plus a
+ * logarithmic search per key, rather than a pass over every position of every key.
+ *
+ * @param <K> the type of key the notes are grouped by
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+class PositionIndex<K> {
+
+    /**
+     * Creates an empty index whose keys are kept in no particular order.
+     */
+    PositionIndex() {
+        buckets = new HashMap<K, Bucket>();
+    }
+
+    /**
+     * Creates an empty index, optionally keeping its keys in their natural order so they can be walked from a given
+     * key with {@link #keysFrom(Object)}.
+     * @param sortedKeys {@code true} to keep the keys sorted
+     */
+    PositionIndex(boolean sortedKeys) {
+        buckets = sortedKeys ? new TreeMap<K, Bucket>() : new HashMap<K, Bucket>();
+    }
+
+    // -------------- UPDATE METHODS --------------
+
+    /**
+     * Records that the note at {@code position} has {@code key}.
+     *
+     * @param key the key of the note
+     * @param position the position of the note in the notes ArrayList
+     */
+    void add(K key, int position) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new Bucket();
+            buckets.put(key, bucket);
+        }
+        if (bucket.insert(tombstones.toSlot(position))) {
+            postings++;
+        }
+    }
+
+    /**
+     * Records that the note at {@code position} no longer has {@code key}. The positions of other notes don't change.
+     *
+     * @param key the key the note had
+     * @param position the position of the note in the notes ArrayList
+     * @return {@code true} if the position was recorded under that key
+     */
+    boolean remove(K key, int position) {
+        Bucket bucket = buckets.get(key);
+        if ((bucket == null) || !(bucket.remove(tombstones.toSlot(position)))) {
+            return false;
+        }
+        postings--;
+        if (bucket.size == 0) {
+            buckets.remove(key); // so keys() only has keys that still have notes
+        }
+        return true;
+    }
+
+    /**
+     * Records that the note at {@code position} was deleted from the notes ArrayList, so every note after it has moved
+     * back one position.
+     *
+     * @param key the key the deleted note had
+     * @param position the position the note was deleted from
+     */
+    void delete(K key, int position) {
+        remove(key, position);
+        noteDeleted(position);
+    }
+
+    /**
+     * Records that the note at {@code position}, which had all of {@code keys}, was deleted from the notes ArrayList.
+     *
+     * @param keys the keys the deleted note had
+     * @param position the position the note was deleted from
+     */
+    void deleteAll(Collection<K> keys, int position) {
+        for (K key : keys) {
+            remove(key, position);
+        }
+        noteDeleted(position);
+    }
+
+    // -------------- QUERY METHODS --------------
+
+    /**
+     * Gets the number of notes with {@code key}.
+     * @param key the key to count
+     * @return the number of positions recorded under that key
+     */
+    int count(K key) {
+        Bucket bucket = buckets.get(key);
+        return (bucket == null) ? 0 : bucket.size;
+    }
+
+    /**
+     * Gets the positions of the notes with {@code key}.
+     * @param key the key to look up
+     * @return a copy of the positions, in ascending order, empty if there are none
+     */
+    int[] positions(K key) {
+        Bucket bucket = buckets.get(key);
+        return (bucket == null) ? new int[0] : toPositions(bucket.slots, 0, bucket.size);
+    }
+
+    /**
+     * Gets some of the positions of the notes with {@code key}, e.g. for one page of a listing.
+     *
+     * @param key the key to look up
+     * @param fromPosition the lowest position to return
+     * @param limit the largest number of positions to return
+     * @return the first {@code limit} positions from {@code fromPosition} on, in ascending order
+     */
+    int[] positionsFrom(K key, int fromPosition, int limit) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            return new int[0];
+        }
+        int from = Arrays.binarySearch(bucket.slots, 0, bucket.size, tombstones.toSlot(fromPosition));
+        from = (from >= 0) ? from : -(from + 1);
+        int to = (int) Math.min((long) from + limit, bucket.size);
+        return toPositions(bucket.slots, from, to);
+    }
+
+    /**
+     * Gets every key that has at least one note.
+     * @return the keys, a live view that must not be changed
+     */
+    Iterable<K> keys() {
+        return buckets.keySet();
+    }
+
+    /**
+     * Gets the keys from {@code fromKey} (inclusive) onwards, in order. Only for indexes created with sorted keys.
+     * @param fromKey the first key to return, if present
+     * @return the keys, a live view that must not be changed
+     */
+    Iterable<K> keysFrom(K fromKey) {
+        return ((NavigableMap<K, Bucket>) buckets).tailMap(fromKey, true).keySet();
+    }
+
+    /**
+     * Gets the positions found in both of two arrays of positions in ascending order, e.g. to combine the notes of
+     * two keys.
+     *
+     * @param first positions in ascending order
+     * @param second positions in ascending order
+     * @return the positions in both, in ascending order
+     */
+    static int[] intersection(int[] first, int[] second) {
+        int[] both = new int[Math.min(first.length, second.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while ((i < first.length) && (j < second.length)) {
+            if (first[i] < second[j]) {
+                i++;
+            }
+            else if (first[i] > second[j]) {
+                j++;
+            }
+            else {
+                both[count++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(both, count);
+    }
+
+    /**
+     * Gets the positions found in any of several arrays of positions in ascending order, e.g. to combine the notes of
+     * several keys.
+     *
+     * @param buckets arrays of positions in ascending order
+     * @return the distinct positions in any of them, in ascending order
+     */
+    static int[] union(List<int[]> buckets) {
+        if (buckets.size() == 1) {
+            return buckets.get(0);
+        }
+        int total = 0;
+        for (int[] bucket : buckets) {
+            total += bucket.length;
+        }
+        int[] all = new int[total];
+        int offset = 0;
+        for (int[] bucket : buckets) {
+            System.arraycopy(bucket, 0, all, offset, bucket.length);
+            offset += bucket.length;
+        }
+        Arrays.sort(all);
+        int distinct = 0;
+        for (int i = 0; i < all.length; i++) {
+            if ((i == 0) || (all[i] != all[i - 1])) {
+                all[distinct++] = all[i];
+            }
+        }
+        return Arrays.copyOf(all, distinct);
+    }
+
+    // -------------- PRIVATE HELPERS --------------
+
+    /**
+     * Marks the slot of a deleted note as a tombstone, compacting once there are enough of them.
+     */
+    private void noteDeleted(int position) {
+        tombstones.delete(position);
+        if (tombstones.needsCompacting(postings)) {
+            for (Bucket bucket : buckets.values()) {
+                for (int i = 0; i < bucket.size; i++) {
+                    bucket.slots[i] = tombstones.toPosition(bucket.slots[i]);
+                }
+            }
+            tombstones.clear();
+        }
+    }
+
+    /**
+     * Gets the current positions of a range of slots of a bucket.
+     */
+    private int[] toPositions(int[] slots, int from, int to) {
+        int[] positions = Arrays.copyOfRange(slots, from, to);
+        if (!(tombstones.isEmpty())) {
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = tombstones.toPosition(positions[i]);
+            }
+        }
+        return positions;
+    }
+
+    // -------------- BUCKET --------------
+
+    /**
+     * The slots of one key, in ascending order.
+     */
+    private static class Bucket {
+
+        boolean insert(int slot) {
+            if ((size == 0) || (slots[size - 1] < slot)) {
+                ensureCapacity(size + 1);
+                slots[size++] = slot; // the usual case, a note added at the end
+                return true;
+            }
+            int index = Arrays.binarySearch(slots, 0, size, slot);
+            if (index >= 0) {
+                return false; // already recorded
+            }
+            index = -(index + 1);
+            ensureCapacity(size + 1);
+            System.arraycopy(slots, index, slots, index + 1, size - index);
+            slots[index] = slot;
+            size++;
+            return true;
+        }
+
+        boolean remove(int slot) {
+            int index = Arrays.binarySearch(slots, 0, size, slot);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(slots, index + 1, slots, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > slots.length) {
+                slots = Arrays.copyOf(slots, Math.max(capacity, slots.length * 2));
+            }
+        }
+
+        private int[] slots = new int[4];
+        private int size = 0;
+    }
+
+    /**
+     * The bucket of positions for each key that has any notes, sorted by key if asked for.
+     */
+    private final Map<K, Bucket> buckets;
+
+    /**
+     * The slots of the notes deleted since the buckets were last compacted.
+     */
+    private final Tombstones tombstones = new Tombstones();
+
+    /**
+     * The number of slots in all the buckets, which sets how many tombstones are worth compacting.
+     */
+    private int postings = 0;
+}
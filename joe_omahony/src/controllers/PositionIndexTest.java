@@ -0,0 +1,103 @@
+package controllers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionIndexTest {
+
+    @Test
+    void positionsAreKeptInOrderPerKey() {
+        PositionIndex<String> index = new PositionIndex<String>();
+        index.add("Work", 0);
+        index.add("Home", 1);
+        index.add("Work", 4);
+        index.add("Work", 2);
+        index.add("Work", 2); // recorded once
+
+        assertEquals(3, index.count("Work"));
+        assertEquals(1, index.count("Home"));
+        assertEquals(0, index.count("Hobby"));
+        assertArrayEquals(new int[]{0, 2, 4}, index.positions("Work"));
+        assertArrayEquals(new int[0], index.positions("Hobby"));
+    }
+
+    @Test
+    void positionsFromGivesOnePageOfAKey() {
+        PositionIndex<String> index = new PositionIndex<String>();
+        for (int i = 0; i < 10; i += 2) {
+            index.add("Work", i);
+        }
+        assertArrayEquals(new int[]{0, 2}, index.positionsFrom("Work", 0, 2));
+        assertArrayEquals(new int[]{4, 6}, index.positionsFrom("Work", 3, 2));
+        assertArrayEquals(new int[]{8}, index.positionsFrom("Work", 8, Integer.MAX_VALUE));
+        assertArrayEquals(new int[0], index.positionsFrom("Work", 9, 2));
+        assertArrayEquals(new int[0], index.positionsFrom("Home", 0, 2));
+    }
+
+    @Test
+    void removeOnlyForgetsThatPosition() {
+        PositionIndex<String> index = new PositionIndex<String>();
+        index.add("Work", 0);
+        index.add("Work", 3);
+        assertTrue(index.remove("Work", 0));
+        assertFalse(index.remove("Work", 0));
+        assertFalse(index.remove("Home", 3));
+        assertArrayEquals(new int[]{3}, index.positions("Work"));
+    }
+
+    @Test
+    void deleteShiftsLaterPositionsInEveryKey() {
+        PositionIndex<String> index = new PositionIndex<String>();
+        for (int i = 0; i < 10; i++) {
+            index.add((i % 2 == 0) ? "Work" : "Home", i);
+        }
+        index.delete("Home", 3);
+
+        assertArrayEquals(new int[]{0, 2, 3, 5, 7}, index.positions("Work"));
+        assertArrayEquals(new int[]{1, 4, 6, 8}, index.positions("Home"));
+    }
+
+    @Test
+    void manyDeletesMatchDeletingFromAList() {
+        Random random = new Random(7);
+        ArrayList<Integer> keys = new ArrayList<Integer>();
+        PositionIndex<Integer> index = new PositionIndex<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            keys.add(i % 7);
+            index.add(i % 7, i);
+        }
+        for (int i = 0; i < 700; i++) {
+            int position = random.nextInt(keys.size());
+            index.delete(keys.remove(position), position);
+            if ((i % 10) == 0) {
+                keys.add(i % 3);
+                index.add(i % 3, keys.size() - 1);
+            }
+            if ((i % 100) == 0) {
+                int moved = random.nextInt(keys.size()); // a note whose key changed
+                index.remove(keys.get(moved), moved);
+                keys.set(moved, 6);
+                index.add(6, moved);
+            }
+        }
+        for (int key = 0; key < 7; key++) {
+            ArrayList<Integer> expected = new ArrayList<Integer>();
+            for (int position = 0; position < keys.size(); position++) {
+                if (keys.get(position) == key) {
+                    expected.add(position);
+                }
+            }
+            int[] positions = index.positions(key);
+            assertEquals(expected.size(), index.count(key));
+            assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), positions);
+            if (positions.length > 3) {
+                assertArrayEquals(Arrays.copyOfRange(positions, 2, 4), index.positionsFrom(key, positions[1] + 1, 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package controllers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import models.Note;
+
+/**
+ * The responsibility of the {@code ShardedStore} class is to split the notes store across several shard files, so
+ * they can be written and read in parallel (see {@link NoteAPI#setShardCount(int)}).
+ * <p>
+ * The notes are split by position into ranges of (nearly) equal size, so shard 0 holds the first notes, shard 1 the
+ * next, and so on. Each shard is an ordinary store file in any {@link StoreFormat}. The store file itself becomes a
+ * small manifest that lists the shards in order:
+ * <pre>
+ * manifest: int magic ("NOTS"), short version, int shardCount, int noteCount
+ *           shard* (UTF fileName, int noteCount)
+ * </pre>
+ * Shard file names are relative to the manifest, e.g. "notes.dat.4127519830642117793-3.shard". Every save creates a
+ * new set of uniquely named shard files (see {@link File#createTempFile(String, String, File)}), so it never writes over
+ * a shard the current manifest lists, however close together two saves are. It then replaces the manifest, then
+ * deletes the old shards, so a failed save leaves the old manifest and its shards untouched, and deletes the shards it
+ * had already written.
+ * <p>
+ * Shards are read and written as tasks on a thread pool, one per shard, and the results are joined in shard order so
+ * the loaded notes keep their order. A failed task's own exception (e.g. a {@link java.io.FileNotFoundException}) is
+ * thrown to the caller.
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+class ShardedStore {
+
+    /**
+     * Reads one shard file.
+     */
+    interface ShardReader {
+        List<Note> read(File shardFile) throws IOException, ClassNotFoundException;
+    }
+
+    /**
+     * Writes one shard file.
+     */
+    interface ShardWriter {
+        void write(List<Note> shardNotes, File shardFile) throws Exception;
+    }
+
+    /**
+     * The magic number at the start of every manifest ("NOTS" in ASCII).
+     */
+    static final int MAGIC = 0x4E4F5453;
+
+    /**
+     * The current manifest version.
+     */
+    static final short VERSION = 1;
+
+    /**
+     * Writes the notes as {@code shardCount} shard files plus a manifest at {@code manifestFile}, then deletes the
+     * shards of the manifest it replaced.
+     *
+     * @param notes the notes to write, in order
+     * @param shardCount the number of shards to split them into
+     * @param manifestFile the store file, which becomes the manifest
+     * @param writer writes each shard file
+     * @throws Exception if a shard or the manifest can't be written
+     */
+    static void write(List<Note> notes, int shardCount, File manifestFile, ShardWriter writer) throws Exception {
+        List<File> oldShards = listShards(manifestFile);
+        File directory = manifestFile.getAbsoluteFile().getParentFile();
+        File tempFile = new File(manifestFile.getPath() + ".tmp");
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(shardCount);
+        List<File> newShards = new ArrayList<File>(shardCount);
+        int[] shardSizes = new int[shardCount];
+        try {
+            for (int shard = 0; shard < shardCount; shard++) {
+                int from = shardStart(notes.size(), shardCount, shard);
+                int to = shardStart(notes.size(), shardCount, shard + 1);
+                List<Note> shardNotes = notes.subList(from, to);
+                // created empty here, under a name no other file has, and filled in by the task
+                File shardFile = File.createTempFile(manifestFile.getName() + ".", "-" + shard + ".shard", directory);
+                newShards.add(shardFile);
+                shardSizes[shard] = to - from;
+                tasks.add(() -> {
+                    writer.write(shardNotes, shardFile);
+                    return null;
+                });
+            }
+            runInOrder(tasks);
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeInt(shardCount);
+                out.writeInt(notes.size());
+                for (int shard = 0; shard < shardCount; shard++) {
+                    out.writeUTF(newShards.get(shard).getName());
+                    out.writeInt(shardSizes[shard]);
+                }
+            }
+            Files.move(tempFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (Exception e) {
+            // the old manifest is still in place, and lists none of these
+            deleteAll(newShards);
+            Files.deleteIfExists(tempFile.toPath());
+            throw e;
+        }
+        oldShards.removeAll(newShards); // never the case with unique names, but a listed shard must never go
+        deleteAll(oldShards);
+    }
+
+    /**
+     * Reads every shard listed in a manifest in parallel, and joins them into one list in shard order.
+     *
+     * @param manifestFile the manifest
+     * @param reader reads each shard file
+     * @return all the notes, in order
+     * @throws IOException if the manifest or a shard can't be read
+     * @throws ClassNotFoundException if a shard needs classes that are not found
+     */
+    static List<Note> read(File manifestFile, ShardReader reader) throws IOException, ClassNotFoundException {
+        List<File> shards = listShards(manifestFile);
+        List<Callable<List<Note>>> tasks = new ArrayList<Callable<List<Note>>>(shards.size());
+        for (File shardFile : shards) {
+            tasks.add(() -> reader.read(shardFile));
+        }
+        List<List<Note>> shardNotes;
+        try {
+            shardNotes = runInOrder(tasks);
+        }
+        catch (IOException | ClassNotFoundException | RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new IOException("Unable to read shard: " + e.getMessage(), e);
+        }
+
+        int noteCount = 0;
+        for (List<Note> notes : shardNotes) {
+            noteCount += notes.size();
+        }
+        ArrayList<Note> allNotes = new ArrayList<Note>(noteCount);
+        for (List<Note> notes : shardNotes) {
+            allNotes.addAll(notes);
+        }
+        return allNotes;
+    }
+
+    /**
+     * Lists the shard files of a manifest, in order.
+     *
+     * @param file a store file
+     * @return the shards listed in the manifest, or an empty list if {@code file} doesn't exist or isn't a manifest
+     * @throws IOException if the manifest can't be read
+     */
+    static List<File> listShards(File file) throws IOException {
+        List<File> shards = new ArrayList<File>();
+        if (!file.isFile()) {
+            return shards;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if ((file.length() < 4) || (in.readInt() != MAGIC)) {
+                return shards;
+            }
+            short version = in.readShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported shard manifest version [" + version + "]");
+            }
+            int shardCount = in.readInt();
+            in.readInt(); // total note count
+            File directory = file.getAbsoluteFile().getParentFile();
+            for (int shard = 0; shard < shardCount; shard++) {
+                shards.add(new File(directory, in.readUTF()));
+                in.readInt(); // note count of the shard
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * Deletes files, ignoring any that are already gone.
+     *
+     * @param files the files to delete
+     * @throws IOException if a file can't be deleted
+     */
+    static void deleteAll(List<File> files) throws IOException {
+        for (File file : files) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    // -------------- PRIVATE HELPERS --------------
+
+    /**
+     * Gets the position of the first note in a shard. Shards differ in size by at most one note.
+     */
+    private static int shardStart(int noteCount, int shardCount, int shard) {
+        return (int) ((long) noteCount * shard / shardCount);
+    }
+
+    /**
+     * Runs the tasks on a thread pool of their own and returns their results in task order. If any task fails, the
+     * exception of the first failed task (in task order) is thrown as it is once all have finished. A plain
+     * {@link ExecutorService} is used rather than the common fork-join pool, which wraps checked exceptions in
+     * {@link RuntimeException}s.
+     */
+    private static <T> List<T> runInOrder(List<Callable<T>> tasks) throws Exception {
+        if (tasks.isEmpty()) {
+            return new ArrayList<T>();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+        try {
+            List<Future<T>> futures = executor.invokeAll(tasks);
+            List<T> results = new ArrayList<T>(futures.size());
+            for (Future<T> future : futures) {
+                try {
+                    results.add(future.get());
+                }
+                catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+            return results;
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
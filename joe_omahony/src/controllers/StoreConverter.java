@@ -0,0 +1,54 @@
+package controllers;
+
+import java.io.File;
+
+/**
+ * The responsibility of the {@code StoreConverter} class is to convert a notes store between the formats in
+ * {@link StoreFormat}, e.g. "notes.xml" to "notes.dat" and back again.
+ * <p>
+ * The source format is detected by {@link NoteAPI#load()}, so only the target format needs to be given.
+ * Can also be run from the command line:
+ * <pre>
+ * java controllers.StoreConverter notes.xml notes.dat BINARY
+ * java controllers.StoreConverter notes.dat notes.xml XML
+ * </pre>
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+public class StoreConverter {
+
+    /**
+     * Converts the notes store in {@code source} into {@code target}, written in {@code targetFormat}.
+     *
+     * @param source the store file to read (any supported format)
+     * @param target the store file to write
+     * @param targetFormat the format to write {@code target} in
+     * @return the number of notes converted
+     * @throws Exception if the source can't be read or the target can't be written
+     */
+    public static int convert(File source, File target, StoreFormat targetFormat) throws Exception {
+        NoteAPI noteAPI = new NoteAPI();
+        noteAPI.setStoreFile(source);
+        noteAPI.load();
+        noteAPI.setStoreFormat(targetFormat);
+        noteAPI.setStoreFile(target);
+        noteAPI.save();
+        return noteAPI.numberOfNotes();
+    }
+
+    /**
+     * Command line entry point: {@code StoreConverter <source> <target> <XML|COMPACT_XML|BINARY>}.
+     *
+     * @param args source file, target file and target format
+     * @throws Exception if the conversion fails
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            System.out.println("Usage: StoreConverter <source> <target> <XML|COMPACT_XML|BINARY>");
+            return;
+        }
+        int converted = convert(new File(args[0]), new File(args[1]), StoreFormat.valueOf(args[2].toUpperCase()));
+        System.out.println("Converted " + converted + " notes from " + args[0] + " to " + args[1] + ".");
+    }
+}
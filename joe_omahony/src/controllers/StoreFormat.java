@@ -0,0 +1,38 @@
+package controllers;
+
+/**
+ * The file formats {@link NoteAPI} can save notes in.
+ * <ul>
+ *   <li>{@code XML} - the original XStream {@code object-stream} format, saved to "notes.xml" by default.</li>
+ *   <li>{@code COMPACT_XML} - a shorter XML dialect with short element names and attributes (see
+ *   {@link NoteXStreamCodec#writeCompact}), also saved to "notes.xml" by default.</li>
+ *   <li>{@code BINARY} - the compact snapshot format written by {@link NoteBinaryCodec}, saved to "notes.dat" by
+ *   default.</li>
+ * </ul>
+ * {@link NoteAPI#load()} detects the format from the file contents, so the format only needs to be chosen for saving.
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+public enum StoreFormat {
+    XML("notes.xml"),
+    COMPACT_XML("notes.xml"),
+    BINARY("notes.dat");
+
+    StoreFormat(String defaultFileName) {
+        this.defaultFileName = defaultFileName;
+    }
+
+    /**
+     * Gets the file name used when no store file has been set on {@link NoteAPI}.
+     * @return the default file name for this format
+     */
+    public String getDefaultFileName() {
+        return defaultFileName;
+    }
+
+    /**
+     * The file name used when no store file has been set on {@link NoteAPI}.
+     */
+    private final String defaultFileName;
+}
@@ -0,0 +1,264 @@
+package controllers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+import models.Note;
+
+/**
+ * The responsibility of the {@code TitleIndex} class is to find notes by the words in their titles without reading
+ * every title, for the title searches of {@link NoteAPI}.
+ * <p>
+ * A title is split into words at every character that isn't a letter or digit, and each word is folded to lower case
+ * one character at a time (see {@link #fold(String)}). Each word then has a bucket of the positions of the notes whose
+ * title contains it, kept in a {@link PositionIndex} with the words in sorted order, so:
+ * <ul>
+ *   <li>a whole-word search only reads the buckets of its words,</li>
+ *   <li>a prefix search only reads the buckets of the words starting with the prefix, which sit next to each other,</li>
+ *   <li>a substring search of letters and digits only needs the words (rather than the notes) that contain it, since
+ *   such a substring can never cross from one word into the next.</li>
+ * </ul>
+ * Whole titles are folded and indexed too, with a bucket of positions for each distinct title and a {@link BKTree} of
+ * the distinct titles, so a typo-tolerant search only measures the edit distance to the few titles the tree leads it
+ * to. Titles aren't removed from the tree when their last note is deleted or renamed; their buckets are, so they are
+ * skipped when found, and the tree is rebuilt when the notes are next loaded.
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+class TitleIndex {
+
+    /**
+     * Builds the index of the given notes.
+     * @param notes the notes, in order
+     */
+    TitleIndex(List<Note> notes) {
+        this(notes.size(), position -> notes.get(position).getNoteTitle());
+    }
+
+    /**
+     * Builds the index of {@code count} note titles, e.g. read straight from the title column of a
+     * {@link ColumnarNoteList}.
+     *
+     * @param count the number of notes
+     * @param titleAt gets the title of the note at a position
+     */
+    TitleIndex(int count, IntFunction<String> titleAt) {
+        for (int i = 0; i < count; i++) {
+            noteAdded(titleAt.apply(i), i);
+        }
+    }
+
+    // -------------- UPDATE METHODS --------------
+
+    /**
+     * Records the title of a note added at {@code position}.
+     *
+     * @param title the title of the note
+     * @param position the position of the note in the notes ArrayList
+     */
+    void noteAdded(String title, int position) {
+        for (String word : words(title)) {
+            index.add(word, position);
+        }
+        String foldedTitle = fold(title);
+        titles.add(foldedTitle, position);
+        titleTree.add(foldedTitle);
+    }
+
+    /**
+     * Records that the note at {@code position} was deleted, so every note after it has moved back one position.
+     *
+     * @param title the title the deleted note had
+     * @param position the position the note was deleted from
+     */
+    void noteDeleted(String title, int position) {
+        index.deleteAll(words(title), position);
+        titles.delete(fold(title), position);
+    }
+
+    /**
+     * Moves a note from the words of its old title to the words of its new one. The note is found among the notes with
+     * the same old title, so only those are looked at.
+     *
+     * @param note the note whose title changed
+     * @param oldTitle the title it had before
+     * @param isNoteAt checks whether a position holds the note, without looking at notes that can't be it
+     */
+    void titleChanged(Note note, String oldTitle, IntPredicate isNoteAt) {
+        Set<String> oldWords = words(oldTitle);
+        String oldFoldedTitle = fold(oldTitle);
+        for (int position : titles.positions(oldFoldedTitle)) {
+            if (!(isNoteAt.test(position))) {
+                continue;
+            }
+            for (String word : oldWords) {
+                index.remove(word, position);
+            }
+            titles.remove(oldFoldedTitle, position);
+            noteAdded(note.getNoteTitle(), position);
+        }
+    }
+
+    // -------------- SEARCH METHODS --------------
+
+    /**
+     * Finds the notes whose titles contain every word of {@code query} as a whole word, ignoring case.
+     *
+     * @param query one or more words
+     * @return the positions of the matching notes, in ascending order; empty if {@code query} has no words
+     */
+    int[] positionsWithWords(String query) {
+        Set<String> queryWords = words(query);
+        if (queryWords.isEmpty()) {
+            return new int[0];
+        }
+        int[] matches = null;
+        for (String word : queryWords) {
+            int[] positions = index.positions(word);
+            matches = (matches == null) ? positions : PositionIndex.intersection(matches, positions);
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the notes with a word in their titles that starts with {@code prefix}, ignoring case.
+     *
+     * @param prefix the start of a word; letters and digits only
+     * @return the positions of the matching notes, in ascending order; empty if {@code prefix} is empty
+     */
+    int[] positionsWithPrefix(String prefix) {
+        String foldedPrefix = fold(prefix);
+        List<int[]> buckets = new ArrayList<int[]>();
+        if (!(foldedPrefix.isEmpty())) {
+            for (String word : index.keysFrom(foldedPrefix)) {
+                if (!(word.startsWith(foldedPrefix))) {
+                    break; // the words are sorted, so no later word can start with the prefix
+                }
+                buckets.add(index.positions(word));
+            }
+        }
+        return PositionIndex.union(buckets);
+    }
+
+    /**
+     * Finds the notes that may contain {@code text} in their titles, by checking it against every word rather than
+     * every title. The result can include notes whose titles only contain {@code text} in another case, so each one
+     * still has to be checked with {@link String#contains(CharSequence)}.
+     *
+     * @param text the text to search for
+     * @return the positions of the candidate notes, in ascending order; or {@code null} if {@code text} is empty or
+     * has characters other than letters and digits, which could span words, so every note has to be checked
+     */
+    int[] candidatesContaining(String text) {
+        if (text.isEmpty() || !(isWord(text))) {
+            return null;
+        }
+        String foldedText = fold(text);
+        List<int[]> buckets = new ArrayList<int[]>();
+        for (String word : index.keys()) {
+            if (word.contains(foldedText)) {
+                buckets.add(index.positions(word));
+            }
+        }
+        return PositionIndex.union(buckets);
+    }
+
+    /**
+     * Finds the notes whose whole titles are within {@code maxDistance} edits of {@code query}, ignoring case, e.g.
+     * "lerning jva" is two edits from "Learning Java".
+     *
+     * @param query the title to search for
+     * @param maxDistance the largest number of single character insertions, deletions and substitutions allowed
+     * @return the positions of the matching notes, closest titles first and in ascending order within each distance
+     */
+    int[] positionsNear(String query, int maxDistance) {
+        List<BKTree.Match> matches = titleTree.search(fold(query), maxDistance);
+        matches.sort(Comparator.comparingInt(match -> match.distance));
+        int[] found = new int[0];
+        List<int[]> buckets = new ArrayList<int[]>();
+        for (int i = 0; i < matches.size(); i++) {
+            int[] positions = titles.positions(matches.get(i).word); // empty for a title no note has any more
+            if (positions.length > 0) {
+                buckets.add(positions);
+            }
+            if ((i == matches.size() - 1) || (matches.get(i + 1).distance != matches.get(i).distance)) {
+                int[] atDistance = PositionIndex.union(buckets);
+                int offset = found.length;
+                found = Arrays.copyOf(found, offset + atDistance.length);
+                System.arraycopy(atDistance, 0, found, offset, atDistance.length);
+                buckets.clear();
+            }
+        }
+        return found;
+    }
+
+    // -------------- WORDS --------------
+
+    /**
+     * Splits text into folded words, at every character that isn't a letter or digit.
+     * @param text the text to split
+     * @return the distinct words, in the order they first appear
+     */
+    static Set<String> words(String text) {
+        Set<String> words = new LinkedHashSet<String>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = (i < text.length()) && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && (start < 0)) {
+                start = i;
+            }
+            else if (!wordChar && (start >= 0)) {
+                words.add(fold(text.substring(start, i)));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Folds text to lower case one {@code char} at a time, unlike {@link String#toLowerCase()}, so the folded text is
+     * the same length as the original and a substring of the text folds to a substring of the folded text.
+     * @param text the text to fold
+     * @return the folded text
+     */
+    static String fold(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    // -------------- PRIVATE HELPERS --------------
+
+    private static boolean isWord(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!(Character.isLetterOrDigit(text.charAt(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The positions of the notes whose titles contain each folded word, with the words sorted.
+     */
+    private final PositionIndex<String> index = new PositionIndex<String>(true);
+
+    /**
+     * The positions of the notes with each folded title.
+     */
+    private final PositionIndex<String> titles = new PositionIndex<String>();
+
+    /**
+     * Every folded title indexed since the notes were loaded, for searches by edit distance.
+     */
+    private final BKTree titleTree = new BKTree();
+}
@@ -0,0 +1,80 @@
+package controllers;
+
+import models.Note;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TitleIndexTest {
+
+    private List<Note> notesWithTitles(String... titles) {
+        List<Note> notes = new ArrayList<Note>();
+        for (String title : titles) {
+            notes.add(new Note(title, 1, "Work"));
+        }
+        return notes;
+    }
+
+    @Test
+    void wordsAreSplitAtPunctuationAndFolded() {
+        assertEquals(Set.of("code", "app", "v2"), TitleIndex.words("Code-App, V2!"));
+        assertEquals(List.of("learning", "java"), new ArrayList<String>(TitleIndex.words("Learning JAVA java")));
+        assertTrue(TitleIndex.words(" - ").isEmpty());
+        assertEquals("straße", TitleIndex.fold("STRAßE"));
+    }
+
+    @Test
+    void wordAndPrefixSearchesOnlyMatchWholeWordsOrTheirStarts() {
+        TitleIndex index = new TitleIndex(notesWithTitles("Code App", "Apple Pie", "Test App", "Pineapple"));
+        assertArrayEquals(new int[]{0, 2}, index.positionsWithWords("app"));
+        assertArrayEquals(new int[]{2}, index.positionsWithWords("APP test"));
+        assertArrayEquals(new int[0], index.positionsWithWords(""));
+        assertArrayEquals(new int[]{0, 1, 2}, index.positionsWithPrefix("Ap"));
+        assertArrayEquals(new int[0], index.positionsWithPrefix(""));
+    }
+
+    @Test
+    void candidatesContainingNeedOnlyLettersAndDigits() {
+        TitleIndex index = new TitleIndex(notesWithTitles("Code App", "Apple Pie", "Test App", "Pineapple"));
+        assertArrayEquals(new int[]{0, 1, 2, 3}, index.candidatesContaining("pp"));
+        assertArrayEquals(new int[]{1, 3}, index.candidatesContaining("PLE"));
+        assertNull(index.candidatesContaining("e A")); // could span two words
+        assertNull(index.candidatesContaining(""));
+    }
+
+    @Test
+    void positionsNearListTheClosestTitlesFirst() {
+        TitleIndex index = new TitleIndex(notesWithTitles("Code App", "Test App", "code ap", "Gym", "Cod App"));
+        assertArrayEquals(new int[]{0, 2, 4}, index.positionsNear("Code App", 1));
+        assertArrayEquals(new int[]{2, 0}, index.positionsNear("CODE AP", 1));
+        assertArrayEquals(new int[]{2, 0, 4}, index.positionsNear("code ap", 2));
+        assertArrayEquals(new int[0], index.positionsNear("Gm", 0));
+        assertArrayEquals(new int[]{3}, index.positionsNear("Gm", 1));
+    }
+
+    @Test
+    void updatesKeepPositionsInStep() {
+        List<Note> notes = notesWithTitles("Code App", "Apple Pie", "Test App");
+        TitleIndex index = new TitleIndex(notes);
+
+        Note removed = notes.remove(0);
+        index.noteDeleted(removed.getNoteTitle(), 0);
+        Note renamed = notes.get(1);
+        renamed.setNoteTitle("Release");
+        index.titleChanged(renamed, "Test App", position -> notes.get(position) == renamed);
+        notes.add(new Note("Release App", 1, "Work"));
+        index.noteAdded("Release App", 2);
+
+        assertArrayEquals(new int[]{2}, index.positionsWithWords("app"));
+        assertArrayEquals(new int[]{1, 2}, index.positionsWithWords("release"));
+        assertArrayEquals(new int[]{0}, index.positionsWithPrefix("apple"));
+        assertArrayEquals(new int[0], index.positionsWithWords("test"));
+        assertArrayEquals(new int[]{1}, index.positionsNear("Releases", 1));
+        assertArrayEquals(new int[0], index.positionsNear("Test App", 0)); // still in the tree, but no note has it
+        assertArrayEquals(new int[]{0}, index.positionsNear("aple pie", 1));
+    }
+}
@@ -0,0 +1,154 @@
+package controllers;
+
+import java.util.Arrays;
+
+/**
+ * The responsibility of the {@code Tombstones} class is to let something that records notes by their position in
+ * {@link NoteAPI}'s notes ArrayList keep the positions it recorded when an earlier note is deleted, rather than moving
+ * every one of them down.
+ * <p>
+ * A position as it was recorded is called a slot. Deleting a note marks its slot as a tombstone, and the position of
+ * a slot is then the slot less the number of tombstones before it.
+ * <ul>
+ *   <li>The tombstones are counted in a Fenwick (binary indexed) tree over the slots, so turning a slot into a
+ *   position, a position into a slot, and deleting are all logarithmic in the number of slots.</li>
+ *   <li>Slots past the end of the tree have no tombstones, so a note added at the end gets a slot without the tree
+ *   growing.</li>
+ *   <li>The owner compacts once {@link #needsCompacting(int)} says the tombstones have built up: it rewrites its slots
+ *   as positions and calls {@link #clear()}. The cost of that is spread over the deletes that led up to it.</li>
+ * </ul>
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+class Tombstones {
+
+    // -------------- UPDATE METHODS --------------
+
+    /**
+     * Marks the note at {@code position} as deleted, so every note after it moves back one position.
+     *
+     * @param position the position the note was deleted from
+     * @return the slot of the deleted note
+     */
+    int delete(int position) {
+        int slot = toSlot(position);
+        while (slot >= capacity()) {
+            grow();
+        }
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i]++;
+        }
+        count++;
+        return slot;
+    }
+
+    /**
+     * Forgets every tombstone, once the owner has rewritten its slots as positions.
+     */
+    void clear() {
+        if (count > 0) {
+            tree = new int[INITIAL_CAPACITY + 1];
+            count = 0;
+        }
+    }
+
+    // -------------- QUERY METHODS --------------
+
+    /**
+     * Gets the current position of a slot that isn't a tombstone.
+     * @param slot the slot
+     * @return the slot less the number of tombstones before it
+     */
+    int toPosition(int slot) {
+        if (count == 0) {
+            return slot;
+        }
+        int deletedBefore = 0;
+        for (int i = Math.min(slot, capacity()); i > 0; i -= i & -i) {
+            deletedBefore += tree[i];
+        }
+        return slot - deletedBefore;
+    }
+
+    /**
+     * Gets the slot of the note at {@code position}, or of a note about to be added there if {@code position} is the
+     * number of notes.
+     *
+     * @param position the current position of the note
+     * @return the slot that isn't a tombstone and has that position
+     */
+    int toSlot(int position) {
+        if (count == 0) {
+            return position;
+        }
+        // walk down the tree to the longest run of slots with at most position live ones; the slot after it has the
+        // position, or, past the end of the tree, every slot is live
+        int slots = 0;
+        int remaining = position + 1;
+        for (int step = capacity(); step > 0; step >>= 1) {
+            if (slots + step >= tree.length) {
+                continue;
+            }
+            int live = step - tree[slots + step];
+            if (live < remaining) {
+                slots += step;
+                remaining -= live;
+            }
+        }
+        return slots + remaining - 1;
+    }
+
+    /**
+     * Checks whether the tombstones have built up enough that the owner should compact.
+     * @param liveCount the number of live slots the owner holds, e.g. the number of notes
+     * @return {@code true} if there are more tombstones than a quarter of {@code liveCount} (and a few)
+     */
+    boolean needsCompacting(int liveCount) {
+        return count > Math.max(MIN_TOMBSTONES, liveCount >> 2);
+    }
+
+    /**
+     * Checks whether there are no tombstones, i.e. every slot is its own position.
+     * @return {@code true} if nothing has been deleted since the last {@link #clear()}
+     */
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    // -------------- PRIVATE HELPERS --------------
+
+    private int capacity() {
+        return tree.length - 1;
+    }
+
+    /**
+     * Doubles the number of slots the tree covers. The new top node covers every slot, the others only new slots,
+     * which have no tombstones.
+     */
+    private void grow() {
+        int newCapacity = capacity() * 2;
+        tree = Arrays.copyOf(tree, newCapacity + 1);
+        tree[newCapacity] = count;
+    }
+
+    /**
+     * The number of slots the tree covers at first, a power of two as the tree walk in {@link #toSlot(int)} needs.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The fewest tombstones worth compacting, so small stores aren't compacted on nearly every delete.
+     */
+    private static final int MIN_TOMBSTONES = 64;
+
+    /**
+     * The Fenwick tree of tombstone counts, from index 1; slot {@code s} is counted at index {@code s + 1}.
+     */
+    private int[] tree = new int[INITIAL_CAPACITY + 1];
+
+    /**
+     * The number of tombstones.
+     */
+    private int count = 0;
+}
@@ -0,0 +1,55 @@
+package controllers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TombstonesTest {
+
+    @Test
+    void slotsKeepTheirPositionsAcrossDeletes() {
+        Tombstones tombstones = new Tombstones();
+        assertEquals(2, tombstones.delete(2));
+        assertEquals(4, tombstones.delete(3)); // slot 4 was at position 3
+        assertFalse(tombstones.isEmpty());
+
+        assertEquals(0, tombstones.toPosition(0));
+        assertEquals(1, tombstones.toPosition(1));
+        assertEquals(2, tombstones.toPosition(3));
+        assertEquals(3, tombstones.toPosition(5));
+        assertEquals(3, tombstones.toSlot(2));
+        assertEquals(5, tombstones.toSlot(3));
+        assertEquals(98, tombstones.toSlot(96)); // past the end of the tree, every slot is live
+
+        tombstones.clear();
+        assertTrue(tombstones.isEmpty());
+        assertEquals(7, tombstones.toSlot(7));
+    }
+
+    @Test
+    void matchesDeletingFromAList() {
+        Random random = new Random(42);
+        ArrayList<Integer> slots = new ArrayList<Integer>();
+        for (int slot = 0; slot < 1000; slot++) {
+            slots.add(slot);
+        }
+        Tombstones tombstones = new Tombstones();
+        for (int i = 0; i < 600; i++) {
+            int position = random.nextInt(slots.size());
+            assertEquals((int) slots.remove(position), tombstones.delete(position));
+            if (random.nextInt(10) == 0) {
+                int slot = tombstones.toSlot(slots.size()); // a note added at the end
+                assertTrue(slot > slots.get(slots.size() - 1));
+                slots.add(slot);
+            }
+        }
+        for (int position = 0; position < slots.size(); position++) {
+            assertEquals((int) slots.get(position), tombstones.toSlot(position));
+            assertEquals(position, tombstones.toPosition(slots.get(position)));
+        }
+        assertTrue(tombstones.needsCompacting(slots.size()));
+    }
+}
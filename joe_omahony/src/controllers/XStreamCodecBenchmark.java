@@ -0,0 +1,75 @@
+package controllers;
+
+import java.io.ObjectOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+
+import com.thoughtworks.xstream.XStream;
+
+import models.Item;
+import models.Note;
+
+/**
+ * The responsibility of the {@code XStreamCodecBenchmark} class is to show what sharing one configured
+ * {@link XStream} (see {@link NoteXStreamCodec}) saves over building a new one for every save, as {@link NoteAPI}
+ * used to.
+ * <p>
+ * Small stores are saved over and over, so the cost of building an {@link XStream} is a large part of each save.
+ * Writes go to a {@link StringWriter} so disk speed doesn't hide the difference. Run from the command line:
+ * <pre>
+ * java controllers.XStreamCodecBenchmark [notes] [saves]
+ * </pre>
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+public class XStreamCodecBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional number of notes in the store (default 10) and number of saves to time (default 2000)
+     * @throws Exception if a save fails
+     */
+    public static void main(String[] args) throws Exception {
+        int noteCount = (args.length > 0) ? Integer.parseInt(args[0]) : 10;
+        int saves = (args.length > 1) ? Integer.parseInt(args[1]) : 2000;
+
+        ArrayList<Note> notes = new ArrayList<Note>();
+        for (int i = 0; i < noteCount; i++) {
+            Note note = new Note("Note " + i, (i % 5) + 1, "Work");
+            note.addItem(new Item("First item", true));
+            note.addItem(new Item("Second item"));
+            notes.add(note);
+        }
+
+        // warm up both paths so the JIT has compiled them before timing
+        timeSaves(notes, saves / 4, false);
+        timeSaves(notes, saves / 4, true);
+
+        long perCallNanos = timeSaves(notes, saves, false);
+        long sharedNanos = timeSaves(notes, saves, true);
+        System.out.println(saves + " saves of " + noteCount + " notes:");
+        System.out.printf("  new XStream per save: %8.1f us/save%n", perCallNanos / 1000.0 / saves);
+        System.out.printf("  shared XStream:       %8.1f us/save%n", sharedNanos / 1000.0 / saves);
+    }
+
+    /**
+     * Saves {@code notes} {@code saves} times, returning the total time taken in nanoseconds.
+     */
+    private static long timeSaves(ArrayList<Note> notes, int saves, boolean shared) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < saves; i++) {
+            StringWriter out = new StringWriter();
+            if (shared) {
+                NoteXStreamCodec.write(notes, out);
+            }
+            else {
+                ObjectOutputStream os = NoteXStreamCodec.newXStream(XStream.NO_REFERENCES).createObjectOutputStream(out);
+                os.writeObject(notes);
+                os.close();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -1,6 +1,7 @@
 package main;
 
 import controllers.NoteAPI;
+import controllers.NotePage;
 import models.Note;
 import models.Item;
 
@@ -10,8 +11,15 @@ import static utils.Utilities.YNtoBoolean;
 import static utils.Utilities.tryAgain;
 
 import utils.CategoryUtility;
+import utils.Rendering;
 import utils.Utilities;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.function.IntFunction;
+
 /**
  * The responsibility of the {@code Driver} class is to run the application.
  *
@@ -52,6 +60,11 @@ public class Driver {
      */
     private NoteAPI noteAPI = new NoteAPI();
 
+    /**
+     * The number of notes shown at a time when viewing notes.
+     */
+    private static final int PAGE_SIZE = 10;
+
     /*
     The main method has one line of code:
     new Driver();
@@ -75,8 +88,13 @@ public class Driver {
     */
     /**
      * Constructs a new {@code Driver} instance and starts the application by calling {@code runMenu()}.
+     * Saves are written in the background (see {@link NoteAPI#setAsyncSave(boolean)}), so the menu never waits for
+     * the file to be written, and are journaled (see {@link NoteAPI#setJournalEnabled(boolean)}), so a save only hands
+     * the changes made since the last one to the background thread rather than a copy of every note.
      */
     public Driver() {
+        noteAPI.setAsyncSave(true);
+        noteAPI.setJournalEnabled(true);
         runMenu();
     }
 
@@ -257,7 +275,8 @@ public class Driver {
      *     <li>ARCHIVED notes only</li>
      * </ol>
      * If no notes exist, informs the user via a console message and exit.
-     * Otherwise prompts for a choice [1-3] and calls the relevant helper method.
+     * Otherwise prompts for a choice [1-3] and calls the relevant helper method, which shows the notes a page at a
+     * time.
      * <br /><h4>Helper methods</h4>
      * <ul>
      *     <li>{@code printAllNotes()}</li>
@@ -314,7 +333,7 @@ public class Driver {
             System.out.println("No notes saved!");
         }
         else {
-            System.out.println(noteAPI.listAllNotes());
+            printListing(noteAPI::listAllNotes);
             int index = readNextInt("Enter index of note to update => ");
 
             if ((noteAPI.findNote(index) == null) || !(noteAPI.isValidIndex(index))) {
@@ -372,7 +391,7 @@ public class Driver {
             System.out.println("No notes saved!");
         }
         else {
-            System.out.println(noteAPI.listAllNotes());
+            printListing(noteAPI::listAllNotes);
             int index = readNextInt("Enter index of note to delete => ");
 
             if ((noteAPI.findNote(index) == null) || !(noteAPI.isValidIndex(index))) {
@@ -422,7 +441,7 @@ public class Driver {
             System.out.println("No active notes!");
         }
         else {
-            System.out.println(noteAPI.listActiveNotes());
+            printListing(noteAPI::listActiveNotes);
             int index = readNextInt("Enter active note index to archive => ");
 
             if (noteAPI.archiveNote(index)) {
@@ -474,7 +493,7 @@ public class Driver {
             System.out.println("No active notes!");
         }
         else {
-            System.out.println(noteAPI.listActiveNotes());
+            printListing(noteAPI::listActiveNotes);
             int index = readNextInt("Enter active note index to add item to => ");
             Note note = noteAPI.findNote(index);
             if ((note == null) || !(noteAPI.isValidIndex(index))) {
@@ -526,7 +545,7 @@ public class Driver {
             System.out.println("No active notes!");
         }
         else {
-            System.out.println(noteAPI.listActiveNotes());
+            printListing(noteAPI::listActiveNotes);
             int noteIndex = readNextInt("Enter active note index to update item description from => ");
             Note note = noteAPI.findNote(noteIndex);
             if ((note == null) || !(noteAPI.isValidIndex(noteIndex))) {
@@ -593,7 +612,7 @@ public class Driver {
             System.out.println("No active notes!");
         }
         else {
-            System.out.println(noteAPI.listActiveNotes());
+            printListing(noteAPI::listActiveNotes);
             int noteIndex = readNextInt("Enter active note index to delete item from => ");
             Note note = noteAPI.findNote(noteIndex);
             if ((note == null) || !(noteAPI.isValidIndex(noteIndex))) {
@@ -645,7 +664,7 @@ public class Driver {
             System.out.println("No active notes saved!");
         }
         else {
-            System.out.println(noteAPI.listActiveNotes());
+            printListing(noteAPI::listActiveNotes);
             int noteIndex = readNextInt("Enter active note index to mark item completion from  => ");
 
             if (!(noteAPI.isValidIndex(noteIndex))) {
@@ -681,7 +700,8 @@ public class Driver {
                     else {
                         char itemCompletedChar = readNextChar("Mark item as completed? [Y/N] => ");
                         boolean completedBool = YNtoBoolean(itemCompletedChar);
-                        item.setItemCompleted(completedBool);
+                        // through the note rather than the item, so the NoteAPI hears about the change
+                        note.updateItem(itemIndex, item.getItemDescription(), completedBool);
                         if (completedBool) {
                             System.out.println("Item successfully marked as completed.");
                         }
@@ -701,7 +721,7 @@ public class Driver {
     private void printAllNotes() {
         // Helper method
         System.out.println("Number of active and archived notes: " + noteAPI.numberOfNotes());
-        System.out.println(noteAPI.listAllNotes());
+        printPages(cursor -> noteAPI.listAllNotes(cursor, PAGE_SIZE));
     }
 
     /**
@@ -711,7 +731,7 @@ public class Driver {
     private void printArchivedNotes() {
         // Helper method for printActiveAndArchivedReport()
         System.out.println("Number of archived notes: " + noteAPI.numberOfArchivedNotes());
-        System.out.println(noteAPI.listArchivedNotes());
+        printPages(cursor -> noteAPI.listArchivedNotes(cursor, PAGE_SIZE));
     }
 
     /**
@@ -721,7 +741,39 @@ public class Driver {
     private void printActiveNotes() {
         // Helper method for printActiveAndArchivedReport()
         System.out.println("Number of active notes: " + noteAPI.numberOfActiveNotes());
-        System.out.println(noteAPI.listActiveNotes());
+        printPages(cursor -> noteAPI.listActiveNotes(cursor, PAGE_SIZE));
+    }
+
+    /**
+     * Prints a listing straight to the console through a buffer, so even a very long listing is never built up as one
+     * String. Any error writing to the console is printed instead.
+     *
+     * @param listing writes the listing, e.g. {@code noteAPI::listAllNotes}
+     */
+    private void printListing(Rendering listing) {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+        try {
+            listing.writeTo(out);
+            out.append('\n');
+            out.flush(); // not closed, as that would close System.out
+        } catch (IOException e) {
+            System.out.println("Error printing! [" + e.getMessage() + "]");
+        }
+    }
+
+    /**
+     * Prints a listing {@link #PAGE_SIZE} notes at a time, asking the user before each page after the first.
+     * Helper method for {@code viewNotes()}
+     *
+     * @param pageAt gets the page of the listing at a cursor, see {@link NotePage}
+     */
+    private void printPages(IntFunction<NotePage> pageAt) {
+        NotePage page = pageAt.apply(NotePage.FIRST_PAGE);
+        System.out.println(page.getText());
+        while (page.hasMore() && YNtoBoolean(readNextChar("Show the next " + PAGE_SIZE + " notes? [Y/N] => "))) {
+            page = pageAt.apply(page.getNextCursor());
+            System.out.println(page.getText());
+        }
     }
 
     /*
@@ -741,9 +793,9 @@ public class Driver {
         }
         else {
             System.out.println("Active notes: ");
-            System.out.println(noteAPI.listActiveNotes());
+            printListing(noteAPI::listActiveNotes);
             System.out.println("Archived notes: ");
-            System.out.println(noteAPI.listArchivedNotes());
+            printListing(noteAPI::listArchivedNotes);
         }
     }
 
@@ -757,7 +809,7 @@ public class Driver {
      * Option 11 in switch.
      */
     private void archiveNotesWithAllItemsComplete() {
-        System.out.println(noteAPI.archiveNotesWithAllItemsComplete());
+        printListing(noteAPI.archiveNotesWithAllItemsCompleteInParallel()::appendTo);
     }
 
     /*
@@ -784,7 +836,7 @@ public class Driver {
                 }
             }
             else {
-                System.out.println(noteAPI.listNotesBySelectedCategory(category));
+                printListing(out -> noteAPI.listNotesBySelectedCategory(category, out));
             }
         }
     }
@@ -807,7 +859,7 @@ public class Driver {
         else {
             int priority = readNextInt("Enter a priority [1-5] => ");
             if ((priority >= 1) && (priority <= 5)) {
-                System.out.println(noteAPI.listNotesBySelectedPriority(priority));
+                printListing(out -> noteAPI.listNotesBySelectedPriority(priority, out));
             }
             else {
                 System.out.println("Invalid priority selected! [" + priority + "]");
@@ -834,7 +886,7 @@ public class Driver {
         }
         else {
             String searchTitle = readNextLine("Enter search string for note title => ");
-            System.out.println(noteAPI.searchNotesByTitle(searchTitle));
+            printListing(out -> noteAPI.searchNotesByTitle(searchTitle, out));
         }
     }
 
@@ -853,7 +905,7 @@ public class Driver {
             System.out.println("No notes saved!");
         }
         else {
-            System.out.println(noteAPI.listTodoItems());
+            printListing(noteAPI::listTodoItems);
         }
     }
 
@@ -900,7 +952,7 @@ public class Driver {
                 }
             }
             else {
-                System.out.println(noteAPI.listItemStatusByCategory(category));
+                printListing(out -> noteAPI.listItemStatusByCategory(category, out));
             }
 
         }
@@ -922,7 +974,7 @@ public class Driver {
         }
         else {
             String searchDesc = readNextLine("Enter search text for item description: ");
-            System.out.println(noteAPI.searchItemByDescription(searchDesc));
+            printListing(out -> noteAPI.searchItemByDescription(searchDesc, out));
         }
     }
 
@@ -942,7 +994,12 @@ public class Driver {
     private void save() {
         try {
             noteAPI.save();
-            System.out.println("Notes saved successfully.");
+            if (noteAPI.isAsyncSave()) {
+                System.out.println("Notes are being saved in the background.");
+            }
+            else {
+                System.out.println("Notes saved successfully.");
+            }
         } catch (Exception e) {
             System.out.println("Error saving notes! [" + e.getMessage() + "]");
             if (tryAgain()) {
@@ -980,9 +1037,20 @@ public class Driver {
 
     /**
      * Exits the application by printing a goodbye message and terminating the program.
+     * Waits for any background save to finish writing first, see {@link NoteAPI#flush()}.
      * Option 0 in switch.
      */
     private void exitApplication() {
+        try {
+            noteAPI.flush();
+        } catch (Exception e) {
+            System.out.println("Error saving notes! [" + e.getMessage() + "]");
+            if (tryAgain()) {
+                save();
+                exitApplication();
+                return;
+            }
+        }
         System.out.println("Exiting... goodbye");
         System.exit(0);
     }
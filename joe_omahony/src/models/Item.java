@@ -1,6 +1,8 @@
 package models;
 
+import java.io.IOException;
 import java.util.Objects;
+import static utils.Rendering.render;
 import static utils.Utilities.*;
 /**
  * The responsibility of the {@code Item} class is to manage a single Item in the system.
@@ -98,6 +100,24 @@ listed above.
         this.isItemCompleted = itemCompleted;
     }
 
+    /**
+     * Gets the ID of the item, which stays the same while the item is in its note, even as other items are added
+     * and deleted. IDs are unique within a note, not across notes.
+     * @return the item ID, or 0 if the item hasn't been added to a note yet
+     */
+    public int getItemId() {
+        return this.itemId;
+    }
+
+    /**
+     * Sets the ID of the item, e.g. when a saved item is read back. {@link Note#addItem(Item)} keeps the ID if no
+     * other item of the note has it, and gives the item a new one otherwise.
+     * @param itemId the item ID, 0 for none
+     */
+    public void setItemId(int itemId) {
+        this.itemId = itemId;
+    }
+
     /**
      * Determines whether the current item object is equal to another object.
      * This class was barely modified from the assignment specification <b>provided method</b> {@code equals()} in
@@ -143,15 +163,23 @@ Book hotel. [COMPLETED]
      */
     @Override
     public String toString() {
-        String itemFormat = "";
-        itemFormat += this.getItemDescription() + ". ";
+        return render(this::appendTo);
+    }
+
+    /**
+     * Writes the item to {@code out}, in the format of {@link #toString()}.
+     *
+     * @param out where to write the item
+     * @throws IOException if {@code out} can't be written to
+     */
+    public void appendTo(Appendable out) throws IOException {
+        out.append(this.getItemDescription()).append(". ");
         if (this.isItemCompleted()) {
-            itemFormat += "[Completed]";
+            out.append("[Completed]");
         }
         else {
-            itemFormat += "[TODO]";
+            out.append("[TODO]");
         }
-        return itemFormat;
     }
     /*
     itemDescription: The description is maximum 50 characters. When creating a
@@ -183,4 +211,9 @@ Book hotel. [COMPLETED]
      * Corresponds to {@code [TODO]} or {@code [Completed]} in listing methods in {@code toString()}
      */
     private boolean isItemCompleted = false;
+
+    /**
+     * ID of the item within its note, 0 until the item is added to a note. Not part of {@link #equals(Object)}.
+     */
+    private int itemId = 0;
 }
\ No newline at end of file
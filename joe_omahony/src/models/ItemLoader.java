@@ -0,0 +1,22 @@
+package models;
+
+import java.util.ArrayList;
+
+/**
+ * The responsibility of the {@code ItemLoader} interface is to supply a {@link Note}'s items the first time they are
+ * needed, so notes can be loaded with only their headers (title, priority, category and archived state).
+ * <p>
+ * Set with {@link Note#setItemLoader(ItemLoader, int, int)}, e.g. by {@link controllers.NoteAPI} when loading a binary
+ * snapshot with lazy items. The loader is called at most once per note.
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+public interface ItemLoader {
+
+    /**
+     * Reads the items of a note from wherever they are stored.
+     * @return a new, modifiable list of the note's items, in order
+     */
+    ArrayList<Item> loadItems();
+}
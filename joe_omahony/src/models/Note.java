@@ -1,9 +1,13 @@
 package models;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Objects;
 
 import static utils.CategoryUtility.*;
+import static utils.Rendering.render;
 import static utils.Utilities.*;
 /**
  * The responsibility of the {@code Note} class is to manage a single Note object in the system.
@@ -86,6 +90,7 @@ The responsibility for this class is to manage a single Note in the System.
         //noteTitle: is maximum 20 characters. When creating a new note, if no title is
         // supplied, you should default the text “No Title”. When updating noteTitle,
         // you should only update if the value is less than or equal to 20.
+        String oldTitle = this.noteTitle;
         if (validateStringLength(passedNoteTitle, 20)) {
             this.noteTitle = passedNoteTitle;
         }
@@ -93,6 +98,11 @@ The responsibility for this class is to manage a single Note in the System.
             this.noteTitle = truncateString(passedNoteTitle, 20);
         }
         // else {} NO UPDATE if longer than 20 characters, don't truncate
+        if ((listeners != null) && !(this.noteTitle.equals(oldTitle))) {
+            for (NoteListener listener : listeners) {
+                listener.titleChanged(this, oldTitle);
+            }
+        }
     }
 
     /**
@@ -114,7 +124,13 @@ The responsibility for this class is to manage a single Note in the System.
             // DO NOTHING
         }
         else {
+            int oldPriority = this.notePriority;
             this.notePriority = passedNotePriority;
+            if ((listeners != null) && (passedNotePriority != oldPriority)) {
+                for (NoteListener listener : listeners) {
+                    listener.priorityChanged(this, oldPriority);
+                }
+            }
         }
     }
     /**
@@ -125,6 +141,19 @@ The responsibility for this class is to manage a single Note in the System.
         return this.noteCategory;
     }
 
+    /**
+     * Gets the ID of the current note's category, see {@link utils.CategoryUtility#categoryId(String)}. The ID is
+     * found once, when the category is set, so comparing categories by ID never looks at their names.
+     * @return the category's ID, {@link utils.CategoryUtility#NO_CATEGORY} if the note has no category
+     */
+    public int getNoteCategoryId() {
+        if (!(noteCategoryIdKnown)) {
+            noteCategoryId = categoryId(noteCategory);
+            noteCategoryIdKnown = true;
+        }
+        return noteCategoryId;
+    }
+
     /** Sets the current note's category.
      * Category validated by methods in {@link utils.CategoryUtility}, and must be one of the following:
      * <ul>
@@ -135,20 +164,26 @@ The responsibility for this class is to manage a single Note in the System.
      * <li>"College".</li>
      * </ul>
      * Defaults to an empty string if no category or an invalid category is provided.
+     * A valid category is stored in the form of {@link utils.CategoryUtility#getCategories()}, e.g. "hobby" as
+     * "Hobby", along with its ID (see {@link #getNoteCategoryId()}).
      * @param noteCategory the category of the note object, must be one of "Home", "Work", "Hobby", "Holiday", "College"
      */
     public void setNoteCategory(String noteCategory) {
         // noteCategory: should contain only one of the following categories: “Home”, “Work”,
         // “Hobby”, “Holiday”, “College”. When creating a new note, if no category is
         // supplied, you should default the empty String, “”.
-        if (isValidCategory(noteCategory.trim())) {
-            this.noteCategory = noteCategory;
-        }
-        else if (!(this.noteCategory.isEmpty())) {
-            // do nothing
+        String oldCategory = this.noteCategory;
+        int oldCategoryId = getNoteCategoryId();
+        int categoryId = categoryId(noteCategory);
+        if (categoryId != NO_CATEGORY) {
+            this.noteCategory = categoryName(categoryId);
+            this.noteCategoryId = categoryId;
         }
-        else {
-            this.noteCategory = "";
+        // otherwise the current category is kept, "" for a new note
+        if ((listeners != null) && (this.noteCategoryId != oldCategoryId)) {
+            for (NoteListener listener : listeners) {
+                listener.categoryChanged(this, oldCategory);
+            }
         }
     }
 
@@ -165,7 +200,32 @@ The responsibility for this class is to manage a single Note in the System.
      * @param noteArchived the archived state of the note object, defaults to false.
      */
     public void setNoteArchived(boolean noteArchived) {
+        boolean wasArchived = this.isNoteArchived;
         this.isNoteArchived = noteArchived;
+        if ((listeners != null) && (noteArchived != wasArchived)) {
+            for (NoteListener listener : listeners) {
+                listener.archivedChanged(this);
+            }
+        }
+    }
+
+    /**
+     * Gets the note's ID, which stays the same for as long as the note is stored, unlike its index in
+     * {@link controllers.NoteAPI}.
+     * @return the note ID, or 0 if the note hasn't been stored yet
+     */
+    public int getNoteId() {
+        return this.noteId;
+    }
+
+    /**
+     * Sets the note's ID, e.g. when a saved note is read back. {@link controllers.NoteAPI#add(Note)} keeps the ID if
+     * no other stored note has it, and gives the note a new one otherwise, so this shouldn't be called on a note that
+     * is already stored.
+     * @param noteId the note ID, 0 for none
+     */
+    public void setNoteId(int noteId) {
+        this.noteId = noteId;
     }
 
     /**
@@ -173,6 +233,7 @@ The responsibility for this class is to manage a single Note in the System.
      * @return note's collection of items.
      */
     public ArrayList<Item> getItems() {
+        ensureItemsLoaded();
         return this.items;
     }
 
@@ -182,17 +243,45 @@ The responsibility for this class is to manage a single Note in the System.
      * @param items a collection of {@link Item} objects [0 to many], defaults to ""
      */
     public void setItems(ArrayList<Item> items) {
+        // only counted when someone is listening, unloaded items are counted without loading them
+        int oldItemCount = (listeners != null) ? numberOfItems() : 0;
+        int oldCompletedCount = (listeners != null) ? numberOfCompletedItems() : 0;
+        this.itemLoader = null; // the loaded items would be replaced anyway
         this.items = items;
+        this.completedItemCountKnown = false; // counted when next needed
+        assignItemIds();
+        if (listeners != null) {
+            for (NoteListener listener : listeners) {
+                listener.itemsReplaced(this, oldItemCount, oldCompletedCount);
+            }
+        }
     }
 
     /**
      * Gets the number of items in the current note's collection.
+     * Doesn't load the items if they haven't been loaded yet (see {@link #setItemLoader(ItemLoader, int, int)}).
      * @return number of items in the current note's collection.
      */
     public int numberOfItems() {
 //This method simply returns the number of items stored in the items ArrayList.
+        if (itemLoader != null) {
+            return unloadedItemCount;
+        }
         return this.items.size();
     }
+
+    /**
+     * Gets the number of completed items in the current note's collection. Constant time: the count is kept up to
+     * date by the item methods (see {@link #completedItemCount}).
+     * Doesn't load the items if they haven't been loaded yet (see {@link #setItemLoader(ItemLoader, int, int)}).
+     * @return number of items whose {@link Item#isItemCompleted()} is {@code true}
+     */
+    public int numberOfCompletedItems() {
+        if (itemLoader != null) {
+            return unloadedCompletedCount;
+        }
+        return completedItemCount();
+    }
     // ----------------------- END OF GETTERS & SETTERS -----------------------
     /**
      * Checks the completion status for each item on a note. <b>The following logic was copied from assignment spec.</b>
@@ -204,6 +293,10 @@ The responsibility for this class is to manage a single Note in the System.
      *   </ul>
      * </ul>
      *
+     * Constant time, as it compares the number of completed items with the number of items rather than looking at
+     * each item. Doesn't load the items if they haven't been loaded yet (see
+     * {@link #setItemLoader(ItemLoader, int, int)}).
+     *
      * @return {@code true} if all items are completed or no note items; {@code false} otherwise
      * @author Dave Hearne
      */
@@ -214,15 +307,7 @@ The responsibility for this class is to manage a single Note in the System.
 ==> ALL items are completed or the note has no items, return true.
 ==> one or more item is TODO, return false.
          */
-        // You can simplify this with boolean ! and returning instead of using a flag,
-        // but it gets very hard to follow so I've left it as is
-        boolean noteCompletionFlag = true;
-        for (Item individualItem : this.items) {
-            if (individualItem.isItemCompleted() == false) {
-                noteCompletionFlag = false;
-            }
-        }
-        return noteCompletionFlag;
+        return numberOfCompletedItems() == numberOfItems();
     }
 
     /**
@@ -239,7 +324,77 @@ Hint: go to the Java API documentation for the ArrayList add method;
 you will notice that it returns a boolean indicating success / failure of
 the add.
          */
-        return this.items.add(item);
+        ensureItemsLoaded();
+        assignItemId(item);
+        boolean added = this.items.add(item);
+        if (added && completedItemCountKnown && item.isItemCompleted()) {
+            completedItemCount++;
+        }
+        if (added && (listeners != null)) {
+            for (NoteListener listener : listeners) {
+                listener.itemAdded(this, item);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Adds several items to the end of the {@param items} collection at once, e.g. when importing. The collection
+     * grows once, and listeners are told once, as if the items had been replaced (see
+     * {@link NoteListener#itemsReplaced(Note, int, int)}), rather than once per item.
+     *
+     * @param itemsToAdd the items to add, in order; each is given an ID as in {@link #addItem(Item)}
+     * @return {@code true} if any items were added, {@code false} if {@code itemsToAdd} is empty
+     */
+    public boolean addItems(Collection<Item> itemsToAdd) {
+        if (itemsToAdd.isEmpty()) {
+            return false;
+        }
+        ensureItemsLoaded();
+        int oldItemCount = this.items.size();
+        int oldCompletedCount = completedItemCount();
+        this.items.ensureCapacity(oldItemCount + itemsToAdd.size());
+        for (Item item : itemsToAdd) {
+            assignItemId(item);
+            this.items.add(item);
+            if (item.isItemCompleted()) {
+                completedItemCount++;
+            }
+        }
+        if (listeners != null) {
+            for (NoteListener listener : listeners) {
+                listener.itemsReplaced(this, oldItemCount, oldCompletedCount);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks every item of the note as completed. Listeners are told once, as if the items had been replaced (see
+     * {@link NoteListener#itemsReplaced(Note, int, int)}), and only if an item changed.
+     *
+     * @return the number of items that were TODO, and are now completed
+     */
+    public int completeAllItems() {
+        if (checkNoteCompletionStatus()) {
+            return 0; // without loading the items
+        }
+        ensureItemsLoaded();
+        int oldCompletedCount = completedItemCount();
+        int todoCount = 0;
+        for (Item item : this.items) {
+            if (!(item.isItemCompleted())) {
+                item.setItemCompleted(true);
+                todoCount++;
+            }
+        }
+        completedItemCount = this.items.size();
+        if (listeners != null) {
+            for (NoteListener listener : listeners) {
+                listener.itemsReplaced(this, this.items.size(), oldCompletedCount);
+            }
+        }
+        return todoCount;
     }
 
     /**
@@ -250,21 +405,32 @@ the add.
      * @return a String listing all items with their indexes or "No items added"
      */
     public String listItems() {
+        return render(this::listItems);
+    }
+
+    /**
+     * Writes the items of the note to {@code out}, in the format of {@link #listItems()}.
+     *
+     * @param out where to write the items
+     * @throws IOException if {@code out} can't be written to
+     */
+    public void listItems(Appendable out) throws IOException {
         /*
         This method should return a String, which should be either:
 ==>> the list of items (including index number) if there are items in the note.
 ==>> the string “No items added” if there are no items added yet.
          */
-        String listItemsString = "";
+        ensureItemsLoaded();
         if ((this.items == null) || (this.items.isEmpty()))  {
-            listItemsString = "\tNo items added" + "\n";
+            out.append("\tNo items added").append("\n");
         }
         else {
             for (int i = 0; i < this.items.size(); i++) {
-                listItemsString += "\t" + i + ": " + this.items.get(i).toString() + "\n";
+                out.append('\t').append(Integer.toString(i)).append(": ");
+                this.items.get(i).appendTo(out);
+                out.append('\n');
             }
         }
-        return listItemsString;
     }
 
     /**
@@ -279,7 +445,7 @@ the add.
          in the items ArrayList. If it is a valid index, return true. If invalid,
           return false.
          */
-        return (validRange(index, 0, (this.items.size()) - 1));
+        return (validRange(index, 0, numberOfItems() - 1));
     }
 
     /**
@@ -290,6 +456,7 @@ the add.
      */
     public Item findItem(int index){
         if (isValidIndex(index)) {
+            ensureItemsLoaded();
             return this.items.get(index);
         }
         else {
@@ -297,6 +464,22 @@ the add.
         }
     }
 
+    /**
+     * Retrieves an {@link Item} by its ID (see {@link Item#getItemId()}), however its index has changed since it was
+     * added.
+     *
+     * @param itemId ID of the item to retrieve
+     * @return the {@link Item} with that ID, or {@code null} if the note has none
+     */
+    public Item findItemById(int itemId) {
+        for (Item item : getItems()) {
+            if (item.getItemId() == itemId) {
+                return item;
+            }
+        }
+        return null;
+    }
+
     /**
      * Deletes an {@link Item} by its index if valid, and returns that {@param item} object.
      * Otherwise, returns {@code null}.
@@ -311,7 +494,17 @@ the add.
           items list, then null should be returned.
          */
         if (isValidIndex(index)) {
-            return this.items.remove(index);
+            ensureItemsLoaded();
+            Item deletedItem = this.items.remove(index);
+            if (completedItemCountKnown && deletedItem.isItemCompleted()) {
+                completedItemCount--;
+            }
+            if (listeners != null) {
+                for (NoteListener listener : listeners) {
+                    listener.itemDeleted(this, index, deletedItem);
+                }
+            }
+            return deletedItem;
         }
         else {
             return null;
@@ -339,8 +532,18 @@ the add.
      When updating noteTitle,
                 // you should only update if the value is less than or equal to 20.*/
         if (isValidIndex(index)) {
+            ensureItemsLoaded();
+            boolean wasCompleted = items.get(index).isItemCompleted();
             items.get(index).setItemDescription(description);
             items.get(index).setItemCompleted(isArchived);
+            if (completedItemCountKnown) {
+                completedItemCount += (isArchived ? 1 : 0) - (wasCompleted ? 1 : 0);
+            }
+            if (listeners != null) {
+                for (NoteListener listener : listeners) {
+                    listener.itemUpdated(this, index, wasCompleted);
+                }
+            }
             return true;
         }
         else {
@@ -348,6 +551,159 @@ the add.
         }
     }
 
+    // ----------------------- LAZY ITEMS -----------------------
+
+    /**
+     * Leaves the note's items unloaded until they are first needed, when {@code itemLoader} is called to read them.
+     * Until then {@link #numberOfItems()} and {@link #checkNoteCompletionStatus()} answer from the counts given here,
+     * and every other item method loads the items first.
+     * <p>
+     * Meant for loaders, straight after the note is created: any items already added are replaced.
+     *
+     * @param itemLoader reads the items the first time they are needed
+     * @param itemCount the number of items the loader will return
+     * @param completedCount how many of those items are completed
+     */
+    public void setItemLoader(ItemLoader itemLoader, int itemCount, int completedCount) {
+        this.itemLoader = itemLoader;
+        this.unloadedItemCount = itemCount;
+        this.unloadedCompletedCount = completedCount;
+        this.nextItemId = 0; // worked out when the items are loaded
+    }
+
+    /**
+     * Checks whether the note's items are in memory, see {@link #setItemLoader(ItemLoader, int, int)}.
+     * @return {@code false} if the items haven't been loaded yet, {@code true} otherwise
+     */
+    public boolean isItemsLoaded() {
+        return itemLoader == null;
+    }
+
+    /**
+     * Gets the loader that will read the note's items, e.g. so a copy of the note can share it.
+     * @return the item loader, or {@code null} if the items are already loaded
+     */
+    public ItemLoader getItemLoader() {
+        return itemLoader;
+    }
+
+    /**
+     * Loads the items if they haven't been loaded yet. Loading isn't a change, so listeners aren't told.
+     */
+    private void ensureItemsLoaded() {
+        if (itemLoader != null) {
+            ItemLoader loader = itemLoader;
+            itemLoader = null;
+            items = loader.loadItems();
+            completedItemCount = unloadedCompletedCount;
+            completedItemCountKnown = true;
+            assignItemIds();
+        }
+    }
+
+    /**
+     * Gets the number of completed (loaded) items, counting them only if the count isn't known yet, i.e. after
+     * {@link #setItems(ArrayList)} or after the note was read by XStream, which doesn't run constructors or field
+     * initialisers.
+     */
+    private int completedItemCount() {
+        if (!completedItemCountKnown) {
+            int completed = 0;
+            for (Item item : this.items) {
+                if (item.isItemCompleted()) {
+                    completed++;
+                }
+            }
+            completedItemCount = completed;
+            completedItemCountKnown = true;
+        }
+        return completedItemCount;
+    }
+
+    // ----------------------- ITEM IDS -----------------------
+
+    /**
+     * Gives an item being added an ID, keeping the one it has if no other item of the note has it.
+     */
+    private void assignItemId(Item item) {
+        int itemId = item.getItemId();
+        if ((itemId <= 0) || ((itemId < nextItemId) && (findItemById(itemId) != null))) {
+            item.setItemId(nextItemId++);
+        }
+        else if (itemId >= nextItemId) {
+            nextItemId = itemId + 1;
+        }
+    }
+
+    /**
+     * Works out {@link #nextItemId} for a whole new set of items, i.e. after {@link #setItems(ArrayList)}, after the
+     * items are loaded, or after the note was read by XStream, and gives new IDs to items without one (read from a
+     * file written before items had IDs) or sharing one with an earlier item.
+     */
+    private void assignItemIds() {
+        if (items == null) {
+            nextItemId = 1;
+            return;
+        }
+        int maxId = 0;
+        boolean ascending = true;
+        for (Item item : items) {
+            ascending &= (item.getItemId() > maxId);
+            maxId = Math.max(maxId, item.getItemId());
+        }
+        nextItemId = maxId + 1;
+        if (!ascending) {
+            // the usual case, IDs in the order they were given, can't hold duplicates and needs no set
+            HashSet<Integer> seen = new HashSet<Integer>();
+            for (Item item : items) {
+                if ((item.getItemId() <= 0) || !(seen.add(item.getItemId()))) {
+                    item.setItemId(nextItemId++);
+                }
+            }
+        }
+    }
+
+    /**
+     * Called by XStream once it has read the note. XStream doesn't run constructors or field initialisers, so the
+     * items are given their IDs here, as {@link #setItems(ArrayList)} would.
+     *
+     * @return this note
+     */
+    private Object readResolve() {
+        assignItemIds();
+        return this;
+    }
+
+    // ----------------------- NOTE LISTENERS -----------------------
+
+    /**
+     * Registers a {@link NoteListener} to be told about changes made through this note's item methods, and to its
+     * title, category, priority and archived state.
+     * A listener that is already registered is not added twice.
+     * @param listener the listener to add
+     */
+    public void addNoteListener(NoteListener listener) {
+        if (listeners == null) {
+            listeners = new ArrayList<NoteListener>(1);
+        }
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Removes a previously registered {@link NoteListener}. Does nothing if the listener isn't registered.
+     * @param listener the listener to remove
+     */
+    public void removeNoteListener(NoteListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+            if (listeners.isEmpty()) {
+                listeners = null;
+            }
+        }
+    }
+
     /**
      * <b>This class was provided in full in the assignment spec.</b>
      * Determines whether the current note is equal to another object.
@@ -370,11 +726,13 @@ the add.
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Note note = (Note) o;
+        ensureItemsLoaded();
+        note.ensureItemsLoaded();
         return notePriority == note.notePriority
                 && isNoteArchived
                 == note.isNoteArchived
                 && Objects.equals(noteTitle, note.noteTitle)
-                && Objects.equals(noteCategory, note.noteCategory)
+                && (getNoteCategoryId() == note.getNoteCategoryId())
                 && Objects.equals(items, note.items);
     }
 
@@ -408,10 +766,24 @@ the add.
      */
     @Override
     public String toString() {
+        return render(this::appendTo);
+    }
+
+    /**
+     * Writes the note and its items to {@code out}, in the format of {@link #toString()}, so a listing of many notes
+     * can be written without building each note as a String first.
+     *
+     * @param out where to write the note
+     * @throws IOException if {@code out} can't be written to
+     */
+    public void appendTo(Appendable out) throws IOException {
         // This method builds a user-friendly string representation of the
-        // object and returns it e.g.
-        return noteTitle + ", " + "Priority=" + notePriority + ", " + "Category=" + noteCategory + ", " + "Archived="
-                + booleanToYN(isNoteArchived()) +  "\n" + this.listItems() + "\n";
+        // object and writes it e.g.
+        out.append(noteTitle).append(", Priority=").append(Integer.toString(notePriority))
+                .append(", Category=").append(noteCategory)
+                .append(", Archived=").append(booleanToYN(isNoteArchived())).append('\n');
+        this.listItems(out);
+        out.append('\n');
     }
 
     /*
@@ -465,15 +837,75 @@ the add.
      */
     private String noteCategory = "";
 
+    /**
+     * The ID of {@link #noteCategory}, see {@link #getNoteCategoryId()}. Only valid while
+     * {@link #noteCategoryIdKnown} is {@code true}.
+     */
+    private transient int noteCategoryId = NO_CATEGORY;
+
+    /**
+     * Whether {@link #noteCategoryId} is up to date. {@code false} after XStream reads the note (as it skips
+     * transient fields), until the ID is first needed.
+     */
+    private transient boolean noteCategoryIdKnown = false;
+
     /**
      * Archived status of the note.
      * Defaults to false (not archived) when a new note is created.
      */
     private boolean isNoteArchived = false;
 
+    /**
+     * ID of the note, given by {@link controllers.NoteAPI} when the note is stored, 0 until then.
+     * Not part of {@link #equals(Object)}.
+     */
+    private int noteId = 0;
+
     /**
      * The ArrayList of {@link Item} objects associated with this instance of {@code note}.
      * Empty by default.
      */
     private ArrayList<Item> items = new ArrayList<Item>();
+
+    /**
+     * The {@link NoteListener}s told about item changes, {@code null} when there are none.
+     * Transient, so listeners are never written to "notes.xml".
+     */
+    private transient ArrayList<NoteListener> listeners = null;
+
+    /**
+     * Reads the items the first time they are needed, {@code null} once they are loaded (or if they always were).
+     * Transient, like the counts below, so only loaded items are ever written to "notes.xml".
+     */
+    private transient ItemLoader itemLoader = null;
+
+    /**
+     * Number of items, while {@link #itemLoader} is set.
+     */
+    private transient int unloadedItemCount = 0;
+
+    /**
+     * Number of completed items, while {@link #itemLoader} is set.
+     */
+    private transient int unloadedCompletedCount = 0;
+
+    /**
+     * Number of completed items once they are loaded, kept up to date by {@link #addItem(Item)},
+     * {@link #updateItem(int, String, boolean)} and {@link #deleteItem(int)}, so completion checks don't have to look
+     * at every item. Like {@link NoteListener}s, it doesn't see changes made directly to an {@link Item} or to the list
+     * returned by {@link #getItems()}. Only valid while {@link #completedItemCountKnown} is {@code true}.
+     */
+    private transient int completedItemCount = 0;
+
+    /**
+     * Whether {@link #completedItemCount} is up to date. {@code false} after {@link #setItems(ArrayList)}, and after
+     * XStream reads the note (as it skips transient fields), until the items are next counted.
+     */
+    private transient boolean completedItemCountKnown = false;
+
+    /**
+     * The ID the next item added without one is given, one more than the highest item ID. 0 while the items aren't
+     * loaded, see {@link #assignItemIds()}.
+     */
+    private transient int nextItemId = 1;
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package models;
+
+/**
+ * The responsibility of the {@code NoteListener} interface is to let another class (i.e. {@link controllers.NoteAPI})
+ * find out about changes made to a {@link Note}'s items through the {@link Note} item methods, and to its title,
+ * category, priority and archived state.
+ * <p>
+ * Each method is called <b>after</b> the change has been made. Changes made directly to an {@link Item} (e.g.
+ * {@code note.findItem(0).setItemCompleted(true)}) or to the list returned by {@link Note#getItems()} are not seen,
+ * so {@link Note#updateItem(int, String, boolean)} should be used instead.
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+public interface NoteListener {
+
+    /**
+     * Called after {@link Note#addItem(Item)} adds an item to the end of the note's items.
+     * @param note the note that changed
+     * @param item the item that was added
+     */
+    void itemAdded(Note note, Item item);
+
+    /**
+     * Called after {@link Note#updateItem(int, String, boolean)} updates an item.
+     * @param note the note that changed
+     * @param index the index of the updated item
+     * @param wasCompleted whether the item was completed before the update
+     */
+    void itemUpdated(Note note, int index, boolean wasCompleted);
+
+    /**
+     * Called after {@link Note#deleteItem(int)} deletes an item.
+     * @param note the note that changed
+     * @param index the index the item was deleted from
+     * @param item the deleted item
+     */
+    void itemDeleted(Note note, int index, Item item);
+
+    /**
+     * Called after {@link Note#setItems(java.util.ArrayList)} replaces all of the note's items, and after
+     * {@link Note#addItems(java.util.Collection)} or {@link Note#completeAllItems()} change several items at once.
+     * @param note the note that changed
+     * @param oldItemCount the number of items the note had before
+     * @param oldCompletedCount the number of completed items the note had before
+     */
+    void itemsReplaced(Note note, int oldItemCount, int oldCompletedCount);
+
+    /**
+     * Called after {@link Note#setNoteTitle(String)} changes the note's title. Not called if the title stays the same.
+     * @param note the note that changed
+     * @param oldTitle the title the note had before
+     */
+    void titleChanged(Note note, String oldTitle);
+
+    /**
+     * Called after {@link Note#setNoteCategory(String)} changes the note's category. Not called if the category
+     * stays the same.
+     * @param note the note that changed
+     * @param oldCategory the category the note had before
+     */
+    void categoryChanged(Note note, String oldCategory);
+
+    /**
+     * Called after {@link Note#setNotePriority(int)} changes the note's priority. Not called if the priority stays the
+     * same.
+     * @param note the note that changed
+     * @param oldPriority the priority the note had before
+     */
+    void priorityChanged(Note note, int oldPriority);
+
+    /**
+     * Called after {@link Note#setNoteArchived(boolean)} archives or unarchives the note. Not called if the archived
+     * state stays the same.
+     * @param note the note that changed
+     */
+    void archivedChanged(Note note);
+}
@@ -4,9 +4,12 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import utils.CategoryUtility;
 
+import java.io.StringWriter;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -106,6 +109,15 @@ public class NoteTest {
 
         }
 
+        @Test
+        void categoryIsStoredWithItsId() {
+            javaWork.setNoteCategory("  hobby ");
+            assertEquals("Hobby", javaWork.getNoteCategory());
+            assertEquals(CategoryUtility.categoryId("Hobby"), javaWork.getNoteCategoryId());
+            assertEquals(gymHobbyArchived.getNoteCategoryId(), javaWork.getNoteCategoryId());
+            assertEquals(CategoryUtility.NO_CATEGORY, emptyInvalidHobby.getNoteCategoryId());
+        }
+
         @Test
         void priorityGetAndSetWorkingCorrectly() {
             assertEquals(5, javaWork.getNotePriority());
@@ -166,6 +178,29 @@ public class NoteTest {
             assertEquals(true, emptyInvalidHobby.checkNoteCompletionStatus());
         }
 
+        @Test
+        void completedItemCountFollowsItemChanges() {
+            assertEquals(1, javaWork.numberOfCompletedItems());
+            javaWork.updateItem(0, "Study Objects", true);
+            javaWork.updateItem(1, "Study ArrayLists", true); // already completed
+            javaWork.addItem(new Item("Study Interfaces", true));
+            assertEquals(3, javaWork.numberOfCompletedItems());
+            assertFalse(javaWork.checkNoteCompletionStatus());
+
+            javaWork.deleteItem(2); // the only TODO item
+            assertEquals(3, javaWork.numberOfCompletedItems());
+            assertTrue(javaWork.checkNoteCompletionStatus());
+
+            javaWork.updateItem(0, "Study Objects", false);
+            assertEquals(2, javaWork.numberOfCompletedItems());
+
+            ArrayList<Item> replacementItems = new ArrayList<Item>();
+            replacementItems.add(new Item("Revise", true));
+            javaWork.setItems(replacementItems);
+            assertEquals(1, javaWork.numberOfCompletedItems());
+            assertTrue(javaWork.checkNoteCompletionStatus());
+        }
+
         @Test
         void addItemIncreasesSizeOfArrayList(){
             //adding items when items already exist
@@ -260,6 +295,101 @@ public class NoteTest {
             assertTrue(emptyInvalidHobby.listItems().contains("No items added"));
 
         }
+
+        @Test
+        void addItemsAndCompleteAllItemsChangeEveryItem(){
+            assertTrue(emptyInvalidHobby.addItems(List.of(new Item("One"), new Item("Two", true))));
+            assertFalse(emptyInvalidHobby.addItems(List.of()));
+            assertEquals(2, emptyInvalidHobby.numberOfItems());
+            assertEquals(1, emptyInvalidHobby.numberOfCompletedItems());
+            assertEquals(2, emptyInvalidHobby.findItem(1).getItemId());
+
+            assertEquals(4, summerHoliday.completeAllItems());
+            assertTrue(summerHoliday.checkNoteCompletionStatus());
+            assertTrue(holidayItemThree.isItemCompleted());
+            assertEquals(0, summerHoliday.completeAllItems());
+        }
+
+        @Test
+        void itemIdsStayWithTheirItems(){
+            assertEquals(1, javaItemOne.getItemId());
+            assertEquals(3, javaItemThree.getItemId());
+            javaWork.deleteItem(0);
+            assertSame(javaItemThree, javaWork.findItemById(3));
+            assertNull(javaWork.findItemById(1));
+            Item added = new Item("Study Streams");
+            javaWork.addItem(added);
+            assertEquals(4, added.getItemId()); // IDs aren't reused
+            //an item whose ID is taken is given a new one, an untaken one is kept
+            Item taken = new Item("Taken");
+            taken.setItemId(2);
+            javaWork.addItem(taken);
+            assertEquals(5, taken.getItemId());
+            Item kept = new Item("Kept");
+            kept.setItemId(9);
+            javaWork.addItem(kept);
+            assertEquals(9, kept.getItemId());
+            assertSame(javaItemTwo, javaWork.findItemById(2));
+        }
+
+        @Test
+        void itemIdsAreGivenWhenItemsAreSetNotWhenRead(){
+            Item first = new Item("First");
+            Item second = new Item("Second");
+            emptyInvalidHobby.setItems(new ArrayList<Item>(List.of(first, second)));
+            assertEquals(1, first.getItemId());
+            assertEquals(2, second.getItemId());
+            //an item added to the list directly isn't given an ID by the getter
+            Item direct = new Item("Direct");
+            emptyInvalidHobby.getItems().add(direct);
+            emptyInvalidHobby.getItems();
+            assertEquals(0, direct.getItemId());
+            Item added = new Item("Added");
+            emptyInvalidHobby.addItem(added);
+            assertEquals(3, added.getItemId());
+        }
+    }
+
+    @Nested
+    class LazyItemTests {
+        private int loads;
+
+        private Note lazyCopyOf(Note note) {
+            Note lazyNote = new Note(note.getNoteTitle(), note.getNotePriority(), note.getNoteCategory());
+            ArrayList<Item> items = note.getItems();
+            lazyNote.setItemLoader(() -> {
+                loads++;
+                return new ArrayList<Item>(items);
+            }, note.numberOfItems(), note.numberOfCompletedItems());
+            return lazyNote;
+        }
+
+        @Test
+        void countsDoNotLoadItems() {
+            Note lazyJava = lazyCopyOf(javaWork);
+            assertFalse(lazyJava.isItemsLoaded());
+            assertEquals(3, lazyJava.numberOfItems());
+            assertEquals(1, lazyJava.numberOfCompletedItems());
+            assertFalse(lazyJava.checkNoteCompletionStatus());
+            assertTrue(lazyJava.isValidIndex(2));
+            assertEquals(0, loads);
+        }
+
+        @Test
+        void itemsAreLoadedOnceOnFirstUse() {
+            Note lazyJava = lazyCopyOf(javaWork);
+            assertEquals(javaItemTwo, lazyJava.findItem(1));
+            assertTrue(lazyJava.isItemsLoaded());
+            lazyJava.addItem(new Item("Study Generics"));
+            assertEquals(4, lazyJava.numberOfItems());
+            assertEquals(1, loads);
+        }
+
+        @Test
+        void equalsLoadsItems() {
+            assertEquals(javaWork, lazyCopyOf(javaWork));
+            assertNotEquals(lazyCopyOf(gymHobbyArchived), lazyCopyOf(javaWork));
+        }
     }
 
     @Nested
@@ -291,6 +421,18 @@ public class NoteTest {
             assertTrue(summerHoliday.toString().contains("Archived=N"));
         }
 
+        @Test
+        void appendToWritesTheToStringFormat() throws Exception {
+            StringWriter out = new StringWriter();
+            gymHobbyArchived.appendTo(out);
+            assertEquals("Gym, Priority=4, Category=Hobby, Archived=Y\n"
+                    + "\t0: Swimming 40 lengths of 25m pool. [Completed]\n"
+                    + "\t1: Cycling 30km. [Completed]\n\n", out.toString());
+            assertEquals(out.toString(), gymHobbyArchived.toString());
+            assertEquals("No plans, Priority=1, Category=, Archived=N\n\tNo items added\n\n",
+                    emptyInvalidHobby.toString());
+        }
+
     }
 
 }
\ No newline at end of file
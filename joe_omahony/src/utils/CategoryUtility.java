@@ -48,6 +48,8 @@ import java.util.Arrays;
  *   <li>Format category strings to ensure they are handled properly, i.e. a lowercase first character doesn't cause an
  *   invalid category issue.</li>
  *   <li>Provide the full list of valid categories for selection.</li>
+ *   <li>Give each category a small ID (see {@link #categoryId(String)}), so notes, indexes and stores can compare and
+ *   keep categories as numbers rather than strings.</li>
  * </ul>
  *
  * @author Joe O'Mahony
@@ -82,17 +84,52 @@ public class CategoryUtility {
      * @return {@code true} if category is valid, {@code false} otherwise
      */
     public static boolean isValidCategory(String category) {
-        if (category == null || category.isBlank()) {
-            return false;
-        }
+        return categoryId(category) != NO_CATEGORY;
+    }
 
-        for (String cat : categories) {
-            category = categoryFormatter(category);
-            if (category.equals(cat)) { // We haven't overridden String implementation
-                return true;
+    /**
+     * Gets the ID of a category, a small number that stands for it wherever categories are compared, indexed or
+     * stored, so the name only has to be looked up once, when it is entered.
+     * <p>
+     * The category is matched like {@link #isValidCategory(String)}: ignoring case and leading/trailing whitespace.
+     * It is looked up in a small hash table of the predefined categories, hashing and comparing the characters in
+     * place, so nothing is allocated.
+     *
+     * @param category the category to look up, may be {@code null}
+     * @return the category's position in {@link #getCategories()} plus one, or {@link #NO_CATEGORY} if it is
+     * {@code null}, blank or not a predefined category
+     */
+    public static int categoryId(String category) {
+        if (category == null) {
+            return NO_CATEGORY;
+        }
+        int start = 0;
+        int end = category.length();
+        while ((start < end) && (category.charAt(start) <= ' ')) {
+            start++;
+        }
+        while ((end > start) && (category.charAt(end - 1) <= ' ')) {
+            end--;
+        }
+        int slot = foldedHash(category, start, end) & (idTable.length - 1);
+        while (idTable[slot] != NO_CATEGORY) {
+            String name = categories.get(idTable[slot] - 1);
+            if ((name.length() == end - start) && name.regionMatches(true, 0, category, start, end - start)) {
+                return idTable[slot];
             }
+            slot = (slot + 1) & (idTable.length - 1);
         }
-        return false;
+        return NO_CATEGORY;
+    }
+
+    /**
+     * Gets the name of a category from its ID, see {@link #categoryId(String)}.
+     *
+     * @param categoryId the ID of the category
+     * @return the category's name as in {@link #getCategories()}, or "" for {@link #NO_CATEGORY} or an unknown ID
+     */
+    public static String categoryName(int categoryId) {
+        return ((categoryId > NO_CATEGORY) && (categoryId <= categories.size())) ? categories.get(categoryId - 1) : "";
     }
 
     /**
@@ -112,16 +149,43 @@ public class CategoryUtility {
         if ((category == null) || (category.isBlank())) {
             return category;
         }
-        category = category.toLowerCase().trim();
-        return switch (category) {
-            case "home" -> "Home";
-            case "work" -> "Work";
-            case "hobby" -> "Hobby";
-            case "holiday" -> "Holiday";
-            case "college" -> "College";
-            default -> category;
-        };
+        int categoryId = categoryId(category);
+        return (categoryId != NO_CATEGORY) ? categoryName(categoryId) : category.toLowerCase().trim();
     }
+
+    /**
+     * Hashes {@code text} from {@code start} up to {@code end} with each character folded to lower case, so
+     * categories that only differ in case hash alike.
+     */
+    private static int foldedHash(String text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = (31 * hash) + Character.toLowerCase(Character.toUpperCase(text.charAt(i)));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Builds the table {@link #categoryId(String)} looks categories up in.
+     */
+    private static int[] buildIdTable() {
+        int[] table = new int[Integer.highestOneBit(categories.size() * 4)];
+        for (int i = 0; i < categories.size(); i++) {
+            String name = categories.get(i);
+            int slot = foldedHash(name, 0, name.length()) & (table.length - 1);
+            while (table[slot] != NO_CATEGORY) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = i + 1;
+        }
+        return table;
+    }
+
+    /**
+     * The ID of no category, given to notes without a (valid) category, see {@link #categoryId(String)}.
+     */
+    public static final int NO_CATEGORY = 0;
+
     /**
      * The {@code ArrayList} collection holding the predefined categories [Home, Work, Hobby, Holiday, College].
      * This collection is final (immutable).
@@ -132,5 +196,11 @@ public class CategoryUtility {
             "Hobby",
             "Holiday",
             "College")); // Geeks4Geeks
+
+    /**
+     * Open-addressed hash table of category IDs by {@link #foldedHash(String, int, int)} of their names, with
+     * {@link #NO_CATEGORY} for empty slots. Built once from {@link #categories}, so must be declared after it.
+     */
+    private static final int[] idTable = buildIdTable();
 }
 
@@ -34,4 +34,20 @@ class CategoryUtilityTest {
         assertFalse(CategoryUtility.isValidCategory("workk"));
         assertFalse(CategoryUtility.isValidCategory(""));
     }
+
+    @Test
+    void categoryIdsMatchTheCategoryList() {
+        ArrayList<String> categories = CategoryUtility.getCategories();
+        for (int i = 0; i < categories.size(); i++) {
+            assertEquals(i + 1, CategoryUtility.categoryId(categories.get(i)));
+            assertEquals(categories.get(i), CategoryUtility.categoryName(i + 1));
+        }
+        assertEquals(CategoryUtility.categoryId("Holiday"), CategoryUtility.categoryId(" hOLIDAY\t"));
+        assertEquals(CategoryUtility.NO_CATEGORY, CategoryUtility.categoryId("Holidays"));
+        assertEquals(CategoryUtility.NO_CATEGORY, CategoryUtility.categoryId(null));
+        assertEquals(CategoryUtility.NO_CATEGORY, CategoryUtility.categoryId("   "));
+        assertEquals("", CategoryUtility.categoryName(CategoryUtility.NO_CATEGORY));
+        assertEquals("Work", CategoryUtility.categoryFormatter(" work "));
+        assertEquals("workk", CategoryUtility.categoryFormatter(" WorkK "));
+    }
 }
\ No newline at end of file
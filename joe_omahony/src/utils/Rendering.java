@@ -0,0 +1,43 @@
+package utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * The responsibility of the {@code Rendering} interface is to let text be written straight to where it is going (an
+ * {@link Appendable} such as a buffered {@code System.out} or a file {@link java.io.Writer}) rather than being built up
+ * as a String first, while still giving the String when one is wanted.
+ * <p>
+ * Methods that list notes or items write their text with a method taking an {@link Appendable}, and the methods
+ * returning the same text as a String use {@link #render(Rendering)} to write it to a {@link StringBuilder}, so both
+ * give exactly the same text.
+ *
+ * @author Joe O'Mahony
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface Rendering {
+
+    /**
+     * Writes the text.
+     * @param out where to write the text
+     * @throws IOException if {@code out} can't be written to
+     */
+    void writeTo(Appendable out) throws IOException;
+
+    /**
+     * Gets the text of a rendering as a String.
+     * @param rendering the rendering, e.g. {@code note::appendTo}
+     * @return everything the rendering wrote
+     */
+    static String render(Rendering rendering) {
+        StringBuilder text = new StringBuilder();
+        try {
+            rendering.writeTo(text);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e); // can't happen, a StringBuilder never throws
+        }
+        return text.toString();
+    }
+}